@@ -0,0 +1,73 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how the interpreter dispatches instructions (a switch on the composite handler index that each decoded
+ * instruction caches) against calling through a pre-resolved handler reference for each instruction (see
+ * {@link HandlerTableEngine}). Both run the same kernels without tiered compilation.
+ *
+ * @author Henry Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark implements Constants {
+
+    @Param({"loop", "memcpy", "fib"})
+    private String kernel;
+
+    private Interpreter interp;
+    private HandlerTableEngine engine;
+
+    @Setup
+    public void setUp() throws ProgramException {
+        int[] words;
+        switch (kernel) {
+            case "loop":
+                words = Kernels.loop();
+                break;
+            case "memcpy":
+                words = Kernels.memcpy();
+                break;
+            default:
+                words = Kernels.fib();
+                break;
+        }
+
+        interp = new Interpreter();
+        interp.appendText(Kernels.get(kernel));
+        engine = new HandlerTableEngine(words);
+    }
+
+    @Benchmark
+    public long switchDispatch() throws ProgramException {
+        interp.getState().pc(ADDR_TEXT);
+        RunResult result = interp.run(Long.MAX_VALUE);
+        if (result.getReason() != RunResult.StopReason.EXIT) {
+            throw result.getFault();
+        }
+        return result.getInstructions();
+    }
+
+    @Benchmark
+    public long handlerDispatch() throws ProgramException {
+        return engine.run();
+    }
+}
@@ -0,0 +1,141 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+
+import java.util.Arrays;
+
+import static com.theKidOfArcrania.mips.runner.DecodedInst.I_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.R_TYPE;
+
+/**
+ * An alternative dispatch engine, only used as a baseline for {@link DispatchBenchmark}. Instead of switching on the
+ * composite handler index like {@link Interpreter} does, every instruction is pre-resolved to a handler object that
+ * holds one small method, and the run loop just calls through that reference. Only the instructions used by the
+ * <tt>loop</tt>, <tt>memcpy</tt> and <tt>fib</tt> kernels are supported, and the only supported syscall is exit.
+ *
+ * @author Henry Wang
+ */
+@SuppressWarnings("MagicNumber")
+final class HandlerTableEngine implements Constants, Registers {
+    /**
+     * Executes one kind of decoded instruction.
+     */
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * Executes the instruction.
+         *
+         * @param state the memory state.
+         * @param inst  the decoded instruction.
+         * @param regs  the register file.
+         * @param pc    the address of this instruction.
+         * @param nPC   the address of the instruction after it.
+         * @return the address of the instruction after the one at nPC.
+         * @throws ProgramException if executing this instruction results in an illegal action
+         */
+        int execute(MemState state, DecodedInst inst, int[] regs, int pc, int nPC) throws ProgramException;
+    }
+
+    private static final Handler[] TABLE = new Handler[0x100];
+
+    static {
+        Arrays.fill(TABLE, (Handler) (state, inst, regs, pc, nPC) -> {
+            throw new ProgramException(ErrorType.RI);
+        });
+        TABLE[R_TYPE | 0x00] = (state, inst, regs, pc, nPC) -> { //sll
+            regs[inst.rd] = regs[inst.rt] << inst.shamt;
+            return nPC + INST_SIZE;
+        };
+        TABLE[R_TYPE | 0x08] = (state, inst, regs, pc, nPC) -> regs[inst.rs]; //jr
+        TABLE[R_TYPE | 0x0c] = (state, inst, regs, pc, nPC) -> { //syscall
+            throw new ProgramException(regs[REG_V0] == 10 ? ErrorType.EXIT : ErrorType.RI);
+        };
+        TABLE[R_TYPE | 0x21] = (state, inst, regs, pc, nPC) -> { //addu
+            regs[inst.rd] = regs[inst.rs] + regs[inst.rt];
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x03] = (state, inst, regs, pc, nPC) -> { //jal
+            regs[REG_RA] = pc + INST_SIZE * 2;
+            return (pc & JMP_FAR_MASK) | (inst.addr << 2);
+        };
+        TABLE[I_TYPE | 0x04] = (state, inst, regs, pc, nPC) -> //beq
+                regs[inst.rs] == regs[inst.rt] ? nPC + (inst.imm << 2) : nPC + INST_SIZE;
+        TABLE[I_TYPE | 0x05] = (state, inst, regs, pc, nPC) -> //bne
+                regs[inst.rs] != regs[inst.rt] ? nPC + (inst.imm << 2) : nPC + INST_SIZE;
+        TABLE[I_TYPE | 0x09] = (state, inst, regs, pc, nPC) -> { //addiu
+            regs[inst.rt] = regs[inst.rs] + inst.imm;
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x0a] = (state, inst, regs, pc, nPC) -> { //slti
+            regs[inst.rt] = regs[inst.rs] < inst.imm ? 1 : 0;
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x0d] = (state, inst, regs, pc, nPC) -> { //ori
+            regs[inst.rt] = regs[inst.rs] | (inst.imm & BITS_IMM_MASK);
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x0f] = (state, inst, regs, pc, nPC) -> { //lui
+            regs[inst.rt] = inst.imm << Short.SIZE;
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x23] = (state, inst, regs, pc, nPC) -> { //lw
+            regs[inst.rt] = state.getInt(regs[inst.rs] + inst.imm);
+            return nPC + INST_SIZE;
+        };
+        TABLE[I_TYPE | 0x2b] = (state, inst, regs, pc, nPC) -> { //sw
+            state.setInt(regs[inst.rs] + inst.imm, regs[inst.rt]);
+            return nPC + INST_SIZE;
+        };
+    }
+
+    private final MemState state;
+    private final DecodedInst[] insts;
+    private final Handler[] handlers;
+
+    /**
+     * Loads a kernel into a fresh memory state, decoding every instruction and resolving its handler up front.
+     *
+     * @param words the instruction words of the kernel
+     * @throws ProgramException if the kernel cannot be loaded.
+     */
+    HandlerTableEngine(int[] words) throws ProgramException {
+        state = new Interpreter().getState();
+        state.allocateSegment(ADDR_TEXT, words.length * INST_SIZE);
+        insts = new DecodedInst[words.length];
+        handlers = new Handler[words.length];
+        for (int i = 0; i < words.length; i++) {
+            state.setInt(ADDR_TEXT + i * INST_SIZE, words[i]);
+            insts[i] = DecodedInst.decode(words[i]);
+            handlers[i] = TABLE[insts[i].handler];
+        }
+    }
+
+    /**
+     * Runs the kernel from the start until it exits.
+     *
+     * @return the number of instructions run.
+     * @throws ProgramException if the kernel traps.
+     */
+    long run() throws ProgramException {
+        int[] regs = state.registers();
+        int pc = ADDR_TEXT;
+        int nPC = pc + INST_SIZE;
+        long count = 0;
+        try {
+            while (true) {
+                int ind = (pc - ADDR_TEXT) >> 2;
+                int next = handlers[ind].execute(state, insts[ind], regs, pc, nPC);
+                regs[REG_ZERO] = 0;
+                pc = nPC;
+                nPC = next;
+                count++;
+            }
+        } catch (ProgramException e) {
+            if (e.getType() != ErrorType.EXIT) {
+                throw e;
+            }
+            return count;
+        }
+    }
+}
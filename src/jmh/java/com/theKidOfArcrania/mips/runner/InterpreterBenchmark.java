@@ -0,0 +1,89 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks running whole MIPS kernels (see {@link Kernels}) through the interpreter. Each kernel is run in four
+ * modes: single-stepping through {@link Interpreter#execute()}, the {@link Interpreter#run(long)} loop, the run loop
+ * in tiered mode, and the run loop while recording for reverse execution.
+ *
+ * @author Henry Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark implements Constants {
+    private static final int RECORD_CAPACITY = 1 << 16;
+    private static final int CHECKPOINT_INTERVAL = 1 << 16;
+
+    @Param({"loop", "memcpy", "fib", "printer", "pseudo"})
+    private String kernel;
+
+    @Param({"step", "run", "tiered", "recorded"})
+    private String mode;
+
+    private Interpreter interp;
+
+    @Setup
+    public void setUp() throws ProgramException {
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        interp = new Interpreter(new StreamSyscallIO(new ByteArrayInputStream(new byte[0]), sink));
+        interp.appendText(Kernels.get(kernel));
+        interp.setTiered(mode.equals("tiered"));
+        if (mode.equals("recorded")) {
+            interp.startRecording(RECORD_CAPACITY, CHECKPOINT_INTERVAL);
+        }
+    }
+
+    @Benchmark
+    public long runKernel() throws ProgramException {
+        interp.getState().pc(ADDR_TEXT);
+        if (mode.equals("step")) {
+            long count = 0;
+            try {
+                while (true) {
+                    interp.execute();
+                    count++;
+                }
+            } catch (ProgramException e) {
+                if (e.getType() != ErrorType.EXIT) {
+                    throw e;
+                }
+            }
+            return count;
+        }
+
+        RunResult result = interp.run(Long.MAX_VALUE);
+        if (result.getReason() != RunResult.StopReason.EXIT) {
+            throw result.getFault();
+        }
+        return result.getInstructions();
+    }
+}
@@ -0,0 +1,231 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+
+/**
+ * Hand-encoded MIPS programs used by the benchmarks. Every kernel starts at {@link Constants#ADDR_TEXT}, initializes
+ * all the registers it uses, and ends with the exit syscall, so the same loaded kernel can be rerun just by resetting
+ * the PC.
+ *
+ * @author Henry Wang
+ */
+@SuppressWarnings("MagicNumber")
+final class Kernels implements Constants, Registers {
+    private static final int REG_V1 = 3;
+    private static final int REG_T0 = 8;
+    private static final int REG_T1 = 9;
+    private static final int REG_T2 = 10;
+    private static final int REG_T3 = 11;
+    private static final int REG_S0 = 16;
+    private static final int REG_S1 = 17;
+
+    private static final int NOP = 0;
+    private static final int SYSCALL = rType(0x0c, 0, 0, 0, 0);
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private Kernels() {
+    }
+
+    /**
+     * Gets the kernel by name.
+     *
+     * @param name one of "loop", "memcpy", "fib", "printer", or "pseudo"
+     * @return the kernel as little-endian text bytes.
+     */
+    static byte[] get(String name) {
+        switch (name) {
+            case "loop":
+                return toBytes(loop());
+            case "memcpy":
+                return toBytes(memcpy());
+            case "fib":
+                return toBytes(fib());
+            case "printer":
+                return toBytes(printer());
+            case "pseudo":
+                return toBytes(pseudo());
+            default:
+                throw new IllegalArgumentException("No such kernel: " + name);
+        }
+    }
+
+    /**
+     * Sums the numbers from 1 to 10000 in a tight loop.
+     *
+     * @return the instruction words.
+     */
+    static int[] loop() {
+        return new int[]{
+                iType(0x09, REG_ZERO, REG_T0, 10000), //addiu $t0, $zero, 10000
+                iType(0x09, REG_ZERO, REG_T1, 0), //addiu $t1, $zero, 0
+                rType(0x21, REG_T1, REG_T0, REG_T1, 0), //loop: addu $t1, $t1, $t0
+                iType(0x09, REG_T0, REG_T0, -1), //addiu $t0, $t0, -1
+                iType(0x05, REG_T0, REG_ZERO, -3), //bne $t0, $zero, loop
+                NOP,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL
+        };
+    }
+
+    /**
+     * Copies 4 KiB within the data segment one word at a time.
+     *
+     * @return the instruction words.
+     */
+    static int[] memcpy() {
+        return new int[]{
+                iType(0x0f, REG_ZERO, REG_T0, 0x1001), //lui $t0, 0x1001
+                iType(0x0d, REG_T0, REG_T1, 0x8000), //ori $t1, $t0, 0x8000
+                iType(0x09, REG_T0, REG_T2, 4096), //addiu $t2, $t0, 4096
+                iType(0x23, REG_T0, REG_T3, 0), //loop: lw $t3, 0($t0)
+                iType(0x09, REG_T0, REG_T0, 4), //addiu $t0, $t0, 4
+                iType(0x2b, REG_T1, REG_T3, 0), //sw $t3, 0($t1)
+                iType(0x05, REG_T0, REG_T2, -4), //bne $t0, $t2, loop
+                iType(0x09, REG_T1, REG_T1, 4), //addiu $t1, $t1, 4 (delay slot)
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL
+        };
+    }
+
+    /**
+     * Computes fib(18) recursively, saving the return address and arguments on the stack.
+     *
+     * @return the instruction words.
+     */
+    static int[] fib() {
+        int fib = ADDR_TEXT + 5 * INST_SIZE;
+        return new int[]{
+                iType(0x09, REG_ZERO, REG_A0, 18), //addiu $a0, $zero, 18
+                jType(0x03, fib), //jal fib
+                NOP,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL,
+                iType(0x0a, REG_A0, REG_T0, 2), //fib: slti $t0, $a0, 2
+                iType(0x04, REG_T0, REG_ZERO, 3), //beq $t0, $zero, rec
+                rType(0x21, REG_A0, REG_ZERO, REG_V1, 0), //addu $v1, $a0, $zero (delay slot)
+                rType(0x08, REG_RA, 0, 0, 0), //jr $ra
+                NOP,
+                iType(0x09, REG_SP, REG_SP, -12), //rec: addiu $sp, $sp, -12
+                iType(0x2b, REG_SP, REG_RA, 0), //sw $ra, 0($sp)
+                iType(0x2b, REG_SP, REG_A0, 4), //sw $a0, 4($sp)
+                jType(0x03, fib), //jal fib
+                iType(0x09, REG_A0, REG_A0, -1), //addiu $a0, $a0, -1 (delay slot)
+                iType(0x2b, REG_SP, REG_V1, 8), //sw $v1, 8($sp)
+                iType(0x23, REG_SP, REG_A0, 4), //lw $a0, 4($sp)
+                jType(0x03, fib), //jal fib
+                iType(0x09, REG_A0, REG_A0, -2), //addiu $a0, $a0, -2 (delay slot)
+                iType(0x23, REG_SP, REG_T0, 8), //lw $t0, 8($sp)
+                rType(0x21, REG_V1, REG_T0, REG_V1, 0), //addu $v1, $v1, $t0
+                iType(0x23, REG_SP, REG_RA, 0), //lw $ra, 0($sp)
+                rType(0x08, REG_RA, 0, 0, 0), //jr $ra
+                iType(0x09, REG_SP, REG_SP, 12) //addiu $sp, $sp, 12 (delay slot)
+        };
+    }
+
+    /**
+     * Prints the numbers from 200 down to 1, each on its own line, through the print_int and print_character
+     * syscalls.
+     *
+     * @return the instruction words.
+     */
+    static int[] printer() {
+        return new int[]{
+                iType(0x09, REG_ZERO, REG_S0, 200), //addiu $s0, $zero, 200
+                rType(0x21, REG_S0, REG_ZERO, REG_A0, 0), //loop: addu $a0, $s0, $zero
+                iType(0x09, REG_ZERO, REG_V0, 1), //addiu $v0, $zero, 1
+                SYSCALL,
+                iType(0x09, REG_ZERO, REG_A0, '\n'), //addiu $a0, $zero, '\n'
+                iType(0x09, REG_ZERO, REG_V0, 11), //addiu $v0, $zero, 11
+                SYSCALL,
+                iType(0x09, REG_S0, REG_S0, -1), //addiu $s0, $s0, -1
+                iType(0x05, REG_S0, REG_ZERO, -8), //bne $s0, $zero, loop
+                NOP,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL
+        };
+    }
+
+    /**
+     * Sums <tt>i * i + i % 7</tt> for i from 0 to 9999, written with the pseudo-instructions <tt>li</tt>,
+     * <tt>mul</tt>, <tt>rem</tt> and <tt>blt</tt>, as the assembler expands them.
+     *
+     * @return the instruction words.
+     */
+    static int[] pseudo() {
+        return new int[]{
+                iType(0x0f, REG_ZERO, REG_T0, 0), //li $t0, 0
+                iType(0x0d, REG_T0, REG_T0, 0),
+                iType(0x0f, REG_ZERO, REG_T1, 0), //li $t1, 10000
+                iType(0x0d, REG_T1, REG_T1, 10000),
+                iType(0x0f, REG_ZERO, REG_S1, 0), //li $s1, 7
+                iType(0x0d, REG_S1, REG_S1, 7),
+                rType(0x21, REG_ZERO, REG_ZERO, REG_T3, 0), //clear $t3
+                rType(0x18, REG_T0, REG_T0, 0, 0), //loop: mul $t2, $t0, $t0
+                rType(0x12, 0, 0, REG_T2, 0),
+                rType(0x21, REG_T3, REG_T2, REG_T3, 0), //addu $t3, $t3, $t2
+                rType(0x1a, REG_T0, REG_S1, 0, 0), //rem $t2, $t0, $s1
+                rType(0x10, 0, 0, REG_T2, 0),
+                rType(0x21, REG_T3, REG_T2, REG_T3, 0), //addu $t3, $t3, $t2
+                iType(0x09, REG_T0, REG_T0, 1), //addiu $t0, $t0, 1
+                rType(0x2a, REG_T0, REG_T1, REG_AT, 0), //blt $t0, $t1, loop
+                iType(0x05, REG_AT, REG_ZERO, -9),
+                NOP,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL
+        };
+    }
+
+    /**
+     * Encodes an R-type instruction.
+     *
+     * @param funct the function code
+     * @param rs    the source register
+     * @param rt    the target register
+     * @param rd    the destination register
+     * @param shamt the shift amount
+     * @return the instruction word.
+     */
+    private static int rType(int funct, int rs, int rt, int rd, int shamt) {
+        return rs << 21 | rt << 16 | rd << 11 | shamt << 6 | funct;
+    }
+
+    /**
+     * Encodes an I-type instruction.
+     *
+     * @param opcode the opcode
+     * @param rs     the source register
+     * @param rt     the target register
+     * @param imm    the 16-bit immediate
+     * @return the instruction word.
+     */
+    private static int iType(int opcode, int rs, int rt, int imm) {
+        return opcode << 26 | rs << 21 | rt << 16 | (imm & BITS_IMM_MASK);
+    }
+
+    /**
+     * Encodes a J-type instruction.
+     *
+     * @param opcode the opcode
+     * @param target the absolute target address
+     * @return the instruction word.
+     */
+    private static int jType(int opcode, int target) {
+        return opcode << 26 | (target >>> 2 & BITS_ADDR_MASK);
+    }
+
+    /**
+     * Converts instruction words into little-endian bytes.
+     *
+     * @param words the instruction words
+     * @return the bytes.
+     */
+    private static byte[] toBytes(int[] words) {
+        byte[] data = new byte[words.length * INST_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (words[i / INST_SIZE] >> (i % INST_SIZE * Byte.SIZE));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,101 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks sequential byte, halfword and word accesses through {@link MemState}, over each memory backend. Every
+ * benchmark touches {@link #SPAN} bytes of the data segment, and the scores are per access.
+ *
+ * @author Henry Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemStateBenchmark implements Constants {
+    private static final int SPAN = 0x2000;
+
+    @Param({"paged", "segment"})
+    private String backend;
+
+    private MemState mem;
+
+    @Setup
+    public void setUp() throws ProgramException {
+        mem = new MemState(backend.equals("paged") ? new PagedMemory() : new SegmentMemory());
+        mem.allocateSegment(ADDR_DATA, ADDR_BLOCK_SIZE);
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr += Integer.BYTES) {
+            mem.setInt(addr, addr * 31);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN)
+    public int readBytes() throws ProgramException {
+        int sum = 0;
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr++) {
+            sum += mem.get(addr);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN / Short.BYTES)
+    public int readHalves() throws ProgramException {
+        int sum = 0;
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr += Short.BYTES) {
+            sum += mem.getShort(addr);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN / Integer.BYTES)
+    public int readWords() throws ProgramException {
+        int sum = 0;
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr += Integer.BYTES) {
+            sum += mem.getInt(addr);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN)
+    public void writeBytes() throws ProgramException {
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr++) {
+            mem.set(addr, (byte) addr);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN / Short.BYTES)
+    public void writeHalves() throws ProgramException {
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr += Short.BYTES) {
+            mem.setShort(addr, (short) addr);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPAN / Integer.BYTES)
+    public void writeWords() throws ProgramException {
+        for (int addr = ADDR_DATA; addr < ADDR_DATA + SPAN; addr += Integer.BYTES) {
+            mem.setInt(addr, addr);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks splitting and packing a 32-bit instruction word through {@link BitPacker}, using the same field layout
+ * as an R-type instruction (6/5/5/5/5/6 bits), and compares it with the fixed-width {@link InstCodec}.
+ *
+ * @author Henry Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("MagicNumber")
+public class BitPackerBenchmark {
+    private static final int[] FIELDS = {6, 5, 5, 5, 5, 6};
+
+    private int word;
+    private BitPacker packer;
+
+    @Setup
+    public void setUp() {
+        word = 0x012A4020; //add $t0, $t1, $t2
+        packer = new BitPacker(Integer.SIZE);
+        packer.setDWORD(0, word);
+    }
+
+    @Benchmark
+    public int getFields() {
+        int sum = 0;
+        int offset = 0;
+        for (int length : FIELDS) {
+            sum += packer.get(offset, length);
+            offset += length;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public BitPacker setFields() {
+        int offset = 0;
+        for (int length : FIELDS) {
+            packer.set(offset, length, word >>> (Integer.SIZE - offset - length));
+            offset += length;
+        }
+        return packer;
+    }
+
+    @Benchmark
+    public int decodeWord() {
+        BitPacker bits = new BitPacker(Integer.SIZE);
+        bits.setDWORD(0, word);
+        return bits.get(0, 6) + bits.get(6, 5) + bits.get(11, 5) + bits.get(16, 5) + bits.get(21, 5) +
+                bits.get(26, 6);
+    }
+
+    @Benchmark
+    public int decodeWordCodec() {
+        return InstCodec.get(word, 0, 6) + InstCodec.get(word, 6, 5) + InstCodec.get(word, 11, 5) +
+                InstCodec.get(word, 16, 5) + InstCodec.get(word, 21, 5) + InstCodec.get(word, 26, 6);
+    }
+
+    @Benchmark
+    public int encodeWordCodec() {
+        int encoded = 0;
+        int offset = 0;
+        for (int length : FIELDS) {
+            encoded |= InstCodec.field(offset, length, word >>> (Integer.SIZE - offset - length));
+            offset += length;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,123 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link IndexHashSet} against the previous boxed-index implementation ({@link LegacyIndexHashSet}):
+ * appending elements, inserting at the front, looking up indexes and removing from the front.
+ *
+ * @author Henry Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("MagicNumber")
+public class IndexHashSetBenchmark {
+    @Param({"1000"})
+    private int size;
+
+    private String[] items;
+    private IndexHashSet<String> current;
+    private LegacyIndexHashSet<String> legacy;
+
+    @Setup
+    public void setUp() {
+        items = new String[size];
+        current = new IndexHashSet<>();
+        legacy = new LegacyIndexHashSet<>();
+        for (int i = 0; i < size; i++) {
+            items[i] = "label" + i;
+            current.add(items[i]);
+            legacy.add(items[i]);
+        }
+    }
+
+    @Benchmark
+    public IndexHashSet<String> appendCurrent() {
+        IndexHashSet<String> set = new IndexHashSet<>();
+        for (String item : items) {
+            set.add(item);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public LegacyIndexHashSet<String> appendLegacy() {
+        LegacyIndexHashSet<String> set = new LegacyIndexHashSet<>();
+        for (String item : items) {
+            set.add(item);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public IndexHashSet<String> insertFrontCurrent() {
+        IndexHashSet<String> set = new IndexHashSet<>();
+        for (String item : items) {
+            set.add(0, item);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public LegacyIndexHashSet<String> insertFrontLegacy() {
+        LegacyIndexHashSet<String> set = new LegacyIndexHashSet<>();
+        for (String item : items) {
+            set.add(0, item);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int indexOfCurrent() {
+        int sum = 0;
+        for (String item : items) {
+            sum += current.indexOf(item);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int indexOfLegacy() {
+        int sum = 0;
+        for (String item : items) {
+            sum += legacy.indexOf(item);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public IndexHashSet<String> removeFrontCurrent() {
+        IndexHashSet<String> set = new IndexHashSet<>();
+        set.addAll(current);
+        while (!set.isEmpty()) {
+            set.remove(0);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public LegacyIndexHashSet<String> removeFrontLegacy() {
+        LegacyIndexHashSet<String> set = new LegacyIndexHashSet<>();
+        set.addAll(legacy);
+        while (!set.isEmpty()) {
+            set.remove(0);
+        }
+        return set;
+    }
+}
@@ -5,6 +5,7 @@ package com.theKidOfArcrania.mips;
  */
 public interface Constants {
     int WORD_MASK = 0xFFFF;
+    int DEC_RADIX = 10;
     int HEX_RADIX = 16;
     int MAX_SHIFT = 32;
     int REGISTER_COUNT = 32;
@@ -15,6 +16,7 @@ public interface Constants {
     int SEG_GLOBL = 2;
     int SEG_KTEXT = 3;
     int SEG_KDATA = 4;
+    int SEG_COUNT = 5;
 
     int ADDR_TEXT = 0x00400000;
     int ADDR_DATA = 0x10010000;
@@ -59,13 +59,18 @@ public enum BasicParamType implements ParamType {
     SIZE("unsigned (32-bit) integer", null) {
         @Override
         public boolean matches(CodeTokenReader reader) {
+            TokenType t = reader.getTokenType();
+            return t == TokenType.DECIMAL || t == TokenType.HEXADECIMAL;
+        }
+
+        @Override
+        public boolean checkToken(CodeTokenReader reader) {
             int val = (Integer) reader.getTokenValue();
             if (val < 0) {
                 reader.error("Integer must be a positive value.", reader.getTokenPos());
                 return false;
             }
-            TokenType t = reader.getTokenType();
-            return t == TokenType.DECIMAL || t == TokenType.HEXADECIMAL;
+            return true;
         }
     },
     INDIRECT("register indirect addressing", TokenType.INDIRECT) {
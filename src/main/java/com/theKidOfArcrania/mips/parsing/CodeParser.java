@@ -4,13 +4,22 @@ import com.theKidOfArcrania.mips.highlight.*;
 import com.theKidOfArcrania.mips.parsing.directive.DirStatement;
 import com.theKidOfArcrania.mips.parsing.inst.InstOpcodes;
 import com.theKidOfArcrania.mips.parsing.inst.InstStatement;
+import com.theKidOfArcrania.mips.runner.ProgramImage;
+import com.theKidOfArcrania.mips.util.TreeList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import static com.theKidOfArcrania.mips.Constants.SEG_COUNT;
 import static com.theKidOfArcrania.mips.parsing.Range.tokenRange;
 
 /**
@@ -21,17 +30,169 @@ import static com.theKidOfArcrania.mips.parsing.Range.tokenRange;
  * @author Henry Wang
  */
 public class CodeParser {
+
+    /**
+     * Represents an error or warning emitted by a statement while resolving symbols. The range is stored relative to
+     * the line of the statement, so that the message can be emitted again after the statement moves to another line.
+     */
+    private static final class Diagnostic {
+        private final boolean error;
+        private final String description;
+        private final Range highlight;
+
+        /**
+         * Constructs a diagnostic.
+         *
+         * @param error       true if this is an error, false if this is a warning.
+         * @param description the message description
+         * @param highlight   the relative position that this message is highlighting, can be null.
+         */
+        private Diagnostic(boolean error, String description, Range highlight) {
+            this.error = error;
+            this.description = description;
+            this.highlight = highlight;
+        }
+    }
+
+    /**
+     * Records the outcome of resolving and verifying a single statement, including every message it emitted. The
+     * logs are kept in the same order as the code, and a statement keeps its log for as long as it is not modified.
+     */
+    private static final class StatementLog {
+        private final CodeStatement statement;
+        private int addr;
+        private boolean resolveOk;
+        private boolean verifyOk;
+        private boolean verified;
+        private boolean verifyNeeded;
+        private ArrayList<Diagnostic> resolveLog;
+        private ArrayList<Diagnostic> verifyLog;
+
+        /**
+         * Constructs a statement log.
+         *
+         * @param statement the statement being logged.
+         */
+        private StatementLog(CodeStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Parses a contiguous run of dirty lines on a worker thread of a parallel reparse. Each chunk has its own token
+     * reader over the same lines, and buffers every highlight and message it emits while parsing, so that the chunks
+     * can be merged back in line order on the calling thread. Once merged, any messages that the parsed statements
+     * emit later on (i.e. while resolving symbols) are forwarded straight to the parser.
+     */
+    private final class ParseChunk implements Callable<ParseChunk>, ErrorLogger, Highlighter {
+        private final int[] lineInds;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean cancelled;
+        private final CodeTokenReader chunkReader;
+        private final CodeStatement[] parsed;
+        private int parsedCount;
+        private boolean success;
+        private ArrayList<Runnable> events;
+
+        /**
+         * Constructs a parse chunk.
+         *
+         * @param lineInds  the 0-based indexes of all the dirty lines
+         * @param from      the first dirty line of this chunk (inclusive), as an index into <tt>lineInds</tt>.
+         * @param to        the last dirty line of this chunk (exclusive), as an index into <tt>lineInds</tt>.
+         * @param cancelled the atomic boolean prop to check if task was cancelled.
+         */
+        private ParseChunk(int[] lineInds, int from, int to, AtomicBoolean cancelled) {
+            this.lineInds = lineInds;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+            chunkReader = new CodeTokenReader(reader);
+            chunkReader.addErrorLogger(this);
+            parsed = new CodeStatement[to - from];
+            success = true;
+            events = new ArrayList<>();
+        }
+
+        @Override
+        public ParseChunk call() {
+            for (int i = from; i < to && !cancelled.get(); i++) {
+                CodeStatement line = parseLine(chunkReader, lineInds[i], highlighter == null ? null : this);
+                parsed[i - from] = line;
+                success &= line != null && line != INVALID_STATEMENT;
+                parsedCount++;
+            }
+            return this;
+        }
+
+        /**
+         * Stores the parsed statements of this chunk and emits everything this chunk has buffered. This must be
+         * called on the thread that owns the parser, after this chunk has finished parsing.
+         *
+         * @return true if all the lines of this chunk were parsed successfully.
+         */
+        private boolean merge() {
+            for (int i = 0; i < parsedCount; i++) {
+                int lineInd = lineInds[from + i];
+                markChanged(lineInd, parsedCode.size() - lineInd - 1);
+                if (parsed[i] != null) {
+                    parsedCode.set(lineInd, parsed[i]);
+                }
+            }
+            for (Runnable event : events) {
+                event.run();
+            }
+            events = null;
+            return success && parsedCount == parsed.length;
+        }
+
+        @Override
+        public void logError(String description, Range highlight) {
+            if (events == null) {
+                logger.logError(description, highlight);
+            } else {
+                events.add(() -> logger.logError(description, highlight));
+            }
+        }
+
+        @Override
+        public void logWarning(String description, Range highlight) {
+            if (events == null) {
+                logger.logWarning(description, highlight);
+            } else {
+                events.add(() -> logger.logWarning(description, highlight));
+            }
+        }
+
+        @Override
+        public void insertTag(Tag tag) {
+            events.add(() -> highlighter.insertTag(tag));
+        }
+
+        @Override
+        public void insertSyntax(Syntax syn) {
+            events.add(() -> highlighter.insertSyntax(syn));
+        }
+    }
+
     public static final CodeStatement INVALID_STATEMENT = new EmptyStatement();
     public static final CodeStatement DIRTY_STATEMENT = new EmptyStatement();
 
-    private static final EnumMap<TokenType, Pattern> syntaxMatches;
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * The minimum number of dirty lines for a reparse to be split across a fork-join pool, and the number of lines
+     * that each worker parses at a time.
+     */
+    private static final int PARALLEL_THRESHOLD = 512;
+    private static final int PARALLEL_CHUNK = 128;
+
     private static final EnumMap<TokenType, SyntaxType[]> syntaxScheme;
 
-    private static final Pattern DEF_MAT = Pattern.compile(".*");
 
     static {
         syntaxScheme = new EnumMap<>(TokenType.class);
-        syntaxMatches = new EnumMap<>(TokenType.class);
 
         syntaxScheme.put(TokenType.DECIMAL, new SyntaxType[] {SyntaxType.NUMBER});
         syntaxScheme.put(TokenType.HEXADECIMAL, new SyntaxType[] {SyntaxType.NUMBER});
@@ -39,54 +200,118 @@ public class CodeParser {
         syntaxScheme.put(TokenType.IDENTIFIER, new SyntaxType[] {SyntaxType.IDENTIFIER});
         syntaxScheme.put(TokenType.STRING, new SyntaxType[] {SyntaxType.STRING});
         syntaxScheme.put(TokenType.INDIRECT, new SyntaxType[] {null, SyntaxType.NUMBER, SyntaxType.REGISTER});
-
-        syntaxMatches.put(TokenType.INDIRECT, Pattern.compile("(-?[0-9]+)?\\((\\$[a-zA-Z0-9]+)\\)"));
     }
 
     private final CodeTokenReader reader;
-    private final ArrayList<CodeStatement> parsedCode;
+    private final TreeList<CodeStatement> parsedCode;
     private final Highlighter highlighter;
+    private final ErrorLogger logger;
+    private CodeSymbols resolved;
+
+    private CodeSymbols symbols;
+    private final ArrayList<CodeSymbols.Checkpoint> checkpoints;
+    private ArrayList<StatementLog> logs;
+    private final HashMap<String, ArrayList<StatementLog>> references;
+    private int firstChanged;
+    private int unchangedTail;
+    private int firstMoved;
+
+    private StatementLog capturing;
+    private boolean capturingVerify;
+    private int captureLine;
 
     /**
      * Constructs a CodeParser from the specified code body.
      *
      * @param code        the code body to read from.
-     * @param highlighter the highlighter used to highlight syntax and tags.
+     * @param highlighter the highlighter used to highlight syntax and tags, or null to parse headlessly (without
+     *                    any highlighting).
      */
-    public CodeParser(String code, Highlighter highlighter) {
-        reader = new CodeTokenReader(code);
+    public CodeParser(CharSequence code, Highlighter highlighter) {
+        this(new CodeTokenReader(code), highlighter);
+    }
 
-        this.highlighter = highlighter;
+    /**
+     * Constructs a CodeParser that reads the code from a code source, i.e. a memory-mapped source file. Each line is
+     * read from the source as it is parsed, so the text of the code is never held in memory as a whole (unless the
+     * code is later modified).
+     *
+     * @param source      the code source to read from.
+     * @param highlighter the highlighter used to highlight syntax and tags, or null to parse headlessly (without
+     *                    any highlighting).
+     */
+    public CodeParser(CodeSource source, Highlighter highlighter) {
+        this(new CodeTokenReader(source), highlighter);
+    }
 
-        int lines = reader.getLineCount();
-        parsedCode = new ArrayList<>(lines);
-        for (int i = 0; i < lines; i++) {
-            parsedCode.add(DIRTY_STATEMENT);
-            reader.nextLine();
-            parseLine();
-        }
+    /**
+     * Constructs a CodeParser that parses all the lines of a token reader.
+     *
+     * @param reader      the token reader to read from.
+     * @param highlighter the highlighter used to highlight syntax and tags, or null to parse headlessly.
+     */
+    private CodeParser(CodeTokenReader reader, Highlighter highlighter) {
+        this.reader = reader;
+
+        this.highlighter = highlighter;
+        checkpoints = new ArrayList<>();
+        logs = new ArrayList<>();
+        references = new HashMap<>();
 
-        reader.addErrorLogger(new ErrorLogger() {
+        logger = new ErrorLogger() {
             @Override
             public void logError(String description, Range highlight) {
-                highlighter.insertTag(new Tag(TagType.ERROR, highlight, description));
+                capture(true, description, highlight);
+                if (highlighter != null) {
+                    highlighter.insertTag(new Tag(TagType.ERROR, highlight, description));
+                }
             }
 
             @Override
             public void logWarning(String description, Range highlight) {
-                highlighter.insertTag(new Tag(TagType.WARNING, highlight, description));
+                capture(false, description, highlight);
+                if (highlighter != null) {
+                    highlighter.insertTag(new Tag(TagType.WARNING, highlight, description));
+                }
             }
-        });
+        };
+        reader.addErrorLogger(logger);
+
+        //Parse everything in one pass, then build the statement list at once.
+        CodeStatement[] statements = new CodeStatement[reader.getLineCount()];
+        for (int i = 0; i < statements.length; i++) {
+            reader.nextLine();
+            statements[i] = parseStatement(reader, highlighter);
+        }
+        parsedCode = new TreeList<>(Arrays.asList(statements));
+        firstMoved = Integer.MAX_VALUE;
     }
 
     public int getLineCount() {
         return reader.getLineCount();
     }
 
+    /**
+     * Replaces all the code of this parser in bulk, i.e. when opening a file. The new lines are all marked dirty, and
+     * will not be parsed until a call to {@link #reparse(boolean)}, which then parses them in a single pass. This
+     * takes linear time, instead of inserting each line one by one. Unlike the constructor, any trailing empty lines
+     * are kept, so there is always one more line than there are line breaks.
+     *
+     * @param code the new code body.
+     */
+    public void loadCode(CharSequence code) {
+        reader.loadLines(code);
+        parsedCode.clear();
+        parsedCode.addAll(Collections.nCopies(reader.getLineCount(), DIRTY_STATEMENT));
+        firstMoved = Integer.MAX_VALUE;
+        resetResolution();
+        resolved = null;
+    }
+
     /**
      * Inserts a new line of code at the particular line number. This new line will be marked dirty, but will not be
-     * automatically parsed until a call to {@link #reparse(boolean)}. It will update the changed line references for
-     * each code statement
+     * automatically parsed until a call to {@link #reparse(boolean)}. The line references of the code statements
+     * after it are only updated on the next resolution, so inserting a line takes O(log n) time.
      *
      * @param lineNum the 1-based line number.
      * @param line    the line to insert.
@@ -94,9 +319,8 @@ public class CodeParser {
     public void insertLine(int lineNum, String line) {
         reader.insertLine(lineNum, line);
         parsedCode.add(lineNum - 1, DIRTY_STATEMENT);
-        for (int i = lineNum; i < parsedCode.size(); i++) {
-            parsedCode.get(i).updateLinePos(i + 1);
-        }
+        markChanged(lineNum - 1, parsedCode.size() - lineNum);
+        firstMoved = Math.min(firstMoved, lineNum);
     }
 
     /**
@@ -109,19 +333,20 @@ public class CodeParser {
     public void modifyLine(int lineNum, String line) {
         reader.modifyLine(lineNum, line);
         parsedCode.set(lineNum - 1, DIRTY_STATEMENT);
+        markChanged(lineNum - 1, parsedCode.size() - lineNum);
     }
 
     /**
-     * This deletes a line of code. This will then update the lines references in each code statement
+     * This deletes a line of code. Like {@link #insertLine(int, String)}, the line references of the code statements
+     * after it are only updated on the next resolution.
      *
      * @param lineNum the line number to remove.
      */
     public void deleteLine(int lineNum) {
         reader.deleteLine(lineNum);
         parsedCode.remove(lineNum - 1);
-        for (int i = lineNum - 1; i < parsedCode.size(); i++) {
-            parsedCode.get(i).updateLinePos(i + 1);
-        }
+        markChanged(lineNum - 1, parsedCode.size() - lineNum + 1);
+        firstMoved = Math.min(firstMoved, lineNum - 1);
     }
 
     /**
@@ -155,33 +380,64 @@ public class CodeParser {
      * @return true if re-parse was successful, false if some errors occurred while re-parsing.
      */
     public boolean reparse(boolean parseInvalid, AtomicBoolean cancelled) {
+        return reparse(parseInvalid, cancelled, null);
+    }
+
+    /**
+     * Re-parses all the lines of dirty code, like {@link #reparse(boolean, AtomicBoolean)}. If there are enough dirty
+     * lines (i.e. after a large paste), the lines are split into chunks that are parsed in parallel within the
+     * specified fork-join pool (if that pool has more than one worker). The parsed statements, highlights and
+     * messages of each chunk are still emitted in line order, and on the calling thread. If this is cancelled, the
+     * lines that were already parsed are kept and the rest are left dirty.
+     *
+     * @param parseInvalid determines whether to reparse any invalid lines.
+     * @param cancelled    the atomic boolean prop to check if task was cancelled.
+     * @param pool         the pool to parse in, or null to always parse on the calling thread.
+     * @return true if re-parse was successful, false if some errors occurred while re-parsing.
+     */
+    public boolean reparse(boolean parseInvalid, AtomicBoolean cancelled, ForkJoinPool pool) {
         if (cancelled == null) {
             cancelled = new AtomicBoolean(false);
         }
 
         boolean success = true;
-        for (int i = 0; i < parsedCode.size(); i++) {
-            boolean invalid = parsedCode.get(i) == INVALID_STATEMENT;
-            boolean dirty = parsedCode.get(i) == DIRTY_STATEMENT;
+        int[] lineInds = new int[16];
+        int count = 0;
+        Iterator<CodeStatement> itr = parsedCode.iterator();
+        for (int i = 0; itr.hasNext(); i++) {
+            CodeStatement s = itr.next();
+            boolean invalid = s == INVALID_STATEMENT;
+            boolean dirty = s == DIRTY_STATEMENT;
 
             if (dirty || invalid && parseInvalid) {
-                try {
-                    reader.beginLine(i + 1);
-                    success &= parseLine();
-                    if (cancelled.get()) {
-                        return false;
-                    }
-                } catch (RuntimeException e) {
-                    //TODO: Better error logging.
-                    reader.error("Error occurred while parsing line: " + e.toString() + ".", Range.lineRange(reader));
-                    e.printStackTrace();
-                    success = false;
+                if (count == lineInds.length) {
+                    lineInds = Arrays.copyOf(lineInds, count * 2);
                 }
+                lineInds[count++] = i;
             } else if (invalid) {
                 success = false;
             }
         }
-        return success;
+
+        if (pool == null || pool.getParallelism() < 2 || count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                success &= parseLine(lineInds[i]);
+                if (cancelled.get()) {
+                    return false;
+                }
+            }
+            return success;
+        }
+
+        ArrayList<ForkJoinTask<ParseChunk>> chunks = new ArrayList<>();
+        for (int from = 0; from < count; from += PARALLEL_CHUNK) {
+            chunks.add(pool.submit(new ParseChunk(lineInds, from, Math.min(count, from + PARALLEL_CHUNK),
+                    cancelled)));
+        }
+        for (ForkJoinTask<ParseChunk> chunk : chunks) {
+            success &= chunk.join().merge();
+        }
+        return success && !cancelled.get();
     }
 
 
@@ -190,15 +446,20 @@ public class CodeParser {
      * time, so this will be called on each parsed statement each time.
      *
      * @return true if resolution was successful, false if it failed.
+     * @see #resolveSymbols(AtomicBoolean)
      */
     public boolean resolveSymbols() {
         return resolveSymbols(null);
     }
 
     /**
-     * Ensures that all the symbols referred to by the code are resolved. This should be faster than the parsing
-     * time, so this will be called on each parsed statement each time. This particular variant will automatically
+     * Ensures that all the symbols referred to by the code are resolved. This particular variant will automatically
      * cancel when the atomic boolean value gets flagged
+     * <p>
+     * Resolution is incremental: only the statements starting from the last checkpoint before the first line
+     * changed since the previous resolution are resolved again. Afterwards, only the statements that are new, that
+     * have moved, or that refer to a label that has moved are verified again. All the other statements re-emit the
+     * errors that they emitted last time, so the emitted errors are always the same as resolving everything.
      *
      * @param cancelled the atomic boolean prop to check if task was cancelled
      * @return true if resolution was successful, false if it failed.
@@ -208,28 +469,152 @@ public class CodeParser {
             cancelled = new AtomicBoolean(false);
         }
 
-        CodeSymbols symbols = new CodeSymbols();
+        resolved = null;
+        if (symbols == null) {
+            symbols = new CodeSymbols();
+            checkpoints.add(symbols.checkpoint());
+        }
+
+        //Rewind to the last checkpoint before the first changed statement.
+        int oldSize = logs.size();
+        int size = parsedCode.size();
+        int cpIndex = Math.min(Math.min(firstChanged, oldSize) / CHECKPOINT_INTERVAL, checkpoints.size() - 1);
+        int start = cpIndex * CHECKPOINT_INTERVAL;
+        CodeSymbols.Checkpoint cp = checkpoints.get(cpIndex);
+        checkpoints.subList(cpIndex + 1, checkpoints.size()).clear();
+
+        HashMap<String, Integer> oldLabels = new HashMap<>();
+        for (String lbl : symbols.getLabelsMappedSince(cp)) {
+            oldLabels.put(lbl, symbols.resolveLabel(lbl));
+        }
+        symbols.rewind(cp);
+
+        //The unchanged statements at the end line up with their old logs. Any other old statement may have been
+        //moved around or removed.
+        int tail = Math.max(0, Math.min(unchangedTail, Math.min(oldSize, size) - start));
+        ArrayList<StatementLog> oldLogs = logs;
+        IdentityHashMap<CodeStatement, StatementLog> changed = new IdentityHashMap<>();
+        for (StatementLog log : oldLogs.subList(start, oldSize - tail)) {
+            changed.put(log.statement, log);
+        }
+        logs = new ArrayList<>(size);
+        logs.addAll(oldLogs.subList(0, start));
+
+        updateLinePositions();
 
         //Resolve statements
-        boolean success = true;
-        for (CodeStatement s : parsedCode) {
-            success &= s.resolveSymbols(symbols);
+        Iterator<CodeStatement> itr = parsedCode.iterator(start);
+        for (int i = start; i < size; i++) {
+            if (i > start && i % CHECKPOINT_INTERVAL == 0) {
+                checkpoints.add(symbols.checkpoint());
+            }
+
+            CodeStatement s = itr.next();
+            StatementLog log = i >= size - tail ? oldLogs.get(i - size + oldSize) : changed.remove(s);
+            if (log == null) {
+                log = new StatementLog(s);
+                addReferences(log);
+            }
+
+            int oldAddr = log.addr;
+            symbols.unmapStatement(s);
+            log.resolveLog = null;
+            beginCapture(log, false, i + 1);
+            log.resolveOk = s.resolveSymbols(symbols);
+            capturing = null;
+            log.addr = symbols.getStatementAddress(s);
+
+            //A statement that did not move only needs to be verified again if any of its labels moved.
+            log.verifyNeeded = !log.verified || log.addr != oldAddr;
+            logs.add(log);
+
             if (cancelled.get()) {
+                resetResolution();
                 return false;
             }
         }
 
+        for (StatementLog log : changed.values()) {
+            removeReferences(log);
+            symbols.unmapStatement(log.statement);
+        }
+
+        for (String lbl : symbols.getLabelsMappedSince(cp)) {
+            Integer oldAddr = oldLabels.remove(lbl);
+            if (oldAddr == null || oldAddr != symbols.resolveLabel(lbl)) {
+                markReferences(lbl);
+            }
+        }
+        for (String lbl : oldLabels.keySet()) {
+            markReferences(lbl);
+        }
+
         //Verify that all symbols are resolved
-        for (CodeStatement s : parsedCode) {
-            success &= s.verifySymbols(symbols);
+        boolean success = true;
+        for (int i = 0; i < size; i++) {
+            StatementLog log = logs.get(i);
+            if (i < start) {
+                replay(log.resolveLog, i + 1);
+            }
+
+            if (log.verifyNeeded) {
+                log.verifyLog = null;
+                beginCapture(log, true, i + 1);
+                log.verifyOk = log.statement.verifySymbols(symbols);
+                capturing = null;
+                log.verified = true;
+                log.verifyNeeded = false;
+            } else {
+                replay(log.verifyLog, i + 1);
+            }
+            success &= log.resolveOk && log.verifyOk;
+
             if (cancelled.get()) {
+                resetResolution();
                 return false;
             }
         }
 
+        firstChanged = Integer.MAX_VALUE;
+        unchangedTail = size;
+        if (success) {
+            resolved = symbols;
+        }
         return success;
     }
 
+    /**
+     * Assembles the code into a binary program image. Each segment is written out in one pass into a single buffer
+     * that is already sized to fit the entire segment. This requires that all the symbols have been successfully
+     * resolved by {@link #resolveSymbols()} since the code was last modified.
+     *
+     * @return the assembled program image.
+     * @throws IllegalStateException if the current code is not fully parsed, or its symbols are not resolved.
+     */
+    public ProgramImage assemble() {
+        if (resolved == null) {
+            throw new IllegalStateException("Symbols are not resolved.");
+        }
+        for (CodeStatement s : parsedCode) {
+            if (s == DIRTY_STATEMENT || s == INVALID_STATEMENT) {
+                throw new IllegalStateException("Code is not fully parsed.");
+            }
+        }
+
+        byte[][] segments = new byte[SEG_COUNT][];
+        for (int i = 0; i < SEG_COUNT; i++) {
+            segments[i] = new byte[resolved.getSegmentSize(i)];
+        }
+
+        for (CodeStatement s : parsedCode) {
+            int seg = resolved.getStatementSegment(s);
+            if (seg != -1) {
+                s.write(resolved, segments[seg], resolved.getStatementAddress(s) - CodeSymbols.getSegmentBase(seg));
+            }
+        }
+        return new ProgramImage(segments);
+    }
+
     /**
      * Determines whether if a line is dirty. A line is defined as dirty if it has been modified since the last time
      * it was parsed.
@@ -253,25 +638,210 @@ public class CodeParser {
     }
 
     /**
-     * Parse the currently selected line in the reader.
+     * Marks a range of lines as changed since the last resolution.
      *
+     * @param first the 0-based index of the first changed line
+     * @param tail  the number of lines after the changed lines that remain unchanged
+     */
+    private void markChanged(int first, int tail) {
+        resolved = null;
+        firstChanged = Math.min(firstChanged, first);
+        unchangedTail = Math.min(unchangedTail, tail);
+    }
+
+    /**
+     * Updates the line references of all the code statements that have moved since the last update.
+     */
+    private void updateLinePositions() {
+        if (firstMoved >= parsedCode.size()) {
+            firstMoved = Integer.MAX_VALUE;
+            return;
+        }
+
+        int line = firstMoved + 1;
+        for (Iterator<CodeStatement> itr = parsedCode.iterator(firstMoved); itr.hasNext(); line++) {
+            itr.next().updateLinePos(line);
+        }
+        firstMoved = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Forgets everything about the previous resolution, so that the next resolution starts from scratch.
+     */
+    private void resetResolution() {
+        symbols = null;
+        checkpoints.clear();
+        logs = new ArrayList<>();
+        references.clear();
+        capturing = null;
+        firstChanged = 0;
+        unchangedTail = 0;
+    }
+
+    /**
+     * Starts capturing all the messages emitted to the token reader into a statement log.
+     *
+     * @param log    the log to capture the messages into
+     * @param verify true to capture into the verification messages, false for the resolution messages.
+     * @param line   the 1-based line number of the statement emitting the messages
+     */
+    private void beginCapture(StatementLog log, boolean verify, int line) {
+        capturing = log;
+        capturingVerify = verify;
+        captureLine = line;
+    }
+
+    /**
+     * Captures a single message, if we are currently capturing.
+     *
+     * @param error       true if this is an error, false if this is a warning.
+     * @param description the message description
+     * @param highlight   the position that this message is highlighting, can be null.
+     */
+    private void capture(boolean error, String description, Range highlight) {
+        if (capturing == null) {
+            return;
+        }
+
+        Diagnostic d = new Diagnostic(error, description, highlight == null ? null :
+                highlight.shiftLines(-captureLine));
+        if (capturingVerify) {
+            if (capturing.verifyLog == null) {
+                capturing.verifyLog = new ArrayList<>();
+            }
+            capturing.verifyLog.add(d);
+        } else {
+            if (capturing.resolveLog == null) {
+                capturing.resolveLog = new ArrayList<>();
+            }
+            capturing.resolveLog.add(d);
+        }
+    }
+
+    /**
+     * Emits all the messages of a log once again.
+     *
+     * @param log  the captured messages, or null if none.
+     * @param line the 1-based line number that the statement is now on
+     */
+    private void replay(ArrayList<Diagnostic> log, int line) {
+        if (log == null) {
+            return;
+        }
+
+        for (Diagnostic d : log) {
+            Range highlight = d.highlight == null ? null : d.highlight.shiftLines(line);
+            if (d.error) {
+                reader.error(d.description, highlight);
+            } else {
+                reader.warning(d.description, highlight);
+            }
+        }
+    }
+
+    /**
+     * Indexes all the labels that a statement refers to.
+     *
+     * @param log the log of the code statement
+     */
+    private void addReferences(StatementLog log) {
+        if (log.statement instanceof ArgumentedStatement) {
+            ArgumentedStatement smt = (ArgumentedStatement) log.statement;
+            for (int i = 0; i < smt.getArgSize(); i++) {
+                if (smt.getArgExactType(i) == BasicParamType.LOCATION) {
+                    references.computeIfAbsent(smt.getArgValue(i, String.class), lbl -> new ArrayList<>()).add(log);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a statement from the index of label references.
+     *
+     * @param log the log of the code statement
+     */
+    private void removeReferences(StatementLog log) {
+        if (log.statement instanceof ArgumentedStatement) {
+            ArgumentedStatement smt = (ArgumentedStatement) log.statement;
+            for (int i = 0; i < smt.getArgSize(); i++) {
+                if (smt.getArgExactType(i) == BasicParamType.LOCATION) {
+                    ArrayList<StatementLog> refs = references.get(smt.getArgValue(i, String.class));
+                    if (refs != null) {
+                        refs.remove(log);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks every statement that refers to a label to be verified again.
+     *
+     * @param lbl the label that moved
+     */
+    private void markReferences(String lbl) {
+        ArrayList<StatementLog> refs = references.get(lbl);
+        if (refs != null) {
+            for (StatementLog log : refs) {
+                log.verifyNeeded = true;
+            }
+        }
+    }
+
+    /**
+     * Parses a line with the reader of this parser, and stores the parsed statement.
+     *
+     * @param lineInd the index of the line to parse.
      * @return true the parsing line was successful, false if an error occurred.
-     * @throws IllegalStateException if this token reader isn't currently on a line.
      */
-    private boolean parseLine() {
-        if (reader.getLineNumber() < 1) {
-            throw new IllegalStateException("Not currently reading a line.");
+    private boolean parseLine(int lineInd) {
+        markChanged(lineInd, parsedCode.size() - lineInd - 1);
+        CodeStatement line = parseLine(reader, lineInd, highlighter);
+        if (line == null) {
+            return false;
         }
+        parsedCode.set(lineInd, line);
+        return line != INVALID_STATEMENT;
+    }
 
-        boolean success = true;
-        int lineInd = reader.getLineNumber() - 1;
+    /**
+     * Moves a token reader onto a line and parses it into a code statement (see
+     * {@link #parseStatement(CodeTokenReader, Highlighter)}). Any unexpected exception while parsing is logged as an
+     * error on that line.
+     *
+     * @param reader      the token reader to parse with.
+     * @param lineInd     the index of the line to parse.
+     * @param highlighter the highlighter to emit syntax highlights to, or null to skip highlighting.
+     * @return the parsed statement, {@link #INVALID_STATEMENT} if the line has errors, or null if an unexpected
+     * exception occurred, in which case the line should be left dirty.
+     */
+    private static CodeStatement parseLine(CodeTokenReader reader, int lineInd, Highlighter highlighter) {
+        try {
+            reader.beginLine(lineInd + 1);
+            return parseStatement(reader, highlighter);
+        } catch (RuntimeException e) {
+            //TODO: Better error logging.
+            reader.error("Error occurred while parsing line: " + e.toString() + ".", Range.lineRange(reader));
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Parses the line that a token reader is currently on into a code statement. This does not touch any of the state
+     * of this parser, so this can be called concurrently with different token readers.
+     *
+     * @param reader      the token reader positioned on the line to parse.
+     * @param highlighter the highlighter to emit syntax highlights to, or null to skip highlighting.
+     * @return the parsed statement, or {@link #INVALID_STATEMENT} if an error occurred.
+     */
+    private static CodeStatement parseStatement(CodeTokenReader reader, Highlighter highlighter) {
+        CodeStatement line;
         if (!reader.nextToken()) {
-            parsedCode.set(lineInd, new EmptyStatement());
+            line = new EmptyStatement();
         } else if (reader.hasTokenError()) {
-            parsedCode.set(lineInd, INVALID_STATEMENT);
-            return false;
+            return INVALID_STATEMENT;
         } else {
-            CodeStatement line;
             switch (reader.getTokenType()) {
                 case DIRECTIVE:
                     line = DirStatement.parseStatement(reader);
@@ -286,19 +856,25 @@ public class CodeParser {
                     reader.errorExpected("label, instruction, or directive");
                     line = null;
             }
-            success = line != null;
-            parsedCode.set(lineInd, success ? line : INVALID_STATEMENT);
+            if (line == null) {
+                line = INVALID_STATEMENT;
+            }
         }
 
         //Syntax highlighting.
-        parseSyntaxHighlight();
-        return success;
+        if (highlighter != null) {
+            parseSyntaxHighlight(reader, highlighter);
+        }
+        return line;
     }
 
     /**
      * Parses all the syntax highlights of the current line.
+     *
+     * @param reader      the token reader positioned on the line.
+     * @param highlighter the highlighter to emit syntax highlights to.
      */
-    private void parseSyntaxHighlight() {
+    private static void parseSyntaxHighlight(CodeTokenReader reader, Highlighter highlighter) {
         int prevEnd = -1;
         if (reader.getTokensRead() > 0) {
             reader.visitToken(0);
@@ -307,32 +883,37 @@ public class CodeParser {
         for (int i = 0; i < reader.getTokensRead(); i++) {
             SyntaxType type = null;
             if (i == 0) {
-                String token = reader.getToken();
-                if (token.startsWith(".")) {
+                String line = reader.getLine();
+                int start = reader.getTokenStartIndex();
+                int end = reader.getTokenEndIndex();
+                if (line.charAt(start) == '.') {
                     type = SyntaxType.DIRECTIVE;
-                } else if (token.endsWith(":")) {
+                } else if (line.charAt(end - 1) == ':') {
                     type = SyntaxType.LABEL;
                 } else {
-                    if (InstOpcodes.fetchOpcode(token) != null) {
+                    if (InstOpcodes.fetchOpcode(line, start, end) != null) {
                         type = SyntaxType.INSTRUCTION;
                     }
                 }
             } else {
                 int offset = reader.getTokenStartIndex();
                 TokenType tokType = reader.getTokenType();
-                if (tokType != null) {
-                    Matcher mat = syntaxMatches.getOrDefault(tokType, DEF_MAT).matcher(reader.getToken());
-                    if (mat.find()) {
-                        SyntaxType[] scheme = syntaxScheme.getOrDefault(tokType, new SyntaxType[mat.groupCount() + 1]);
-                        for (int j = 0; j < mat.groupCount() + 1; j++) {
-                            if (mat.group(j) != null && scheme[j] != null) {
-                                highlighter.insertSyntax(new Syntax(scheme[j], tokenRange(reader.getLineNumber(),
-                                        offset + mat.start(j), offset + mat.end(j))));
-                            }
+                SyntaxType[] scheme = tokType == null ? null : syntaxScheme.get(tokType);
+                if (tokType == TokenType.INDIRECT) {
+                    //Highlight the offset and the register separately, i.e. "offset($reg)"
+                    if (reader.getTokenValue() != null) {
+                        int paren = reader.getLine().indexOf('(', offset);
+                        if (paren > offset) {
+                            highlighter.insertSyntax(new Syntax(scheme[1], tokenRange(reader.getLineNumber(),
+                                    offset, paren)));
                         }
+                        highlighter.insertSyntax(new Syntax(scheme[2], tokenRange(reader.getLineNumber(),
+                                paren + 1, reader.getTokenEndIndex() - 1)));
                     }
+                } else if (scheme != null) {
+                    highlighter.insertSyntax(new Syntax(scheme[0], reader.getTokenPos()));
                 }
-                characterSyntax(prevEnd, reader.getTokenStartIndex(), ',', SyntaxType.COMMA);
+                characterSyntax(reader, highlighter, prevEnd, reader.getTokenStartIndex(), ',', SyntaxType.COMMA);
             }
 
             if (type != null) {
@@ -343,8 +924,8 @@ public class CodeParser {
             reader.nextToken(true);
         }
 
-        characterSyntax(0, prevEnd, '(', SyntaxType.PARENTHESIS);
-        characterSyntax(0, prevEnd, ')', SyntaxType.PARENTHESIS);
+        characterSyntax(reader, highlighter, 0, prevEnd, '(', SyntaxType.PARENTHESIS);
+        characterSyntax(reader, highlighter, 0, prevEnd, ')', SyntaxType.PARENTHESIS);
 
         int len = reader.getLine().length();
         int commentStart = reader.getCommentStartIndex();
@@ -357,12 +938,15 @@ public class CodeParser {
     /**
      * Marks the character syntax of a specific character between a start (inclusive) and end (exclusive) point
      *
-     * @param start     the inclusive starting index
-     * @param end       the exclusive ending index
-     * @param ch        the character to highlight
-     * @param highlight the type of highlight to tag with character
+     * @param reader      the token reader positioned on the line.
+     * @param highlighter the highlighter to emit syntax highlights to.
+     * @param start       the inclusive starting index
+     * @param end         the exclusive ending index
+     * @param ch          the character to highlight
+     * @param highlight   the type of highlight to tag with character
      */
-    private void characterSyntax(int start, int end, char ch, SyntaxType highlight) {
+    private static void characterSyntax(CodeTokenReader reader, Highlighter highlighter, int start, int end, char ch,
+                                        SyntaxType highlight) {
         String line = reader.getLine();
         start = line.indexOf(ch, start);
         while (start != -1 && start < end) {
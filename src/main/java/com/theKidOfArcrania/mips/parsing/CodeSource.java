@@ -0,0 +1,193 @@
+package com.theKidOfArcrania.mips.parsing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Represents a read-only body of code that is split into lines on demand, such as a memory-mapped source file. Unlike
+ * reading the code into a string and splitting it, only the starting offset of each line is kept: a line is only
+ * turned into a string when it is read, and the line offsets are only scanned as far as the furthest line read so
+ * far. This way, a large program can be parsed with heap usage bounded by its statements, rather than its text.
+ * <p>
+ * The code can either be a sequence of characters (i.e. a {@link CharBuffer}), or a buffer of encoded bytes that is
+ * decoded one line at a time. In the latter case, the charset must encode line breaks as single ASCII bytes (such as
+ * UTF-8 or ISO-8859-1). Lines are separated by either <tt>\n</tt> or <tt>\r\n</tt>, and like
+ * {@link String#split(String)}, any trailing empty lines are dropped.
+ * <p>
+ * Note that this is NOT synchronization safe, except that once {@link #getLineCount()} has been called (so that all the
+ * lines have been found), lines can be read concurrently.
+ *
+ * @author Henry Wang
+ */
+public final class CodeSource {
+    private static final int INITIAL_LINES = 64;
+
+    /**
+     * Memory-maps a source file, and decodes its lines on demand.
+     *
+     * @param file    the source file to map.
+     * @param charset the charset that the file is encoded in.
+     * @return the mapped code source.
+     * @throws IOException              if an I/O error occurs while mapping the file.
+     * @throws IllegalArgumentException if the charset does not encode line breaks as single ASCII bytes.
+     */
+    public static CodeSource map(Path file, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CodeSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), charset);
+        }
+    }
+
+    private final CharSequence chars;
+    private final ByteBuffer bytes;
+    private final Charset charset;
+    private final int length;
+
+    private int[] lineStarts;
+    private int linesFound;
+    private int lineCount;
+
+    /**
+     * Constructs a code source over a sequence of characters.
+     *
+     * @param code the code body, which should not be modified afterwards.
+     */
+    public CodeSource(CharSequence code) {
+        this.chars = code;
+        this.bytes = null;
+        this.charset = null;
+        this.length = code.length();
+        lineStarts = new int[INITIAL_LINES];
+        lineCount = -1;
+    }
+
+    /**
+     * Constructs a code source over a buffer of encoded bytes. The remaining bytes of the buffer are read, without
+     * changing the position of the buffer.
+     *
+     * @param code    the encoded code body, which should not be modified afterwards.
+     * @param charset the charset that the bytes are encoded in.
+     * @throws IllegalArgumentException if the charset does not encode line breaks as single ASCII bytes.
+     */
+    public CodeSource(ByteBuffer code, Charset charset) {
+        if (!Arrays.equals("\r\n".getBytes(charset), new byte[] {'\r', '\n'})) {
+            throw new IllegalArgumentException("Unsupported charset: " + charset);
+        }
+        this.chars = null;
+        this.bytes = code.slice();
+        this.charset = charset;
+        this.length = bytes.remaining();
+        lineStarts = new int[INITIAL_LINES];
+        lineCount = -1;
+    }
+
+    /**
+     * Obtains the number of lines. This has to scan the rest of the code for line breaks (but does not read any of the
+     * lines themselves).
+     *
+     * @return the number of lines.
+     */
+    public int getLineCount() {
+        scanTo(Integer.MAX_VALUE);
+        return lineCount;
+    }
+
+    /**
+     * Reads a single line of code.
+     *
+     * @param lineNum the 1-based line number.
+     * @return the line, without its line break.
+     * @throws IndexOutOfBoundsException if this line does not exist.
+     */
+    public String getLine(int lineNum) {
+        if (lineNum < 1) {
+            throw new IndexOutOfBoundsException("Line: " + lineNum);
+        }
+        scanTo(lineNum);
+        if (lineCount != -1 && lineNum > lineCount) {
+            throw new IndexOutOfBoundsException("Line: " + lineNum + ", Lines: " + lineCount);
+        }
+
+        int start = lineStarts[lineNum - 1];
+        int end = lineEnd(lineNum - 1);
+
+        if (chars != null) {
+            return chars.subSequence(start, end).toString();
+        }
+        ByteBuffer line = bytes.duplicate();
+        line.limit(end).position(start);
+        return charset.decode(line).toString();
+    }
+
+    /**
+     * Scans for line breaks, until the starting offset of a line (and the line after it) is known, or the end of
+     * the code is reached.
+     *
+     * @param lineNum the 1-based line number to scan to.
+     */
+    private void scanTo(int lineNum) {
+        if (lineCount != -1 || linesFound > lineNum) {
+            return;
+        }
+
+        int pos = linesFound == 0 ? 0 : lineStarts[linesFound - 1];
+        if (linesFound == 0) {
+            lineStarts[linesFound++] = 0;
+        }
+        while (linesFound <= lineNum) {
+            while (pos < length && unitAt(pos) != '\n') {
+                pos++;
+            }
+            if (pos >= length) {
+                break;
+            }
+            pos++;
+            if (linesFound == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, linesFound * 2);
+            }
+            lineStarts[linesFound++] = pos;
+        }
+
+        if (pos >= length) {
+            //Drop the trailing empty lines (only if there are any line breaks at all).
+            lineCount = linesFound;
+            if (lineCount > 1) {
+                while (lineCount > 0 && lineEnd(lineCount - 1) == lineStarts[lineCount - 1]) {
+                    lineCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the end of a line that was found, excluding its line break.
+     *
+     * @param lineInd the 0-based index of the line.
+     * @return the ending offset of the line.
+     */
+    private int lineEnd(int lineInd) {
+        if (lineInd + 1 >= linesFound) {
+            return length;
+        }
+        int end = lineStarts[lineInd + 1] - 1;
+        if (end > lineStarts[lineInd] && unitAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Reads a single character (or byte, if this is a buffer of encoded bytes).
+     *
+     * @param pos the offset of the unit.
+     * @return the unit as a character.
+     */
+    private char unitAt(int pos) {
+        return chars != null ? chars.charAt(pos) : (char) (bytes.get(pos) & 0xFF);
+    }
+}
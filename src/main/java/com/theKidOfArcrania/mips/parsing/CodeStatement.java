@@ -40,11 +40,14 @@ public abstract class CodeStatement {
     public abstract boolean verifySymbols(CodeSymbols symbols);
 
     /**
-     * Writes this code statement into a byte instruction
+     * Writes this code statement into the binary image of the segment it was mapped to. This is only called for
+     * statements that have an address associated with it, and the image is already large enough to hold the whole
+     * statement.
      *
      * @param symbols the fully resolved symbols to write.
-     * @return a byte array representing this instruction
+     * @param image   the image of the segment that this statement is in.
+     * @param offset  the offset within the image that corresponds to the address of this statement.
      */
-    public abstract byte[] write(CodeSymbols symbols);
+    public abstract void write(CodeSymbols symbols, byte[] image, int offset);
 
 }
@@ -1,7 +1,10 @@
 package com.theKidOfArcrania.mips.parsing;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static com.theKidOfArcrania.mips.Constants.*;
@@ -12,11 +15,76 @@ import static com.theKidOfArcrania.mips.Constants.*;
  * @author Henry Wang
  */
 public class CodeSymbols {
+
+    /**
+     * Represents a snapshot of the resolution state at some point of the code, i.e. everything that affects how the
+     * next statement gets resolved. This allows symbols to be resolved again starting from the middle of the code.
+     *
+     * @see #checkpoint()
+     * @see #rewind(Checkpoint)
+     */
+    static final class Checkpoint {
+        private final int currentSegment;
+        private final int[] segmentAddrs;
+        private final int alignmentBits;
+        private final String[] pendingLabels;
+        private final int mappedCount;
+        private final int globalCount;
+
+        /**
+         * Takes a snapshot of the code symbols.
+         *
+         * @param symbols the code symbols
+         */
+        private Checkpoint(CodeSymbols symbols) {
+            currentSegment = symbols.currentSegment;
+            segmentAddrs = symbols.segmentAddrs.clone();
+            alignmentBits = symbols.alignmentBits;
+            pendingLabels = symbols.pendingLabels.toArray(new String[0]);
+            mappedCount = symbols.mappedLabels.size();
+            globalCount = symbols.addedGlobals.size();
+        }
+    }
+
+    /**
+     * Represents the location of a code statement in memory.
+     */
+    private static final class Location {
+        private final int addr;
+        private final int segment;
+
+        /**
+         * Constructs a statement location.
+         *
+         * @param addr    the address of the statement
+         * @param segment the segment index that the statement is in, or -1 if not in any segment.
+         */
+        private Location(int addr, int segment) {
+            this.addr = addr;
+            this.segment = segment;
+        }
+    }
+
+    private static final int[] SEGMENT_BASES = {ADDR_TEXT, ADDR_DATA, ADDR_GLOBL, ADDR_KTEXT, ADDR_KDATA};
+
+    /**
+     * Obtains the starting address of a segment.
+     *
+     * @param segment the segment index
+     * @return the address of the first byte of this segment.
+     */
+    public static int getSegmentBase(int segment) {
+        return SEGMENT_BASES[segment];
+    }
+
     private final HashMap<String, CodeStatement> labels;
-    private final HashMap<CodeStatement, Integer> statementAddrs;
+    private final HashMap<CodeStatement, Location> locations;
     private final HashSet<String> pendingLabels;
     private final HashSet<String> global;
 
+    private final ArrayList<String> mappedLabels;
+    private final ArrayList<String> addedGlobals;
+
     private int currentSegment;
     private final int[] segmentAddrs;
 
@@ -29,10 +97,12 @@ public class CodeSymbols {
      */
     public CodeSymbols() {
         labels = new HashMap<>();
-        statementAddrs = new HashMap<>();
+        locations = new HashMap<>();
         pendingLabels = new HashSet<>();
         global = new HashSet<>();
-        segmentAddrs = new int[] {ADDR_TEXT, ADDR_DATA, ADDR_GLOBL, ADDR_KTEXT, ADDR_KDATA};
+        mappedLabels = new ArrayList<>();
+        addedGlobals = new ArrayList<>();
+        segmentAddrs = SEGMENT_BASES.clone();
         alignment = 0;
         currentSegment = -1;
     }
@@ -43,7 +113,9 @@ public class CodeSymbols {
      * @param label the label to add
      */
     public void addGlobalSymbol(String label) {
-        global.add(label);
+        if (global.add(label)) {
+            addedGlobals.add(label);
+        }
     }
 
     /**
@@ -84,6 +156,16 @@ public class CodeSymbols {
         segmentAddrs[currentSegment] = start + size;
     }
 
+    /**
+     * Obtains the number of bytes allocated so far within a segment, including any alignment padding.
+     *
+     * @param segment the segment index
+     * @return the size of the segment.
+     */
+    public int getSegmentSize(int segment) {
+        return segmentAddrs[segment] - SEGMENT_BASES[segment];
+    }
+
     /**
      * Obtains a code statement's associated address, or -1 if not associated at all
      *
@@ -91,7 +173,19 @@ public class CodeSymbols {
      * @return the statement address or -1 if not found
      */
     public int getStatementAddress(CodeStatement smt) {
-        return statementAddrs.getOrDefault(smt, -1);
+        Location loc = locations.get(smt);
+        return loc == null ? -1 : loc.addr;
+    }
+
+    /**
+     * Obtains the segment that a code statement was pushed to, or -1 if it was never pushed to a segment.
+     *
+     * @param smt the code statement
+     * @return the segment index or -1 if not found
+     */
+    public int getStatementSegment(CodeStatement smt) {
+        Location loc = locations.get(smt);
+        return loc == null ? -1 : loc.segment;
     }
 
 
@@ -136,7 +230,7 @@ public class CodeSymbols {
         if (alignment == -1) {
             align = (1 << defAlign) - 1;
         }
-        return (addr - align) & ~align;
+        return (addr + align) & ~align;
     }
 
     /**
@@ -165,10 +259,11 @@ public class CodeSymbols {
         if (!pendingLabels.isEmpty()) {
             for (String lbl : pendingLabels) {
                 labels.put(lbl, smt);
+                mappedLabels.add(lbl);
             }
             pendingLabels.clear();
         }
-        statementAddrs.put(smt, addr);
+        locations.put(smt, new Location(addr, currentSegment));
     }
 
     /**
@@ -178,6 +273,57 @@ public class CodeSymbols {
      * @return the address of the label or -1 if not resolved
      */
     public int resolveLabel(String lbl) {
-        return statementAddrs.getOrDefault(labels.get(lbl), -1);
+        return getStatementAddress(labels.get(lbl));
+    }
+
+    /**
+     * Takes a snapshot of the current resolution state.
+     *
+     * @return the checkpoint.
+     */
+    Checkpoint checkpoint() {
+        return new Checkpoint(this);
+    }
+
+    /**
+     * Obtains all the labels that were mapped to a statement since a checkpoint was taken.
+     *
+     * @param cp the checkpoint
+     * @return the list of labels in the order they were mapped.
+     */
+    List<String> getLabelsMappedSince(Checkpoint cp) {
+        return new ArrayList<>(mappedLabels.subList(cp.mappedCount, mappedLabels.size()));
+    }
+
+    /**
+     * Rewinds the resolution state back to a checkpoint. All the labels and global symbols added since then are
+     * removed. This does NOT remove the addresses of the statements resolved since then, which should be unmapped
+     * with {@link #unmapStatement(CodeStatement)}.
+     *
+     * @param cp the checkpoint to rewind to. This checkpoint must have been taken by this code symbols object, and
+     *           not be older than any previous rewinds.
+     */
+    void rewind(Checkpoint cp) {
+        for (int i = mappedLabels.size() - 1; i >= cp.mappedCount; i--) {
+            labels.remove(mappedLabels.remove(i));
+        }
+        for (int i = addedGlobals.size() - 1; i >= cp.globalCount; i--) {
+            global.remove(addedGlobals.remove(i));
+        }
+
+        currentSegment = cp.currentSegment;
+        System.arraycopy(cp.segmentAddrs, 0, segmentAddrs, 0, segmentAddrs.length);
+        setAlignment(cp.alignmentBits);
+        pendingLabels.clear();
+        Collections.addAll(pendingLabels, cp.pendingLabels);
+    }
+
+    /**
+     * Removes the address associated with a code statement.
+     *
+     * @param smt the code statement
+     */
+    void unmapStatement(CodeStatement smt) {
+        locations.remove(smt);
     }
 }
@@ -1,21 +1,19 @@
 package com.theKidOfArcrania.mips.parsing;
 
 import com.theKidOfArcrania.mips.Constants;
-import com.theKidOfArcrania.mips.util.FallibleFunction;
+import com.theKidOfArcrania.mips.util.KeywordTable;
+import com.theKidOfArcrania.mips.util.TreeList;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.theKidOfArcrania.mips.parsing.Range.characterRange;
 import static com.theKidOfArcrania.mips.parsing.Range.tokenRange;
 import static com.theKidOfArcrania.mips.parsing.TokenType.*;
-import static com.theKidOfArcrania.mips.util.FallibleFunction.tryOptional;
 import static java.lang.Character.isJavaIdentifierStart;
 import static java.lang.Character.isWhitespace;
-import static java.lang.Integer.parseInt;
 
 /**
  * Reads in token words for each line of code. This splits an existing body of code into lines, and it parses each
@@ -33,14 +31,23 @@ import static java.lang.Integer.parseInt;
  * @author Henry Wang
  */
 public class CodeTokenReader implements Constants {
-    private static final Pattern NEW_LINE = Pattern.compile("\r?\n");
-    private static final Pattern INDIRECT = Pattern.compile("^(-?[0-9]+)?\\((\\$[a-zA-Z0-9]+)\\)$");
+    private static final long NOT_AN_INTEGER = Long.MIN_VALUE;
     private static final String[] REG_ALIAS = {"$zero", "$at", "$v0", "$v1", "$a0", "$a1", "$a2", "$a3", "$t0", "$t1",
             "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7", "$t8",
             "$t9", "$k0", "$k1", "$gp", "$sp", "$fp", "$ra"};
+    private static final KeywordTable<Integer> REG_NAMES;
 
+    static {
+        HashMap<String, Integer> names = new HashMap<>();
+        for (int i = 0; i < REG_ALIAS.length; i++) {
+            names.put(REG_ALIAS[i], i);
+        }
+        REG_NAMES = new KeywordTable<>(names, false);
+    }
 
-    private final ArrayList<String> lines;
+
+    private TreeList<String> lines;
+    private CodeSource source;
     private String line;
 
     private int lineNum;
@@ -66,13 +73,49 @@ public class CodeTokenReader implements Constants {
     private final ErrorLogger delegateLogger;
 
     /**
-     * Constructs a CodeTokenReader reading from the specified code body.
+     * Constructs a CodeTokenReader reading from the specified code body. Like {@link String#split(String)}, any
+     * trailing empty lines are dropped.
      *
      * @param code the code body to read from.
      */
-    public CodeTokenReader(String code) {
-        lines = new ArrayList<>();
-        Collections.addAll(lines, NEW_LINE.split(code));
+    public CodeTokenReader(CharSequence code) {
+        this(new TreeList<>(trimTrailing(splitLines(code))), null);
+    }
+
+    /**
+     * Constructs a CodeTokenReader that reads each line from a code source on demand, i.e. a memory-mapped file. The
+     * lines are only copied into this reader once any line is inserted, modified or deleted.
+     *
+     * @param source the code source to read from.
+     */
+    public CodeTokenReader(CodeSource source) {
+        this(null, source);
+    }
+
+    /**
+     * Constructs a CodeTokenReader that reads from the same lines of code as another reader, but with its own cursor
+     * and error loggers. This allows several lines to be parsed concurrently, as long as the lines themselves are not
+     * modified in the meantime.
+     *
+     * @param shared the token reader whose lines to read from.
+     */
+    CodeTokenReader(CodeTokenReader shared) {
+        this(shared.lines, shared.source);
+        if (source != null) {
+            //Find all the lines up front, so that the code source is only ever read from.
+            source.getLineCount();
+        }
+    }
+
+    /**
+     * Constructs a CodeTokenReader reading from either a list of lines or a code source.
+     *
+     * @param lines  the lines of code to read from, or null to read from the code source.
+     * @param source the code source to read from, if there is no list of lines.
+     */
+    private CodeTokenReader(TreeList<String> lines, CodeSource source) {
+        this.lines = lines;
+        this.source = source;
         line = null;
         lineNum = 0;
 
@@ -94,6 +137,76 @@ public class CodeTokenReader implements Constants {
         };
     }
 
+    /**
+     * Splits a code body into its lines with a single scan, with lines separated by either <tt>\n</tt> or
+     * <tt>\r\n</tt>. Every line is kept, so there is always one more line than there are line breaks.
+     *
+     * @param code the code body to split.
+     * @return the list of lines.
+     */
+    static ArrayList<String> splitLines(CharSequence code) {
+        ArrayList<String> split = new ArrayList<>();
+        int len = code.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (code.charAt(i) == '\n') {
+                int end = i > start && code.charAt(i - 1) == '\r' ? i - 1 : i;
+                split.add(code.subSequence(start, end).toString());
+                start = i + 1;
+            }
+        }
+        split.add(code.subSequence(start, len).toString());
+        return split;
+    }
+
+    /**
+     * Removes all trailing empty lines, in the same way that {@link java.util.regex.Pattern#split(CharSequence)} does.
+     *
+     * @param split the lines that were split
+     * @return the same list.
+     */
+    private static ArrayList<String> trimTrailing(ArrayList<String> split) {
+        if (split.size() > 1) {
+            int size = split.size();
+            while (size > 0 && split.get(size - 1).isEmpty()) {
+                size--;
+            }
+            split.subList(size, split.size()).clear();
+        }
+        return split;
+    }
+
+    /**
+     * Replaces all the lines of this token reader in bulk, and moves the reader back before the first line. Unlike the
+     * constructor, every line is kept, including any trailing empty lines.
+     *
+     * @param code the new code body to read from.
+     */
+    public void loadLines(CharSequence code) {
+        resetLine();
+        lineNum = 0;
+        line = null;
+        source = null;
+        lines = new TreeList<>(splitLines(code));
+    }
+
+    /**
+     * Obtains the list of lines so that it can be modified, copying all the lines from the code source if needed.
+     *
+     * @return the list of lines.
+     */
+    private TreeList<String> editableLines() {
+        if (lines == null) {
+            String[] copy = new String[source.getLineCount()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = source.getLine(i + 1);
+            }
+            lines = new TreeList<>(Arrays.asList(copy));
+            source = null;
+        }
+        return lines;
+    }
+
     /**
      * Obtains line at the particular line number
      *
@@ -101,7 +214,7 @@ public class CodeTokenReader implements Constants {
      * @return the line string.
      */
     public String getLine(int lineNum) {
-        return lines.get(lineNum - 1);
+        return lines == null ? source.getLine(lineNum) : lines.get(lineNum - 1);
     }
 
     public String getLine() {
@@ -109,7 +222,7 @@ public class CodeTokenReader implements Constants {
     }
 
     public int getLineCount() {
-        return lines.size();
+        return lines == null ? source.getLineCount() : lines.size();
     }
 
     /**
@@ -121,7 +234,7 @@ public class CodeTokenReader implements Constants {
         if (!hasNextLine()) {
             throw new NoSuchElementException();
         }
-        line = lines.get(lineNum++);
+        line = getLine(++lineNum);
         resetLine();
     }
 
@@ -150,7 +263,7 @@ public class CodeTokenReader implements Constants {
      * @param line the line to add
      */
     public void insertLine(int num, String line) {
-        lines.add(num - 1, line);
+        editableLines().add(num - 1, line);
         if (num <= lineNum) {
             lineNum++;
         }
@@ -169,7 +282,7 @@ public class CodeTokenReader implements Constants {
             lineNum = 0;
             line = null;
         }
-        lines.remove(num - 1);
+        editableLines().remove(num - 1);
         if (num < lineNum) {
             lineNum--;
         }
@@ -186,7 +299,7 @@ public class CodeTokenReader implements Constants {
         if (lineNum == num) {
             resetLine();
         }
-        lines.set(num - 1, line);
+        editableLines().set(num - 1, line);
     }
 
     /**
@@ -237,7 +350,7 @@ public class CodeTokenReader implements Constants {
      * @param lineNum the line number to parse.
      */
     public void beginLine(int lineNum) {
-        line = lines.get(lineNum - 1);
+        line = getLine(lineNum);
         this.lineNum = lineNum;
         resetLine();
     }
@@ -277,7 +390,8 @@ public class CodeTokenReader implements Constants {
     }
 
     /**
-     * Gets the current token as a string
+     * Gets the current token as a string. The string is only created on demand, since most tokens are interpreted
+     * straight from the line.
      *
      * @return the token string value
      * @throws IllegalStateException if no current token is selected.
@@ -286,6 +400,10 @@ public class CodeTokenReader implements Constants {
         if (tokenNum == -1) {
             throw new IllegalStateException("No current token selected.");
         }
+        if (token == null) {
+            //A token with nothing but illegal characters has no end.
+            token = tokenEndIndex == -1 ? "" : line.substring(tokenStartIndex, tokenEndIndex);
+        }
         return token;
     }
 
@@ -332,14 +450,31 @@ public class CodeTokenReader implements Constants {
     }
 
     /**
-     * Parses the token value based on the token type that is being parsed.
+     * Parses the token value based on the token type that is being parsed. The names of identifiers, labels and
+     * directives are only created on demand, like {@link #getToken()}.
      *
-     * @return
+     * @return the token value, or null if this token is malformed.
+     * @throws IllegalStateException if no current token is selected.
      */
     public Object getTokenValue() {
         if (tokenNum == -1) {
             throw new IllegalStateException("No current token selected.");
         }
+        if (tokenVal == null) {
+            switch (tokenType) {
+                case IDENTIFIER:
+                    tokenVal = getToken();
+                    break;
+                case LABEL:
+                    tokenVal = tokenSource().substring(tokenSourceStart(), tokenSourceEnd() - 1);
+                    break;
+                case DIRECTIVE:
+                    tokenVal = tokenSource().substring(tokenSourceStart() + 1, tokenSourceEnd());
+                    break;
+                default:
+                    break;
+            }
+        }
         return tokenVal;
     }
 
@@ -358,7 +493,7 @@ public class CodeTokenReader implements Constants {
      * @return true if there is a line remaining, false otherwise.
      */
     public boolean hasNextLine() {
-        return lines.size() > lineNum;
+        return getLineCount() > lineNum;
     }
 
     /**
@@ -412,7 +547,7 @@ public class CodeTokenReader implements Constants {
                 error = true;
             } else if (tokenError) {
                 error = true;
-            } else if (tokenVal == null) {
+            } else if (!hasTokenValue()) {
                 errorExpected(params[i].getExactType(this).getName());
                 error = true;
             } else if (params[i].checkToken(this)) {
@@ -478,30 +613,36 @@ public class CodeTokenReader implements Constants {
         char ch = line.charAt(colNum);
         if (ch == '$') {
             parseToken("");
-            parseRegister();
+            tokenType = REGISTER;
+            tokenVal = parseRegister(tokenSource(), tokenSourceStart(), tokenSourceEnd());
         } else if ((ch >= '0' && ch <= '9') || ch == '-') {
             parseToken("+-()$");
-            if (token.contains("(")) {
-                parseRegIndirect();
+            String src = tokenSource();
+            int from = tokenSourceStart();
+            int to = tokenSourceEnd();
+            if (indexOf(src, '(', from, to) != -1) {
+                parseRegIndirect(src, from, to);
             } else {
-                parseNumber();
+                parseNumber(src, from, to);
             }
         } else if (ch == '"') {
             parseStringToken();
         } else if (isJavaIdentifierStart(ch)) {
-            tokenType = TokenType.IDENTIFIER;
             parseToken(":");
-            if (token.contains(":")) {
-                tokenVal = token.substring(0, token.length() - 1);
-                verifyLabel();
+            String src = tokenSource();
+            int from = tokenSourceStart();
+            int to = tokenSourceEnd();
+            tokenVal = null;
+            if (indexOf(src, ':', from, to) != -1) {
                 tokenType = TokenType.LABEL;
+                verifyLabel(src, from, to - 1);
             } else {
-                tokenVal = token;
+                tokenType = TokenType.IDENTIFIER;
             }
         } else if (ch == '.') {
             tokenType = DIRECTIVE;
             parseToken("");
-            tokenVal = token.substring(1);
+            tokenVal = null;
         } else if (ch == ',') {
             if (hasArgumentSeparator) {
                 error("Unexpected comma.", characterRange(lineNum, colNum));
@@ -535,6 +676,7 @@ public class CodeTokenReader implements Constants {
 
         tokenStartIndex = -1;
         tokenEndIndex = -1;
+        token = null;
         hasArgumentSeparator = false;
         argumentError = false;
         tokenError = false;
@@ -560,13 +702,26 @@ public class CodeTokenReader implements Constants {
         }
     }
 
+    /**
+     * Checks whether if the current token has a value. Identifiers, labels and directives always have one, even
+     * before it is created.
+     *
+     * @return true if there is a token value, false if the token is malformed.
+     */
+    private boolean hasTokenValue() {
+        return tokenVal != null || tokenType == IDENTIFIER || tokenType == TokenType.LABEL || tokenType == DIRECTIVE;
+    }
+
     /**
      * Verifies that this label identifier has the correct syntax. This will emit any errors if necessary.
+     *
+     * @param src  the string containing the label
+     * @param from the starting index of the label
+     * @param to   the index of the colon after the label
      */
-    private void verifyLabel() {
-        String val = (String) tokenVal;
-        for (int i = 0; i < val.length(); i++) {
-            char ch = val.charAt(i);
+    private void verifyLabel(String src, int from, int to) {
+        for (int i = 0; i < to - from; i++) {
+            char ch = src.charAt(from + i);
             if (i == 0 ? !isJavaIdentifierStart(ch) : !Character.isJavaIdentifierPart(ch)) {
                 error("Illegal character.", characterRange(lineNum, tokenStartIndex + i));
                 tokenError = true;
@@ -576,84 +731,182 @@ public class CodeTokenReader implements Constants {
     }
 
     /**
-     * Parses a register from the current token. The token value is set to an integer representing the register index.
+     * Parses a register name, such as <tt>$t0</tt> or <tt>$8</tt>.
+     *
+     * @param src  the string containing the register name
+     * @param from the index of the '$' sign
+     * @param to   the index after the register name
+     * @return the register index, or null if this is not a valid register.
      */
-    private void parseRegister() {
-        Integer val = FallibleFunction.tryOptional(Integer::parseInt, token.substring(1)).orElse(null);
-        if (val == null) {
-            for (int i = 0; i < REG_ALIAS.length; i++) {
-                if (REG_ALIAS[i].equals(token)) {
-                    val = i;
-                    break;
-                }
-            }
+    private static Integer parseRegister(String src, int from, int to) {
+        long val = parseInteger(src, from + 1, to, DEC_RADIX);
+        if (val == NOT_AN_INTEGER) {
+            return REG_NAMES.get(src, from, to);
         }
 
-        tokenType = REGISTER;
-        if (val == null || val < 0 || val > REGISTER_COUNT) {
-            tokenVal = null;
-        } else {
-            tokenVal = val;
+        if (val < 0 || val > REGISTER_COUNT) {
+            return null;
         }
+        return (int) val;
     }
 
     /**
-     * Parses an indirect addressing mode operand. This sets the token value to an integer with the lower 16 bits set
-     * to offset, and the next 5 bits set to the register, and the upper 11 bits set to zero.
+     * Parses an indirect addressing mode operand, of the form <tt>offset($reg)</tt>, where the offset is an
+     * optional decimal integer. This sets the token value to a {@link RegIndirect}, or null if it is malformed.
+     *
+     * @param src  the string containing the token
+     * @param from the starting index of the token
+     * @param to   the index after the token
      */
-    private void parseRegIndirect() {
-        String tmp = token;
-        Matcher match = INDIRECT.matcher(token);
-        if (!match.matches()) {
-            tokenType = TokenType.INDIRECT;
-            tokenVal = null;
+    private void parseRegIndirect(String src, int from, int to) {
+        tokenType = TokenType.INDIRECT;
+        tokenVal = null;
+
+        int ind = from;
+        if (src.charAt(ind) == '-') {
+            ind++;
+        }
+        while (ind < to && src.charAt(ind) >= '0' && src.charAt(ind) <= '9') {
+            ind++;
+        }
+        int offsetEnd = ind;
+        if (offsetEnd != from && src.charAt(offsetEnd - 1) == '-') {
             return;
         }
 
-        String str = match.group(1);
-        int offset = (str == null) ? 0 : parseInt(str);
-
-        token = match.group(2);
-        parseRegister();
-        token = tmp;
-        if (tokenVal != null) {
-            tokenVal = new RegIndirect(offset, (Integer) tokenVal);
+        if (ind >= to || src.charAt(ind++) != '(' || ind >= to || src.charAt(ind) != '$') {
+            return;
+        }
+        int regStart = ind++;
+        while (ind < to && isAlphanumeric(src.charAt(ind))) {
+            ind++;
+        }
+        int regEnd = ind;
+        if (regEnd == regStart + 1 || ind + 1 != to || src.charAt(ind) != ')') {
+            return;
         }
 
-        tokenType = TokenType.INDIRECT;
+        long offset = offsetEnd == from ? 0 : parseInteger(src, from, offsetEnd, DEC_RADIX);
+        Integer reg = parseRegister(src, regStart, regEnd);
+        if (offset != NOT_AN_INTEGER && reg != null) {
+            tokenVal = new RegIndirect((int) offset, reg);
+        }
     }
 
-
     /**
      * Parses a numeric value of current token.
+     *
+     * @param src  the string containing the token
+     * @param from the starting index of the token
+     * @param to   the index after the token
      */
-    private void parseNumber() {
-        boolean hex = token.startsWith("0x");
-
-        FallibleFunction<Integer, String> parsing;
-        if (hex) {
-            parsing = str -> parseInt(str.substring(2), HEX_RADIX);
+    private void parseNumber(String src, int from, int to) {
+        long val;
+        if (src.startsWith("0x", from)) {
             tokenType = HEXADECIMAL;
+            val = parseInteger(src, from + 2, to, HEX_RADIX);
         } else {
-            parsing = Integer::parseInt;
             tokenType = DECIMAL;
+            val = parseInteger(src, from, to, DEC_RADIX);
+        }
+        tokenVal = val == NOT_AN_INTEGER ? null : (int) val;
+    }
+
+    /**
+     * Parses a signed integer from a section of a string, with the same syntax as
+     * {@link Integer#parseInt(String, int)}, but without creating any strings or throwing any exceptions.
+     *
+     * @param src   the string to parse from
+     * @param from  the starting index
+     * @param to    the ending index (exclusive)
+     * @param radix the radix of the integer
+     * @return the parsed integer, or {@link #NOT_AN_INTEGER} if this is not a valid integer.
+     */
+    private static long parseInteger(String src, int from, int to, int radix) {
+        boolean negative = false;
+        if (from < to && (src.charAt(from) == '-' || src.charAt(from) == '+')) {
+            negative = src.charAt(from) == '-';
+            from++;
+        }
+        if (from >= to) {
+            return NOT_AN_INTEGER;
+        }
+
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long val = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(src.charAt(i), radix);
+            if (digit == -1) {
+                return NOT_AN_INTEGER;
+            }
+            val = val * radix + digit;
+            if (val > limit) {
+                return NOT_AN_INTEGER;
+            }
+        }
+        return negative ? -val : val;
+    }
+
+    /**
+     * Finds a character within a section of a string.
+     *
+     * @param src  the string to search
+     * @param ch   the character to search for
+     * @param from the starting index
+     * @param to   the ending index (exclusive)
+     * @return the index of the first such character, or -1 if not found.
+     */
+    private static int indexOf(String src, char ch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (src.charAt(i) == ch) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        tokenVal = tryOptional(parsing, token).orElse(null);
+    /**
+     * Determines whether a character is an ASCII letter or digit.
+     *
+     * @param ch the character
+     * @return true if it is alphanumeric, false otherwise.
+     */
+    private static boolean isAlphanumeric(char ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    /**
+     * Obtains the string that the current token should be interpreted from. This is normally the line itself, unless
+     * the token had illegal characters, which are left out of the token.
+     *
+     * @return the token source string.
+     */
+    private String tokenSource() {
+        return token == null ? line : token;
+    }
+
+    private int tokenSourceStart() {
+        return token == null ? tokenStartIndex : 0;
+    }
+
+    private int tokenSourceEnd() {
+        return token == null ? tokenEndIndex : token.length();
     }
 
     /**
      * Parses a normal token, consisting of any valid identifiers and specified special characters. This will stop
      * when it encounters a whitespace or a pound-sign comment (#). This also allows a special case (allowing ':') if
      * the token type is identifier to account for labels. Reaching the end of the colon will then act as a word break.
+     * <p>
+     * This only marks the boundaries of the token within the line, without copying it. Only if the token contains
+     * illegal characters, the token string (without those characters) is built right away.
      *
      * @param specialChars special characters that should also be acceptable.
      */
     private void parseToken(String specialChars) {
         tokenStartIndex = colNum;
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(line.charAt(colNum));
+        StringBuilder sb = null;
         colNum++; //ignore the first character
         while (colNum < line.length()) {
             char ch = line.charAt(colNum);
@@ -662,13 +915,16 @@ public class CodeTokenReader implements Constants {
             } else if (!Character.isJavaIdentifierPart(ch) && specialChars.indexOf(ch) == -1) {
                 tokenError = true;
                 error("Illegal character.", characterRange(lineNum, colNum));
-            } else {
+                if (sb == null) {
+                    sb = new StringBuilder(line.substring(tokenStartIndex, colNum));
+                }
+            } else if (sb != null) {
                 sb.append(ch);
             }
             colNum++;
         }
         tokenEndIndex = colNum;
-        token = sb.toString();
+        token = sb == null ? null : sb.toString();
     }
 
     /**
@@ -724,16 +980,18 @@ public class CodeTokenReader implements Constants {
                             }
                             continue mainLoop;
                         }
-                        String point = line.substring(colNum + 1, colNum + 1 + charSize).toUpperCase();
-                        for (char hex : point.toCharArray()) {
-                            if (!Character.isLetterOrDigit(hex) || hex > 'F') {
+                        int point = 0;
+                        for (int i = 1; i <= charSize; i++) {
+                            char hex = line.charAt(colNum + i);
+                            if (!isAlphanumeric(hex) || Character.digit(hex, HEX_RADIX) == -1) {
                                 if (errorMsg == null) {
                                     errorMsg = "Invalid hexadecimal.";
                                 }
                                 continue mainLoop;
                             }
+                            point = point * HEX_RADIX + Character.digit(hex, HEX_RADIX);
                         }
-                        ret.append((char) Integer.parseInt(point, HEX_RADIX));
+                        ret.append((char) point);
                         colNum += charSize;
                         break;
                     default:
@@ -759,7 +1017,6 @@ public class CodeTokenReader implements Constants {
 
         tokenEndIndex = colNum;
         tokenType = TokenType.STRING;
-        token = line.substring(tokenStartIndex, tokenEndIndex);
         if (errorMsg == null) {
             tokenVal = ret.toString();
         } else {
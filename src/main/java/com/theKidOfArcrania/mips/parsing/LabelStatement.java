@@ -73,7 +73,7 @@ public class LabelStatement extends CodeStatement {
     }
 
     @Override
-    public byte[] write(CodeSymbols symbols) {
-        return new byte[0];
+    public void write(CodeSymbols symbols, byte[] image, int offset) {
+        //Does nothing
     }
 }
@@ -73,19 +73,17 @@ public class BinaryDataDirType extends DirType {
     /**
      * {@inheritDoc}
      * <p>
-     * This writes the numeric binary data to our .data segment in little endian format, returning the binary format
-     * of this data. It will only return the numeric data itself, unpadded from alignment.
+     * This writes the numeric binary data to our .data segment in little endian format. The offset already points
+     * past any alignment padding.
      */
     @Override
-    public byte[] write(DirStatement dir) {
-        byte[] data = new byte[size * dir.getArgSize()];
-        for (int i = 0; i < data.length; i++) {
+    public void write(DirStatement dir, byte[] image, int offset) {
+        for (int i = 0; i < dir.getArgSize(); i++) {
             int val = dir.getIntArgValue(i);
             for (int j = 0; j < size; j++) {
-                data[i] = (byte) val;
+                image[offset++] = (byte) val;
                 val >>= Byte.SIZE;
             }
         }
-        return data;
     }
 }
@@ -19,8 +19,8 @@ public class DirStatement extends ArgumentedStatement {
      * @return the parsed statement
      */
     public static DirStatement parseStatement(CodeTokenReader reader) {
-        String dirName = reader.getToken().substring(1);
-        DirType dirType = DirTypes.fetchDirective(dirName);
+        DirType dirType = DirTypes.fetchDirective(reader.getLine(), reader.getTokenStartIndex() + 1,
+                reader.getTokenEndIndex());
         if (dirType == null) {
             reader.error("Invalid directive name.", reader.getTokenPos());
             return null;
@@ -68,7 +68,7 @@ public class DirStatement extends ArgumentedStatement {
     }
 
     @Override
-    public byte[] write(CodeSymbols symbols) {
-        return dirType.write(this);
+    public void write(CodeSymbols symbols, byte[] image, int offset) {
+        dirType.write(this, image, offset);
     }
 }
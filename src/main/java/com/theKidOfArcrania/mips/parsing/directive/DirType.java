@@ -105,13 +105,15 @@ public abstract class DirType {
     }
 
     /**
-     * Turns a directive into it's data bytes. This will NEVER return a null array
+     * Writes the data bytes of a directive into the segment image. By default, this does nothing, so any space
+     * allocated by the directive is left zeroed.
      *
-     * @param dir the directive statement to write.
-     * @return the binary form of this directive. This will return an empty array by default
+     * @param dir    the directive statement to write.
+     * @param image  the image of the segment that this directive is in.
+     * @param offset the offset within the image to write to.
      */
-    public byte[] write(DirStatement dir) {
-        return new byte[0];
+    public void write(DirStatement dir, byte[] image, int offset) {
+        //Does nothing
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.theKidOfArcrania.mips.parsing.directive;
 
+import com.theKidOfArcrania.mips.util.KeywordTable;
+
 import java.util.HashMap;
 
 /**
@@ -9,14 +11,15 @@ import java.util.HashMap;
  * @author Henry Wang
  */
 public final class DirTypes {
-    private static final HashMap<String, DirType> dirs;
+    private static final HashMap<String, DirType> dirNames = new HashMap<>();
+    private static final KeywordTable<DirType> dirs;
 
     static {
-        dirs = new HashMap<>();
         BinaryDataDirType.init();
         StringDataDirType.init();
         SegmentDirType.init();
         MiscDirType.init();
+        dirs = new KeywordTable<>(dirNames, true);
     }
 
     /**
@@ -26,7 +29,20 @@ public final class DirTypes {
      * @return the directive type if found.
      */
     public static DirType fetchDirective(String name) {
-        return dirs.get(name.toUpperCase());
+        return dirs.get(name);
+    }
+
+    /**
+     * Locates the directive with the name within a range of characters, such as a token within a line of code. The
+     * name is matched case-insensitively.
+     *
+     * @param src  the characters containing the directive name (without the dot prepend).
+     * @param from the starting index of the name
+     * @param to   the ending index of the name (exclusive)
+     * @return the directive type if found.
+     */
+    public static DirType fetchDirective(CharSequence src, int from, int to) {
+        return dirs.get(src, from, to);
     }
 
     /**
@@ -37,8 +53,12 @@ public final class DirTypes {
      *
      * @param name the name of the directive
      * @param dir  the directive type
+     * @throws IllegalStateException if all the directives have already been initialized.
      */
     static void addDirective(String name, DirType dir) {
-        dirs.put(name.toUpperCase(), dir);
+        if (dirs != null) {
+            throw new IllegalStateException("Directives are already initialized.");
+        }
+        dirNames.put(name.toUpperCase(), dir);
     }
 }
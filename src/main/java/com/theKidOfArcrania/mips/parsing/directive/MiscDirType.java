@@ -79,19 +79,6 @@ public abstract class MiscDirType extends DirType {
                 symbols.setAlignment(align);
                 return true;
             }
-
-            @Override
-            public boolean verifySymbols(ErrorLogger logger, DirStatement dir, CodeSymbols resolved) {
-                if (!super.resolveSymbols(logger, dir, resolved)) {
-                    return false;
-                }
-
-                if (resolved.resolveLabel(dir.getArgValue(0, String.class)) == -1) {
-                    logger.logError("Unresolved global symbol", dir.getLineRange());
-                    return false;
-                }
-                return true;
-            }
         });
     }
 
@@ -6,7 +6,6 @@ import com.theKidOfArcrania.mips.parsing.ErrorLogger;
 import static com.theKidOfArcrania.mips.Constants.SEG_DATA;
 import static com.theKidOfArcrania.mips.parsing.BasicParamType.STRING;
 import static com.theKidOfArcrania.mips.parsing.directive.DirTypes.addDirective;
-import static java.util.Arrays.copyOf;
 
 /**
  * This represents all the string data directive types. They encompass the two directives, with the following syntax:
@@ -52,9 +51,14 @@ public class StringDataDirType extends DirType {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The null-terminator of the <code>asciiz</code> form is not written out, since the image is already zeroed.
+     */
     @Override
-    public byte[] write(DirStatement dir) {
+    public void write(DirStatement dir, byte[] image, int offset) {
         byte[] str = dir.getArgValue(0, String.class).getBytes();
-        return nullTerminate ? copyOf(str, str.length) : str;
+        System.arraycopy(str, 0, image, offset, str.length);
     }
 }
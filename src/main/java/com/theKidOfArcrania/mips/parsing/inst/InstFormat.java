@@ -4,7 +4,7 @@ import com.theKidOfArcrania.mips.Constants;
 import com.theKidOfArcrania.mips.parsing.BasicParamType;
 import com.theKidOfArcrania.mips.parsing.CodeSymbols;
 import com.theKidOfArcrania.mips.parsing.RegIndirect;
-import com.theKidOfArcrania.mips.util.BitPacker;
+import com.theKidOfArcrania.mips.util.InstCodec;
 
 /**
  * Represents all the possible instruction formats possible
@@ -17,58 +17,76 @@ public enum InstFormat implements Constants {
     FORMAT_I(0, BITS_OPCODE), FORMAT_J(0, BITS_OPCODE);
 
     /**
-     * Converts an instruction statement into its component bytes.
+     * Encodes an instruction statement and writes it into a segment image in little endian format.
      *
-     * @param inst     the instruction statement
+     * @param inst     the (real) instruction statement
      * @param resolved the resolved code symbols
-     * @return a byte array encapsulating the instruction
+     * @param addr     the address that this instruction is located at
+     * @param image    the image of the text segment
+     * @param offset   the offset within the image to write to
      */
-    public static byte[] writeInst(InstStatement inst, CodeSymbols resolved) {
+    public static void writeInst(InstStatement inst, CodeSymbols resolved, int addr, byte[] image, int offset) {
+        int word = encodeInst(inst, resolved, addr);
+        for (int i = 0; i < INST_SIZE; i++) {
+            image[offset + i] = (byte) word;
+            word >>>= Byte.SIZE;
+        }
+    }
+
+    /**
+     * Encodes an instruction statement into its instruction word.
+     *
+     * @param inst     the (real) instruction statement
+     * @param resolved the resolved code symbols
+     * @param addr     the address that this instruction is located at
+     * @return the instruction word
+     */
+    public static int encodeInst(InstStatement inst, CodeSymbols resolved, int addr) {
         InstOpcodes opcode = inst.getOpcode();
         InstFormat format = opcode.getFormat();
 
-        BitPacker bits = new BitPacker(INST_SIZE);
+        int word = 0;
         if (format == FORMAT_RI) {
-            bits.set(0, BITS_OPCODE, 1);
+            word |= InstCodec.field(0, BITS_OPCODE, 1);
         }
 
-        bits.set(format.opcodeOffset, format.opcodeLength, opcode.getOpcode());
+        word |= InstCodec.field(format.opcodeOffset, format.opcodeLength, opcode.getOpcode());
 
         int[] regOrder = opcode.getRegOrder();
         int regs = 0;
         for (int i = 0; i < inst.getArgSize(); i++) {
             switch ((BasicParamType) inst.getArgExactType(i)) {
                 case SHAMT:
-                    bits.set(BITS_SHAMT_OFF, BITS_SHAMT, inst.getIntArgValue(i));
+                    word |= InstCodec.field(BITS_SHAMT_OFF, BITS_SHAMT, inst.getIntArgValue(i));
                     break;
                 case HWORD:
-                    bits.set(BITS_IMM_OFF, BITS_IMM, inst.getIntArgValue(i));
+                    word |= InstCodec.field(BITS_IMM_OFF, BITS_IMM, inst.getIntArgValue(i));
                     break;
                 case WORD:
                     throw new IllegalArgumentException("Cannot write a WORD number");
                 case INDIRECT:
                     RegIndirect mem = inst.getArgValue(i, RegIndirect.class);
-                    bits.set(BITS_REG_OFF + BITS_REG * regOrder[regs++], BITS_REG, mem.getRegInd());
-                    bits.set(BITS_IMM_OFF, BITS_IMM, mem.getOffset());
+                    word |= InstCodec.field(BITS_REG_OFF + BITS_REG * regOrder[regs++], BITS_REG, mem.getRegInd());
+                    word |= InstCodec.field(BITS_IMM_OFF, BITS_IMM, mem.getOffset());
                     break;
                 case REGISTER:
-                    bits.set(BITS_REG_OFF + BITS_REG * regOrder[regs++], BITS_REG, inst.getIntArgValue(i));
+                    word |= InstCodec.field(BITS_REG_OFF + BITS_REG * regOrder[regs++], BITS_REG,
+                            inst.getIntArgValue(i));
                     break;
                 case LOCATION:
-                    int addr = resolved.resolveLabel(inst.getArgValue(i, String.class));
+                    int target = resolved.resolveLabel(inst.getArgValue(i, String.class));
                     if (format == FORMAT_J) {
-                        addr = (addr >> 2) & BITS_ADDR_MASK;
-                        bits.set(BITS_ADDR_OFF, BITS_ADDR, addr);
+                        word |= InstCodec.field(BITS_ADDR_OFF, BITS_ADDR, target >> 2);
                     } else {
-                        addr = (addr >> 2) - resolved.getStatementAddress(inst);
-                        bits.set(BITS_IMM_OFF, BITS_IMM, addr);
+                        //Branches are relative to the delay slot.
+                        word |= InstCodec.field(BITS_IMM_OFF, BITS_IMM, (target - addr - INST_SIZE) >> 2);
                     }
                     break;
                 default:
                     throw new IllegalArgumentException("Unsupported argument type: " + inst.getArgExactType(i));
             }
         }
-        return bits.toBytes();
+        return word;
     }
 
     private final int opcodeOffset;
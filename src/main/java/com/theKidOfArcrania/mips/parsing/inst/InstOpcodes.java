@@ -1,5 +1,7 @@
 package com.theKidOfArcrania.mips.parsing.inst;
 
+import com.theKidOfArcrania.mips.util.KeywordTable;
+
 import java.util.HashMap;
 
 /**
@@ -42,11 +44,11 @@ public enum InstOpcodes {
     SRAV(InstSpec.SPEC_RRR, 0x7, 2, 1, 0),
 
     //Comparision
-    SLT(InstSpec.SPEC_RRR, 0x2a, 2, 1, 0),
-    SLTU(InstSpec.SPEC_RRR, 0x2b, 2, 1, 0),
+    SLT(InstSpec.SPEC_RRR, 0x2a, 2, 0, 1),
+    SLTU(InstSpec.SPEC_RRR, 0x2b, 2, 0, 1),
 
-    SLTI(InstSpec.SPEC_RRI_16, 0xa, 0, 1),
-    SLTIU(InstSpec.SPEC_RRI_16, 0xb, 0, 1),
+    SLTI(InstSpec.SPEC_RRI_16, 0xa, 1, 0),
+    SLTIU(InstSpec.SPEC_RRI_16, 0xb, 1, 0),
 
     //Logical operations
     AND(InstSpec.SPEC_RRR, 0x24, 2, 1, 0),
@@ -54,9 +56,9 @@ public enum InstOpcodes {
     NOR(InstSpec.SPEC_RRR, 0x27, 2, 1, 0),
     XOR(InstSpec.SPEC_RRR, 0x26, 2, 1, 0),
 
-    ANDI(InstSpec.SPEC_RRI_16, 0xc, 0, 1),
-    ORI(InstSpec.SPEC_RRI_16, 0xd, 0, 1),
-    XORI(InstSpec.SPEC_RRI_16, 0xe, 0, 1),
+    ANDI(InstSpec.SPEC_RRI_16, 0xc, 1, 0),
+    ORI(InstSpec.SPEC_RRI_16, 0xd, 1, 0),
+    XORI(InstSpec.SPEC_RRI_16, 0xe, 1, 0),
     LUI(InstSpec.SPEC_RI_16, 0xf, 1),
 
     //**********************
@@ -128,13 +130,14 @@ public enum InstOpcodes {
     NOP(InstSpec.SPEC_NO_ARG, -1),
     REM(InstSpec.SPEC_RRR, -1);
 
-    private static final HashMap<String, InstOpcodes> nameMappings;
+    private static final KeywordTable<InstOpcodes> nameMappings;
 
     static {
-        nameMappings = new HashMap<>();
+        HashMap<String, InstOpcodes> names = new HashMap<>();
         for (InstOpcodes opcode : InstOpcodes.values()) {
-            nameMappings.put(opcode.getInstName(), opcode);
+            names.put(opcode.getInstName(), opcode);
         }
+        nameMappings = new KeywordTable<>(names, true);
     }
 
 
@@ -145,7 +148,20 @@ public enum InstOpcodes {
      * @return the corresponding opcode, or null if instruction name does not exist.
      */
     public static InstOpcodes fetchOpcode(String instName) {
-        return nameMappings.get(instName.toUpperCase());
+        return nameMappings.get(instName);
+    }
+
+    /**
+     * Fetches the corresponding opcode from an instruction name within a range of characters, such as a token
+     * within a line of code. The name is matched case-insensitively.
+     *
+     * @param src  the characters containing the instruction name
+     * @param from the starting index of the name
+     * @param to   the ending index of the name (exclusive)
+     * @return the corresponding opcode, or null if instruction name does not exist.
+     */
+    public static InstOpcodes fetchOpcode(CharSequence src, int from, int to) {
+        return nameMappings.get(src, from, to);
     }
 
     private final InstSpec spec;
@@ -122,7 +122,8 @@ public enum InstSpec {
                         return false;
                     }
                 } else if (inst.getOpcode() != InstOpcodes.LA) {
-                    int offset = (addr - instAddr) >> 2;
+                    //The branch is the last real instruction, and is relative to its delay slot.
+                    int offset = (addr - (instAddr + inst.getSize())) >> 2;
                     if (offset != (short) offset) {
                         logger.logError("Branch offset too big.", inst.getArg(i).getTokenPos());
                         return false;
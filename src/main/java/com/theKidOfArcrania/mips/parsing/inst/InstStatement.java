@@ -32,8 +32,8 @@ public class InstStatement extends ArgumentedStatement {
      * @return the instruction parsed, or null.
      */
     public static InstStatement parseStatement(CodeTokenReader reader) {
-        String instName = reader.getToken();
-        InstOpcodes opcode = InstOpcodes.fetchOpcode(instName);
+        InstOpcodes opcode = InstOpcodes.fetchOpcode(reader.getLine(), reader.getTokenStartIndex(),
+                reader.getTokenEndIndex());
         if (opcode == null) {
             reader.error("Invalid instruction name.", reader.getTokenPos());
             return null;
@@ -78,7 +78,7 @@ public class InstStatement extends ArgumentedStatement {
                 int addr = (Integer) args[1].getValue();
                 real.add(new InstStatement(reader, InstOpcodes.LUI, args[0], new Argument(addr >> Short.SIZE,
                         args[1].getTokenPos(), BasicParamType.HWORD)));
-                real.add(new InstStatement(reader, InstOpcodes.ORI, args[0], new Argument(addr & WORD_MASK,
+                real.add(new InstStatement(reader, InstOpcodes.ORI, args[0], args[0], new Argument(addr & WORD_MASK,
                         args[1].getTokenPos(), BasicParamType.HWORD)));
                 break;
             case LA:
@@ -109,7 +109,7 @@ public class InstStatement extends ArgumentedStatement {
                 real.add(new InstStatement(reader, InstOpcodes.BEQ, ARG_R_AT, ARG_R_ZERO, args[2]));
                 break;
             case BGTU:
-                real.add(new InstStatement(reader, InstOpcodes.SLT, ARG_R_AT, args[1], args[0]));
+                real.add(new InstStatement(reader, InstOpcodes.SLTU, ARG_R_AT, args[1], args[0]));
                 real.add(new InstStatement(reader, InstOpcodes.BNE, ARG_R_AT, ARG_R_ZERO, args[2]));
                 break;
             case BEQZ:
@@ -189,13 +189,21 @@ public class InstStatement extends ArgumentedStatement {
         return opcode;
     }
 
+    /**
+     * @return the number of bytes this instruction takes up, counting every real instruction of a
+     * psuedo-instruction.
+     */
+    public int getSize() {
+        return real == null ? INST_SIZE : real.length * INST_SIZE;
+    }
+
     @Override
     public boolean resolveSymbols(CodeSymbols symbols) {
         if (symbols.getCurrentSegment() != SEG_TEXT) {
             reader.error("Not in .text segment.", getLineRange());
             return false;
         }
-        symbols.pushToSegment(this, INST_SIZE, 0);
+        symbols.pushToSegment(this, getSize(), 0);
         return true;
     }
 
@@ -205,26 +213,26 @@ public class InstStatement extends ArgumentedStatement {
     }
 
     @Override
-    public byte[] write(CodeSymbols symbols) {
+    public void write(CodeSymbols symbols, byte[] image, int offset) {
         if (opcode == InstOpcodes.LA) {
-            Argument args[] = getArgs();
-            int addr = symbols.resolveLabel((String) args[1].getValue());
-            real[0] = new InstStatement(reader, InstOpcodes.LUI, args[0], new Argument(addr >> Short.SIZE,
-                    args[1].getTokenPos(), BasicParamType.HWORD));
-            real[1] = new InstStatement(reader, InstOpcodes.ORI, args[0], new Argument(addr & WORD_MASK,
-                    args[1].getTokenPos(), BasicParamType.HWORD));
+            Argument dest = getArg(0);
+            Argument label = getArg(1);
+            int addr = symbols.resolveLabel((String) label.getValue());
+            real[0] = new InstStatement(reader, InstOpcodes.LUI, dest, new Argument(addr >> Short.SIZE,
+                    label.getTokenPos(), BasicParamType.HWORD));
+            real[1] = new InstStatement(reader, InstOpcodes.ORI, dest, dest, new Argument(addr & WORD_MASK,
+                    label.getTokenPos(), BasicParamType.HWORD));
         }
 
+        int addr = symbols.getStatementAddress(this);
         if (real != null) {
-            byte[] data = new byte[real.length * INST_SIZE];
-            int offset = 0;
             for (InstStatement inst : real) {
-                System.arraycopy(inst.write(symbols), 0, data, offset, INST_SIZE);
+                InstFormat.writeInst(inst, symbols, addr, image, offset);
+                addr += INST_SIZE;
                 offset += INST_SIZE;
             }
-            return data;
         } else {
-            return InstFormat.writeInst(this, symbols);
+            InstFormat.writeInst(this, symbols, addr, image, offset);
         }
     }
 }
@@ -0,0 +1,71 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.runner.BatchResult.Status;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the results of all the programs run in one batch of a {@link BatchRunner}.
+ *
+ * @author Henry Wang
+ */
+public final class BatchReport {
+    private final List<BatchResult> results;
+    private final Map<Status, Integer> counts;
+    private final long totalInstructions;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs a batch report.
+     *
+     * @param results      the results of each program, in the same order the programs were submitted
+     * @param elapsedNanos the wall time that the whole batch took, in nanoseconds
+     */
+    BatchReport(List<BatchResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+
+        Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        long total = 0;
+        for (BatchResult result : results) {
+            counts.merge(result.getStatus(), 1, Integer::sum);
+            total += result.getInstructions();
+        }
+        this.counts = Collections.unmodifiableMap(counts);
+        this.totalInstructions = total;
+    }
+
+    /**
+     * @return the results of each program, in the same order that the programs were submitted.
+     */
+    public List<BatchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the number of programs that finished with a particular status.
+     *
+     * @param status the status to count
+     * @return the number of programs.
+     */
+    public int getCount(Status status) {
+        return counts.getOrDefault(status, 0);
+    }
+
+    public long getTotalInstructions() {
+        return totalInstructions;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return results.size() + " programs " + counts + ", " + totalInstructions + " instructions in " +
+                elapsedNanos / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,99 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Represents the outcome of running a single program within a {@link BatchRunner}.
+ *
+ * @author Henry Wang
+ */
+public final class BatchResult {
+
+    /**
+     * Represents how a program in the batch finished.
+     */
+    public enum Status {
+        /**
+         * The program called the exit syscall.
+         */
+        EXITED,
+        /**
+         * The program trapped with a {@link ProgramException}.
+         */
+        TRAPPED,
+        /**
+         * The program used up its instruction budget.
+         */
+        STEP_LIMIT,
+        /**
+         * The program used up its time budget.
+         */
+        TIMEOUT,
+        /**
+         * The program could not be loaded.
+         */
+        LOAD_FAILED
+    }
+
+    private final String name;
+    private final Status status;
+    private final long instructions;
+    private final int pc;
+    private final ProgramException fault;
+    private final String output;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs a batch result.
+     *
+     * @param name         the name of the program
+     * @param status       how the program finished
+     * @param instructions the number of instructions executed
+     * @param pc           the PC the program stopped at
+     * @param fault        the exception that stopped the program, or null if none.
+     * @param output       everything that the program has written out
+     * @param elapsedNanos the wall time that the program took, in nanoseconds
+     */
+    BatchResult(String name, Status status, long instructions, int pc, ProgramException fault, String output,
+                long elapsedNanos) {
+        this.name = name;
+        this.status = status;
+        this.instructions = instructions;
+        this.pc = pc;
+        this.fault = fault;
+        this.output = output;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public int getPC() {
+        return pc;
+    }
+
+    public ProgramException getFault() {
+        return fault;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + status + " after " + instructions + " instructions at pc=0x" +
+                Integer.toHexString(pc) + (fault == null ? "" : " (" + fault.getMessage() + ")");
+    }
+}
@@ -0,0 +1,164 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.runner.BatchResult.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many independent programs concurrently and headlessly, e.g. to grade a batch of submissions. Every program
+ * runs within its own {@link Interpreter} (and therefore its own memory state), reads its input from its own byte
+ * array, and has all of its output captured separately.
+ * <p>
+ * The programs run on a bounded {@link ForkJoinPool}. Each program has both an instruction budget and a wall time
+ * budget; the time budget is checked every {@link #SLICE} instructions, so a program can slightly overrun it.
+ *
+ * @author Henry Wang
+ */
+public class BatchRunner implements AutoCloseable {
+
+    /**
+     * Represents a single program to run within a batch.
+     */
+    public static final class Job {
+        private final String name;
+        private final ProgramLoader loader;
+        private final byte[] input;
+
+        /**
+         * Constructs a job.
+         *
+         * @param name   the name of this program, used to identify its result
+         * @param loader loads the program into a fresh interpreter
+         * @param input  the bytes that the program reads as its input
+         */
+        public Job(String name, ProgramLoader loader, byte[] input) {
+            this.name = Objects.requireNonNull(name);
+            this.loader = Objects.requireNonNull(loader);
+            this.input = input.clone();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    static final int SLICE = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final long maxInstructions;
+    private final long timeoutNanos;
+    private boolean tiered;
+
+    /**
+     * Constructs a batch runner.
+     *
+     * @param parallelism     the maximum number of programs to run at once
+     * @param maxInstructions the instruction budget of each program
+     * @param timeout         the wall time budget of each program
+     * @param unit            the time unit of the timeout
+     */
+    public BatchRunner(int parallelism, long maxInstructions, long timeout, TimeUnit unit) {
+        if (maxInstructions <= 0 || timeout <= 0) {
+            throw new IllegalArgumentException("Budgets must be positive");
+        }
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInstructions = maxInstructions;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    public boolean isTiered() {
+        return tiered;
+    }
+
+    /**
+     * Sets whether if the programs should run in tiered mode.
+     *
+     * @param tiered true to run the programs in tiered mode.
+     * @see Interpreter#setTiered(boolean)
+     */
+    public void setTiered(boolean tiered) {
+        this.tiered = tiered;
+    }
+
+    /**
+     * Runs all the programs and waits for them to finish.
+     *
+     * @param jobs the programs to run
+     * @return the aggregated results of all the programs.
+     */
+    public BatchReport runAll(List<Job> jobs) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<BatchResult>> tasks = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            tasks.add(pool.submit(() -> run(job)));
+        }
+
+        List<BatchResult> results = new ArrayList<>(jobs.size());
+        for (ForkJoinTask<BatchResult> task : tasks) {
+            results.add(task.join());
+        }
+        return new BatchReport(results, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs a single program within the calling thread.
+     *
+     * @param job the program to run
+     * @return the result of the program.
+     */
+    public BatchResult run(Job job) {
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Interpreter interp = new Interpreter(new StreamSyscallIO(new ByteArrayInputStream(job.input), buffer));
+        interp.setTiered(tiered);
+        try {
+            job.loader.load(interp);
+        } catch (ProgramException e) {
+            return new BatchResult(job.name, Status.LOAD_FAILED, 0, interp.getState().pc(), e, "",
+                    System.nanoTime() - start);
+        }
+
+        long deadline = start + timeoutNanos;
+        long executed = 0;
+        Status status = null;
+        RunResult result;
+        do {
+            result = interp.run(Math.min(SLICE, maxInstructions - executed));
+            executed += result.getInstructions();
+            switch (result.getReason()) {
+                case EXIT:
+                    status = Status.EXITED;
+                    break;
+                case TRAP:
+                    status = Status.TRAPPED;
+                    break;
+                default:
+                    if (executed >= maxInstructions) {
+                        status = Status.STEP_LIMIT;
+                    } else if (System.nanoTime() - deadline >= 0) {
+                        status = Status.TIMEOUT;
+                    }
+            }
+        } while (status == null);
+
+        return new BatchResult(job.name, status, executed, result.getPC(), result.getFault(),
+                new String(buffer.toByteArray(), StandardCharsets.UTF_8), System.nanoTime() - start);
+    }
+
+    /**
+     * Shuts down the worker threads of this runner. Any batch that is still running will run to completion.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,839 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.BitSet;
+
+import static com.theKidOfArcrania.mips.runner.DecodedInst.I_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.RI_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.R_TYPE;
+
+/**
+ * Translates basic blocks of decoded MIPS instructions into JVM classes, which then run as {@link CompiledBlock}s.
+ * <p>
+ * A basic block is a straight run of instructions that ends right before any syscall, break or unknown instruction,
+ * or right after a branch/jump and its delay slot. Every MIPS register that is used within a block is loaded into a
+ * JVM local variable on entry, and only the registers that were written are stored back on exit, so that the JVM can
+ * keep the hot registers in machine registers for the whole block.
+ * <p>
+ * Traps still have a precise PC. Before each instruction that may trap, the generated code records the PC (and the
+ * next PC, which differs within a delay slot), and the exception handler of the block commits the registers and
+ * restores these values into the {@link MemState} before rethrowing the {@link ProgramException}.
+ *
+ * @author Henry Wang
+ */
+final class BlockCompiler implements Constants, Registers, Opcodes {
+    static final int KIND_SIMPLE = 0;
+    static final int KIND_BRANCH = 1;
+    static final int KIND_STOP = 2;
+
+    private static final String GEN_PACKAGE = "com/theKidOfArcrania/mips/runner/gen/";
+    private static final String BLOCK_CLASS = Type.getInternalName(CompiledBlock.class);
+    private static final String STATE_CLASS = Type.getInternalName(MemState.class);
+    private static final String EXCEPTION_CLASS = Type.getInternalName(ProgramException.class);
+
+    private static final int LOCAL_STATE = 1;
+    private static final int LOCAL_REG_BASE = 2;
+    private static final int LOCAL_FAULT_PC = LOCAL_REG_BASE + REGISTER_COUNT;
+    private static final int LOCAL_FAULT_NPC = LOCAL_FAULT_PC + 1;
+    private static final int LOCAL_TARGET = LOCAL_FAULT_NPC + 1;
+    private static final int LOCAL_EXIT_PC = LOCAL_TARGET + 1;
+    private static final int LOCAL_EXIT_COUNT = LOCAL_EXIT_PC + 1;
+    private static final int LOCAL_PRODUCT = LOCAL_EXIT_COUNT + 1;
+    private static final int LOCAL_EXCEPTION = LOCAL_PRODUCT + 2;
+
+    /**
+     * Loads the generated classes. Each interpreter has its own compiler and class loader, so that the generated
+     * classes can be unloaded once the interpreter is gone.
+     */
+    private static final class BlockLoader extends ClassLoader {
+        /**
+         * Constructs a block loader that delegates to the class loader of the runner classes.
+         */
+        BlockLoader() {
+            super(CompiledBlock.class.getClassLoader());
+        }
+
+        /**
+         * Defines a generated class.
+         *
+         * @param name the binary name of the class
+         * @param code the class file
+         * @return the defined class.
+         */
+        Class<?> define(String name, byte[] code) {
+            return defineClass(name, code, 0, code.length);
+        }
+    }
+
+    /**
+     * Classifies an instruction by how it affects the extent of a basic block.
+     *
+     * @param handler the composite handler index of the instruction
+     * @return {@link #KIND_BRANCH} for branches and jumps, {@link #KIND_STOP} for anything that cannot be compiled,
+     * or {@link #KIND_SIMPLE} for any other instruction.
+     */
+    @SuppressWarnings("MagicNumber")
+    static int kindOf(int handler) {
+        switch (handler) {
+            case R_TYPE | 0x08: //jr
+            case R_TYPE | 0x09: //jalr
+            case RI_TYPE | 0x00: //bltz
+            case RI_TYPE | 0x01: //bgez
+            case RI_TYPE | 0x10: //bltzal
+            case RI_TYPE | 0x11: //bgezal
+            case I_TYPE | 0x02: //j
+            case I_TYPE | 0x03: //jal
+            case I_TYPE | 0x04: //beq
+            case I_TYPE | 0x05: //bne
+            case I_TYPE | 0x06: //blez
+            case I_TYPE | 0x07: //bgtz
+                return KIND_BRANCH;
+            case R_TYPE | 0x00: //sll
+            case R_TYPE | 0x02: //srl
+            case R_TYPE | 0x03: //sra
+            case R_TYPE | 0x04: //sllv
+            case R_TYPE | 0x06: //srlv
+            case R_TYPE | 0x07: //srav
+            case R_TYPE | 0x10: //mfhi
+            case R_TYPE | 0x11: //mthi
+            case R_TYPE | 0x12: //mflo
+            case R_TYPE | 0x13: //mtlo
+            case R_TYPE | 0x18: //mult
+            case R_TYPE | 0x19: //multu
+            case R_TYPE | 0x1A: //div
+            case R_TYPE | 0x1B: //divu
+            case R_TYPE | 0x20: //add
+            case R_TYPE | 0x21: //addu
+            case R_TYPE | 0x22: //sub
+            case R_TYPE | 0x23: //subu
+            case R_TYPE | 0x24: //and
+            case R_TYPE | 0x25: //or
+            case R_TYPE | 0x26: //xor
+            case R_TYPE | 0x27: //nor
+            case R_TYPE | 0x2a: //slt
+            case R_TYPE | 0x2b: //sltu
+            case I_TYPE | 0x08: //addi
+            case I_TYPE | 0x09: //addiu
+            case I_TYPE | 0x0a: //slti
+            case I_TYPE | 0x0b: //sltiu
+            case I_TYPE | 0x0c: //andi
+            case I_TYPE | 0x0d: //ori
+            case I_TYPE | 0x0e: //xori
+            case I_TYPE | 0x0f: //lui
+            case I_TYPE | 0x20: //lb
+            case I_TYPE | 0x21: //lh
+            case I_TYPE | 0x23: //lw
+            case I_TYPE | 0x24: //lbu
+            case I_TYPE | 0x25: //lhu
+            case I_TYPE | 0x28: //sb
+            case I_TYPE | 0x29: //sh
+            case I_TYPE | 0x2b: //sw
+                return KIND_SIMPLE;
+            default:
+                return KIND_STOP;
+        }
+    }
+
+    private final BlockLoader loader = new BlockLoader();
+    private int classCount;
+
+    /**
+     * Compiles the basic block that starts with the first of the given instructions.
+     *
+     * @param start the address of the first instruction
+     * @param insts the decoded instructions starting at that address. The block will not extend past these.
+     * @return the compiled block, or null if not even the first instruction can be compiled.
+     */
+    CompiledBlock compile(int start, DecodedInst[] insts) {
+        int length = 0;
+        int branch = -1;
+        while (length < insts.length) {
+            int kind = insts[length].kind;
+            if (kind == KIND_STOP) {
+                break;
+            }
+            if (kind == KIND_BRANCH) {
+                if (length + 1 < insts.length && insts[length + 1].kind == KIND_SIMPLE) {
+                    branch = length;
+                    length += 2;
+                }
+                break;
+            }
+            length++;
+        }
+
+        if (length == 0) {
+            return null;
+        }
+
+        String name = GEN_PACKAGE + "Block_" + Integer.toHexString(start) + "_" + classCount++;
+        byte[] code = new BlockWriter(start, insts, length, branch).write(name);
+        try {
+            return (CompiledBlock) loader.define(name.replace('/', '.'), code)
+                    .getConstructor(int.class, int.class).newInstance(start, length);
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException |
+                InvocationTargetException e) {
+            throw new InternalError("Unable to load compiled block", e);
+        }
+    }
+
+    /**
+     * Writes the class file for a single basic block. The method body is emitted twice: the first pass only collects
+     * which registers are used and written, so that the second pass knows which registers to load on entry and which
+     * ones to commit on exit.
+     */
+    private static final class BlockWriter {
+        private final int start;
+        private final DecodedInst[] insts;
+        private final int length;
+        private final int branch;
+
+        private final BitSet used = new BitSet(REGISTER_COUNT);
+        private final BitSet written = new BitSet(REGISTER_COUNT);
+
+        private MethodVisitor mv;
+        private Label exit;
+
+        /**
+         * Constructs a block writer.
+         *
+         * @param start  the address of the first instruction
+         * @param insts  the decoded instructions
+         * @param length the number of instructions in the block
+         * @param branch the index of the ending branch, or -1 if this block does not end with a branch.
+         */
+        BlockWriter(int start, DecodedInst[] insts, int length, int branch) {
+            this.start = start;
+            this.insts = insts;
+            this.length = length;
+            this.branch = branch;
+        }
+
+        /**
+         * Writes the class file.
+         *
+         * @param name the internal name of the generated class
+         * @return the class file bytes.
+         */
+        byte[] write(String name) {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, BLOCK_CLASS, null);
+
+            MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "(II)V", null, null);
+            init.visitCode();
+            init.visitVarInsn(ALOAD, 0);
+            init.visitVarInsn(ILOAD, 1);
+            init.visitVarInsn(ILOAD, 2);
+            init.visitMethodInsn(INVOKESPECIAL, BLOCK_CLASS, "<init>", "(II)V", false);
+            init.visitInsn(RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            writeRun(new MethodVisitor(ASM9) {
+            });
+            writeRun(cw.visitMethod(ACC_PUBLIC, "run", "(L" + STATE_CLASS + ";)I", null,
+                    new String[]{EXCEPTION_CLASS}));
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        /**
+         * Writes the run method of the block.
+         *
+         * @param visitor the method visitor to write to
+         */
+        private void writeRun(MethodVisitor visitor) {
+            mv = visitor;
+            exit = new Label();
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label handler = new Label();
+
+            mv.visitCode();
+            mv.visitTryCatchBlock(tryStart, tryEnd, handler, EXCEPTION_CLASS);
+            for (int reg = used.nextSetBit(0); reg >= 0; reg = used.nextSetBit(reg + 1)) {
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                push(reg);
+                mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getRegister", "(I)I", false);
+                mv.visitVarInsn(ISTORE, LOCAL_REG_BASE + reg);
+            }
+            for (int local = LOCAL_FAULT_PC; local <= LOCAL_EXIT_COUNT; local++) {
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, local);
+            }
+
+            mv.visitLabel(tryStart);
+            int bodyEnd = branch == -1 ? length : branch;
+            for (int i = 0; i < bodyEnd; i++) {
+                int pc = start + i * INST_SIZE;
+                writeInst(insts[i], pc, false);
+                if (isStore(insts[i])) {
+                    Label cont = new Label();
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitFieldInsn(GETFIELD, BLOCK_CLASS, "valid", "Z");
+                    mv.visitJumpInsn(IFNE, cont);
+                    setExit(pc + INST_SIZE, i + 1);
+                    mv.visitJumpInsn(GOTO, exit);
+                    mv.visitLabel(cont);
+                }
+            }
+
+            if (branch == -1) {
+                setExit(start + length * INST_SIZE, length);
+            } else {
+                int pc = start + branch * INST_SIZE;
+                writeBranch(insts[branch], pc);
+                writeInst(insts[branch + 1], pc + INST_SIZE, true);
+                mv.visitVarInsn(ILOAD, LOCAL_TARGET);
+                mv.visitVarInsn(ISTORE, LOCAL_EXIT_PC);
+                push(length);
+                mv.visitVarInsn(ISTORE, LOCAL_EXIT_COUNT);
+            }
+            mv.visitLabel(tryEnd);
+
+            mv.visitLabel(exit);
+            writeCommit();
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitVarInsn(ILOAD, LOCAL_EXIT_PC);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "pc", "(I)V", false);
+            mv.visitVarInsn(ILOAD, LOCAL_EXIT_COUNT);
+            mv.visitInsn(IRETURN);
+
+            //Restores the exact PC/nPC that the interpreter would have had when trapping.
+            mv.visitLabel(handler);
+            mv.visitVarInsn(ASTORE, LOCAL_EXCEPTION);
+            writeCommit();
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitVarInsn(ILOAD, LOCAL_FAULT_PC);
+            push(INST_SIZE);
+            mv.visitInsn(ISUB);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "pc", "(I)V", false);
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitVarInsn(ILOAD, LOCAL_FAULT_NPC);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "jump", "(I)V", false);
+            mv.visitVarInsn(ALOAD, LOCAL_EXCEPTION);
+            mv.visitInsn(ATHROW);
+
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        /**
+         * Writes the code that commits all the written registers back to the memory state.
+         */
+        private void writeCommit() {
+            for (int reg = written.nextSetBit(0); reg >= 0; reg = written.nextSetBit(reg + 1)) {
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                push(reg);
+                mv.visitVarInsn(ILOAD, LOCAL_REG_BASE + reg);
+                mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setRegister", "(II)V", false);
+            }
+        }
+
+        /**
+         * Writes the code that sets up the exit PC and instruction count.
+         *
+         * @param pc    the next PC to execute after this block
+         * @param count the number of instructions executed
+         */
+        private void setExit(int pc, int count) {
+            push(pc);
+            mv.visitVarInsn(ISTORE, LOCAL_EXIT_PC);
+            push(count);
+            mv.visitVarInsn(ISTORE, LOCAL_EXIT_COUNT);
+        }
+
+        /**
+         * Writes the code that records the PC and next PC of an instruction that may trap.
+         *
+         * @param pc        the address of the instruction
+         * @param delaySlot whether if this instruction is within a delay slot.
+         */
+        private void setFault(int pc, boolean delaySlot) {
+            push(pc);
+            mv.visitVarInsn(ISTORE, LOCAL_FAULT_PC);
+            if (delaySlot) {
+                mv.visitVarInsn(ILOAD, LOCAL_TARGET);
+            } else {
+                push(pc + INST_SIZE);
+            }
+            mv.visitVarInsn(ISTORE, LOCAL_FAULT_NPC);
+        }
+
+        /**
+         * Writes the code of an ending branch or jump. This only computes the target address into a local variable
+         * (and writes the link register), since the delay slot still has to run before the branch is taken.
+         *
+         * @param inst the branch instruction
+         * @param pc   the address of the branch instruction
+         */
+        @SuppressWarnings("MagicNumber")
+        private void writeBranch(DecodedInst inst, int pc) {
+            int link = pc + INST_SIZE * 2;
+            int taken = pc + INST_SIZE + (inst.imm << 2);
+            Label notTaken = new Label();
+            Label done = new Label();
+            switch (inst.handler) {
+                case R_TYPE | 0x08: //jr
+                    load(inst.rs);
+                    mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+                    return;
+                case R_TYPE | 0x09: //jalr
+                    load(inst.rs);
+                    mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+                    push(link);
+                    store(inst.rd);
+                    return;
+                case I_TYPE | 0x02: //j
+                    push((pc & JMP_FAR_MASK) | (inst.addr << 2));
+                    mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+                    return;
+                case I_TYPE | 0x03: //jal
+                    push(link);
+                    store(REG_RA);
+                    push((pc & JMP_FAR_MASK) | (inst.addr << 2));
+                    mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+                    return;
+                case I_TYPE | 0x04: //beq
+                    load(inst.rs);
+                    load(inst.rt);
+                    mv.visitJumpInsn(IF_ICMPNE, notTaken);
+                    break;
+                case I_TYPE | 0x05: //bne
+                    load(inst.rs);
+                    load(inst.rt);
+                    mv.visitJumpInsn(IF_ICMPEQ, notTaken);
+                    break;
+                case I_TYPE | 0x06: //blez
+                    load(inst.rs);
+                    mv.visitJumpInsn(IFGT, notTaken);
+                    break;
+                case I_TYPE | 0x07: //bgtz
+                    load(inst.rs);
+                    mv.visitJumpInsn(IFLE, notTaken);
+                    break;
+                case RI_TYPE | 0x00: //bltz
+                case RI_TYPE | 0x10: //bltzal
+                    load(inst.rs);
+                    mv.visitJumpInsn(IFGE, notTaken);
+                    break;
+                case RI_TYPE | 0x01: //bgez
+                case RI_TYPE | 0x11: //bgezal
+                    load(inst.rs);
+                    mv.visitJumpInsn(IFLT, notTaken);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not a branch instruction");
+            }
+
+            if (inst.handler == (RI_TYPE | 0x10) || inst.handler == (RI_TYPE | 0x11)) {
+                push(link);
+                store(REG_RA);
+            }
+            push(taken);
+            mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+            mv.visitJumpInsn(GOTO, done);
+            mv.visitLabel(notTaken);
+            push(link);
+            mv.visitVarInsn(ISTORE, LOCAL_TARGET);
+            mv.visitLabel(done);
+        }
+
+        /**
+         * Writes the code of a single non-branching instruction.
+         *
+         * @param inst      the instruction
+         * @param pc        the address of the instruction
+         * @param delaySlot whether if this instruction is within a delay slot.
+         */
+        @SuppressWarnings("MagicNumber")
+        private void writeInst(DecodedInst inst, int pc, boolean delaySlot) {
+            int regS = inst.rs;
+            int regT = inst.rt;
+            int regD = inst.rd;
+            int imm = inst.imm;
+            switch (inst.handler) {
+                case R_TYPE | 0x00: //sll
+                    load(regT);
+                    push(inst.shamt);
+                    mv.visitInsn(ISHL);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x02: //srl
+                    load(regT);
+                    push(inst.shamt);
+                    mv.visitInsn(IUSHR);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x03: //sra
+                    load(regT);
+                    push(inst.shamt);
+                    mv.visitInsn(ISHR);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x04: //sllv
+                    binary(regD, regT, regS, ISHL);
+                    break;
+                case R_TYPE | 0x06: //srlv
+                    binary(regD, regT, regS, IUSHR);
+                    break;
+                case R_TYPE | 0x07: //srav
+                    binary(regD, regT, regS, ISHR);
+                    break;
+                case R_TYPE | 0x10: //mfhi
+                    mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getHigh", "()I", false);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x11: //mthi
+                    mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                    load(regS);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setHigh", "(I)V", false);
+                    break;
+                case R_TYPE | 0x12: //mflo
+                    mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getLow", "()I", false);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x13: //mtlo
+                    mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                    load(regS);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setLow", "(I)V", false);
+                    break;
+                case R_TYPE | 0x18: //mult
+                    load(regS);
+                    mv.visitInsn(I2L);
+                    load(regT);
+                    mv.visitInsn(I2L);
+                    writeProduct();
+                    break;
+                case R_TYPE | 0x19: //multu
+                    load(regS);
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "toUnsignedLong", "(I)J", false);
+                    load(regT);
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "toUnsignedLong", "(I)J", false);
+                    writeProduct();
+                    break;
+                case R_TYPE | 0x1A: //div
+                    setFault(pc, delaySlot);
+                    writeDivide(regS, regT, false);
+                    break;
+                case R_TYPE | 0x1B: //divu
+                    setFault(pc, delaySlot);
+                    writeDivide(regS, regT, true);
+                    break;
+                case R_TYPE | 0x20: //add
+                    setFault(pc, delaySlot);
+                    load(regS);
+                    load(regT);
+                    helper("add", "(II)I");
+                    store(regD);
+                    break;
+                case R_TYPE | 0x21: //addu
+                    binary(regD, regS, regT, IADD);
+                    break;
+                case R_TYPE | 0x22: //sub
+                    setFault(pc, delaySlot);
+                    load(regS);
+                    load(regT);
+                    helper("sub", "(II)I");
+                    store(regD);
+                    break;
+                case R_TYPE | 0x23: //subu
+                    binary(regD, regS, regT, ISUB);
+                    break;
+                case R_TYPE | 0x24: //and
+                    binary(regD, regS, regT, IAND);
+                    break;
+                case R_TYPE | 0x25: //or
+                    binary(regD, regS, regT, IOR);
+                    break;
+                case R_TYPE | 0x26: //xor
+                    binary(regD, regS, regT, IXOR);
+                    break;
+                case R_TYPE | 0x27: //nor
+                    load(regS);
+                    load(regT);
+                    mv.visitInsn(IOR);
+                    mv.visitInsn(ICONST_M1);
+                    mv.visitInsn(IXOR);
+                    store(regD);
+                    break;
+                case R_TYPE | 0x2a: //slt
+                    load(regS);
+                    load(regT);
+                    helper("slt", "(II)I");
+                    store(regD);
+                    break;
+                case R_TYPE | 0x2b: //sltu
+                    load(regS);
+                    load(regT);
+                    helper("sltu", "(II)I");
+                    store(regD);
+                    break;
+                case I_TYPE | 0x08: //addi
+                    setFault(pc, delaySlot);
+                    load(regS);
+                    push(imm);
+                    helper("add", "(II)I");
+                    store(regT);
+                    break;
+                case I_TYPE | 0x09: //addiu
+                    immediate(regT, regS, imm, IADD);
+                    break;
+                case I_TYPE | 0x0a: //slti
+                    load(regS);
+                    push(imm);
+                    helper("slt", "(II)I");
+                    store(regT);
+                    break;
+                case I_TYPE | 0x0b: //sltiu
+                    load(regS);
+                    push(imm);
+                    helper("sltu", "(II)I");
+                    store(regT);
+                    break;
+                case I_TYPE | 0x0c: //andi
+                    immediate(regT, regS, imm & BITS_IMM_MASK, IAND);
+                    break;
+                case I_TYPE | 0x0d: //ori
+                    immediate(regT, regS, imm & BITS_IMM_MASK, IOR);
+                    break;
+                case I_TYPE | 0x0e: //xori
+                    immediate(regT, regS, imm & BITS_IMM_MASK, IXOR);
+                    break;
+                case I_TYPE | 0x0f: //lui
+                    push(imm << Short.SIZE);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x20: //lb
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "get", "(I)B", false);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x21: //lh
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getShort", "(I)S", false);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x23: //lw
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getInt", "(I)I", false);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x24: //lbu
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "get", "(I)B", false);
+                    push(0xFF);
+                    mv.visitInsn(IAND);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x25: //lhu
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "getShort", "(I)S", false);
+                    push(0xFFFF);
+                    mv.visitInsn(IAND);
+                    store(regT);
+                    break;
+                case I_TYPE | 0x28: //sb
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    load(regT);
+                    mv.visitInsn(I2B);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "set", "(IB)V", false);
+                    break;
+                case I_TYPE | 0x29: //sh
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    load(regT);
+                    mv.visitInsn(I2S);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setShort", "(IS)V", false);
+                    break;
+                case I_TYPE | 0x2b: //sw
+                    setFault(pc, delaySlot);
+                    address(regS, imm);
+                    load(regT);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setInt", "(II)V", false);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Instruction cannot be compiled");
+            }
+        }
+
+        /**
+         * Checks whether if an instruction writes to memory.
+         *
+         * @param inst the instruction
+         * @return true if this is a store instruction.
+         */
+        @SuppressWarnings("MagicNumber")
+        private static boolean isStore(DecodedInst inst) {
+            return inst.handler == (I_TYPE | 0x28) || inst.handler == (I_TYPE | 0x29) ||
+                    inst.handler == (I_TYPE | 0x2b);
+        }
+
+        /**
+         * Writes the code that splits the 64-bit product on the stack into the HI/LO registers.
+         */
+        private void writeProduct() {
+            mv.visitInsn(LMUL);
+            mv.visitVarInsn(LSTORE, LOCAL_PRODUCT);
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitVarInsn(LLOAD, LOCAL_PRODUCT);
+            mv.visitInsn(L2I);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setLow", "(I)V", false);
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitVarInsn(LLOAD, LOCAL_PRODUCT);
+            push(Integer.SIZE);
+            mv.visitInsn(LUSHR);
+            mv.visitInsn(L2I);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setHigh", "(I)V", false);
+        }
+
+        /**
+         * Writes the code of a division, setting the quotient into LO and the remainder into HI.
+         *
+         * @param regS     the dividend register
+         * @param regT     the divisor register
+         * @param unsigned whether if this is an unsigned division.
+         */
+        private void writeDivide(int regS, int regT, boolean unsigned) {
+            load(regT);
+            helper("checkDivisor", "(I)V");
+
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            load(regS);
+            load(regT);
+            if (unsigned) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "divideUnsigned", "(II)I", false);
+            } else {
+                mv.visitInsn(IDIV);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setLow", "(I)V", false);
+
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            load(regS);
+            load(regT);
+            if (unsigned) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "remainderUnsigned", "(II)I", false);
+            } else {
+                mv.visitInsn(IREM);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, STATE_CLASS, "setHigh", "(I)V", false);
+        }
+
+        /**
+         * Writes a two register operand operation.
+         *
+         * @param dest   the destination register
+         * @param first  the first operand register
+         * @param second the second operand register
+         * @param opcode the JVM opcode of the operation
+         */
+        private void binary(int dest, int first, int second, int opcode) {
+            load(first);
+            load(second);
+            mv.visitInsn(opcode);
+            store(dest);
+        }
+
+        /**
+         * Writes a register and immediate operand operation.
+         *
+         * @param dest   the destination register
+         * @param src    the register operand
+         * @param imm    the immediate operand
+         * @param opcode the JVM opcode of the operation
+         */
+        private void immediate(int dest, int src, int imm, int opcode) {
+            load(src);
+            push(imm);
+            mv.visitInsn(opcode);
+            store(dest);
+        }
+
+        /**
+         * Pushes the memory state followed by an effective address of a load/store onto the stack.
+         *
+         * @param base the base register
+         * @param imm  the offset from the base register
+         */
+        private void address(int base, int imm) {
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            load(base);
+            if (imm != 0) {
+                push(imm);
+                mv.visitInsn(IADD);
+            }
+        }
+
+        /**
+         * Calls one of the static helpers within {@link CompiledBlock}.
+         *
+         * @param name       the method name
+         * @param descriptor the method descriptor
+         */
+        private void helper(String name, String descriptor) {
+            mv.visitMethodInsn(INVOKESTATIC, BLOCK_CLASS, name, descriptor, false);
+        }
+
+        /**
+         * Pushes the value of a register onto the stack.
+         *
+         * @param reg the register index
+         */
+        private void load(int reg) {
+            if (reg == REG_ZERO) {
+                mv.visitInsn(ICONST_0);
+            } else {
+                used.set(reg);
+                mv.visitVarInsn(ILOAD, LOCAL_REG_BASE + reg);
+            }
+        }
+
+        /**
+         * Pops the value on the stack into a register. Writes to the zero register are discarded.
+         *
+         * @param reg the register index
+         */
+        private void store(int reg) {
+            if (reg == REG_ZERO) {
+                mv.visitInsn(POP);
+            } else {
+                used.set(reg);
+                written.set(reg);
+                mv.visitVarInsn(ISTORE, LOCAL_REG_BASE + reg);
+            }
+        }
+
+        /**
+         * Pushes an integer constant onto the stack, using the shortest instruction for it.
+         *
+         * @param val the constant
+         */
+        private void push(int val) {
+            if (val >= -1 && val <= 5) {
+                mv.visitInsn(ICONST_0 + val);
+            } else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, val);
+            } else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, val);
+            } else {
+                mv.visitLdcInsn(val);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+
+/**
+ * Represents a basic block of MIPS instructions that has been translated into a JVM class by the
+ * {@link BlockCompiler}. A block is a straight run of instructions starting at {@link #getStart()}, optionally ending
+ * with a branch or jump together with its delay slot.
+ * <p>
+ * Generated subclasses only implement {@link #run(MemState)}. The static helpers in this class hold the operations
+ * that are awkward to express in raw bytecode, and are small enough to be inlined by the JVM.
+ *
+ * @author Henry Wang
+ */
+public abstract class CompiledBlock {
+    private final int start;
+    private final int length;
+
+    /**
+     * Whether if this block still matches the instructions in memory. This is cleared by the interpreter whenever the
+     * text under this block is written to, and generated code checks it after every store so that a block that
+     * modifies itself stops right after that store.
+     */
+    protected boolean valid = true;
+
+    /**
+     * Constructs a compiled block.
+     *
+     * @param start  the address of the first instruction in this block
+     * @param length the number of instructions in this block
+     */
+    protected CompiledBlock(int start, int length) {
+        this.start = start;
+        this.length = length;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Runs this block against a memory state. On a normal exit, the program counter of the state is left at the next
+     * instruction to execute. If any instruction traps, all the register writes done before the trapping instruction
+     * are committed, and the program counter is left pointing at the trapping instruction, just like the interpreter.
+     *
+     * @param state the memory state to run against
+     * @return the number of instructions executed.
+     * @throws ProgramException if any instruction of this block traps.
+     */
+    public abstract int run(MemState state) throws ProgramException;
+
+    /**
+     * Adds two signed integers, trapping on overflow (used by add/addi).
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return the sum
+     * @throws ProgramException if the result overflows (ARIH)
+     */
+    protected static int add(int a, int b) throws ProgramException {
+        int res = a + b;
+        if (((a ^ res) & (b ^ res)) < 0) {
+            throw new ProgramException(ErrorType.ARIH);
+        }
+        return res;
+    }
+
+    /**
+     * Subtracts two signed integers, trapping on overflow (used by sub).
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return the difference
+     * @throws ProgramException if the result overflows (ARIH)
+     */
+    protected static int sub(int a, int b) throws ProgramException {
+        int res = a - b;
+        if (((a ^ b) & (a ^ res)) < 0) {
+            throw new ProgramException(ErrorType.ARIH);
+        }
+        return res;
+    }
+
+    /**
+     * Checks that a divisor is non-zero (used by div/divu).
+     *
+     * @param divisor the divisor
+     * @throws ProgramException if the divisor is zero (ARIH)
+     */
+    protected static void checkDivisor(int divisor) throws ProgramException {
+        if (divisor == 0) {
+            throw new ProgramException(ErrorType.ARIH);
+        }
+    }
+
+    /**
+     * Signed set-less-than (used by slt/slti).
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return 1 if a &lt; b, otherwise 0.
+     */
+    protected static int slt(int a, int b) {
+        return a < b ? 1 : 0;
+    }
+
+    /**
+     * Unsigned set-less-than (used by sltu/sltiu).
+     *
+     * @param a the first operand
+     * @param b the second operand
+     * @return 1 if a &lt; b when both are treated as unsigned, otherwise 0.
+     */
+    protected static int sltu(int a, int b) {
+        return Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+    }
+}
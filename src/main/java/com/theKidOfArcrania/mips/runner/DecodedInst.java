@@ -0,0 +1,176 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.util.InstCodec;
+
+/**
+ * Represents a single instruction word that has already been split into its component fields. This is what the
+ * interpreter caches for each instruction in the text segment so that it does not need to re-fetch and re-decode the
+ * instruction word every time that it is executed.
+ * <p>
+ * The handler index is a composite of the opcode and the funct/regimm field, so that the interpreter only needs to
+ * dispatch once on one dense number. R-type instructions map to {@link #R_TYPE} plus the funct code, RI-type
+ * instructions map to {@link #RI_TYPE} plus the regimm code, and every other instruction maps to {@link #I_TYPE}
+ * plus the opcode. The decoded instruction also caches how the instruction affects the extent of a basic block (see
+ * {@link BlockCompiler#kindOf(int)}), and which register it overwrites, for recording it in an {@link UndoLog}.
+ * <p>
+ * A decoded instruction may also stand for a fused pair of adjacent instructions (a superinstruction), as created by
+ * {@link #fuse(DecodedInst, DecodedInst)}. These are the pairs that the assembler expands pseudo-instructions into,
+ * which the interpreter can then execute with a single dispatch. Fused pairs map to {@link #FUSED} plus one of the
+ * <tt>FUSED_*</tt> codes.
+ *
+ * @author Henry Wang
+ */
+final class DecodedInst implements Constants, Registers {
+    static final int R_TYPE = 0x00;
+    static final int RI_TYPE = 0x40;
+    static final int I_TYPE = 0x80;
+    static final int FUSED = 0xC0;
+
+    static final int FUSED_LUI_ORI = 0x00;
+    static final int FUSED_SLT_BNE = 0x01;
+    static final int FUSED_SLT_BEQ = 0x02;
+    static final int FUSED_SLTU_BNE = 0x03;
+    static final int FUSED_SLTU_BEQ = 0x04;
+    static final int FUSED_MULT_MFLO = 0x05;
+    static final int FUSED_DIV_MFLO = 0x06;
+    static final int FUSED_DIV_MFHI = 0x07;
+
+    private static final int OPCODE_R = 0x00;
+    private static final int OPCODE_RI = 0x01;
+
+    /**
+     * Decodes an instruction word into its component fields.
+     *
+     * @param word the instruction word to decode
+     * @return the decoded instruction
+     */
+    static DecodedInst decode(int word) {
+        int opcode = InstCodec.opcode(word);
+        int rs = InstCodec.rs(word);
+        int rt = InstCodec.rt(word);
+        int rd = InstCodec.rd(word);
+        int shamt = InstCodec.shamt(word);
+        int imm = InstCodec.imm(word);
+        int addr = InstCodec.addr(word);
+
+        int handler;
+        if (opcode == OPCODE_R) {
+            handler = R_TYPE | InstCodec.funct(word);
+        } else if (opcode == OPCODE_RI) {
+            handler = RI_TYPE | rt;
+        } else {
+            handler = I_TYPE | opcode;
+        }
+        return new DecodedInst(word, handler, rs, rt, rd, shamt, imm, addr, BlockCompiler.kindOf(handler),
+                UndoLog.destOf(handler, rt, rd));
+    }
+
+    /**
+     * Attempts to fuse two adjacent instructions into a superinstruction. The fused pair has exactly the same effects
+     * as running both instructions one after the other (including writing to the <tt>$at</tt> register, and to the
+     * HI/LO registers), and takes on how the second instruction affects the extent of a basic block, but the register
+     * that the first instruction overwrites (see {@link UndoLog#stepPair(int, DecodedInst, int[], MemState)}). The
+     * fields are packed as follows:
+     * <ul>
+     * <li><tt>lui rt, hi; ori rt, rt, lo</tt> (<tt>li</tt>, <tt>la</tt>): rt, and the whole 32-bit constant in imm.
+     * <li><tt>slt(u) rd, rs, rt; bne/beq rd, $zero, off</tt> (<tt>blt</tt>, <tt>bgt</tt>, etc.): rs, rt, rd, and the
+     * branch offset in imm.
+     * <li><tt>mult/div rs, rt; mflo/mfhi rd</tt> (<tt>mul</tt>, <tt>div</tt>, <tt>rem</tt>): rs, rt, and the
+     * destination register of the move in rd.
+     * </ul>
+     *
+     * @param first  the first instruction
+     * @param second the instruction right after it
+     * @return the fused instruction, or null if this pair cannot be fused.
+     */
+    static DecodedInst fuse(DecodedInst first, DecodedInst second) {
+        int code;
+        int rd = first.rd;
+        int imm = second.imm;
+        switch (first.handler) {
+            case I_TYPE | 0x0f: //lui
+                if (second.handler != (I_TYPE | 0x0d) || first.rt == REG_ZERO || second.rs != first.rt ||
+                        second.rt != first.rt) {
+                    return null;
+                }
+                code = FUSED_LUI_ORI;
+                imm = first.imm << Short.SIZE | second.imm & BITS_IMM_MASK;
+                break;
+            case R_TYPE | 0x2a: //slt
+            case R_TYPE | 0x2b: //sltu
+                if (first.rd == REG_ZERO || second.rs != first.rd || second.rt != REG_ZERO) {
+                    return null;
+                }
+                boolean unsigned = first.handler == (R_TYPE | 0x2b);
+                if (second.handler == (I_TYPE | 0x05)) { //bne
+                    code = unsigned ? FUSED_SLTU_BNE : FUSED_SLT_BNE;
+                } else if (second.handler == (I_TYPE | 0x04)) { //beq
+                    code = unsigned ? FUSED_SLTU_BEQ : FUSED_SLT_BEQ;
+                } else {
+                    return null;
+                }
+                break;
+            case R_TYPE | 0x18: //mult
+                if (second.handler != (R_TYPE | 0x12)) {
+                    return null;
+                }
+                code = FUSED_MULT_MFLO;
+                rd = second.rd;
+                break;
+            case R_TYPE | 0x1A: //div
+                if (second.handler == (R_TYPE | 0x12)) { //mflo
+                    code = FUSED_DIV_MFLO;
+                } else if (second.handler == (R_TYPE | 0x10)) { //mfhi
+                    code = FUSED_DIV_MFHI;
+                } else {
+                    return null;
+                }
+                rd = second.rd;
+                break;
+            default:
+                return null;
+        }
+        return new DecodedInst(first.word, FUSED | code, first.rs, first.rt, rd, first.shamt, imm, first.addr,
+                second.kind, first.dest);
+    }
+
+    final int word;
+    final int handler;
+    final int rs;
+    final int rt;
+    final int rd;
+    final int shamt;
+    final int imm;
+    final int addr;
+    final int kind;
+    final int dest;
+
+    /**
+     * Constructs a decoded instruction.
+     *
+     * @param word    the raw instruction word
+     * @param handler the composite handler index of this instruction
+     * @param rs      the source register index
+     * @param rt      the target register index (also the regimm code)
+     * @param rd      the destination register index
+     * @param shamt   the shift amount
+     * @param imm     the sign-extended 16-bit immediate
+     * @param addr    the 26-bit jump address
+     * @param kind    how this instruction affects the extent of a basic block
+     * @param dest    the register that this instruction overwrites (see {@link UndoLog#destOf(int, int, int)})
+     */
+    private DecodedInst(int word, int handler, int rs, int rt, int rd, int shamt, int imm, int addr, int kind,
+                        int dest) {
+        this.word = word;
+        this.handler = handler;
+        this.rs = rs;
+        this.rt = rt;
+        this.rd = rd;
+        this.shamt = shamt;
+        this.imm = imm;
+        this.addr = addr;
+        this.kind = kind;
+        this.dest = dest;
+    }
+}
@@ -0,0 +1,142 @@
+package com.theKidOfArcrania.mips.runner;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A syscall I/O device that keeps a journal of all the input read from another device, so that the input can be fed
+ * back to the program when it is run over again, e.g. after stepping backwards past a read syscall. Reads are served
+ * from the journal while the input position is behind the end of the journal, and only then go to the underlying
+ * device. While replaying (i.e. re-running to a point that has already been run before), output is dropped as well,
+ * since it has already been printed.
+ * <p>
+ * The journal holds every value read since recording started: read_int and read_character take up one entry each,
+ * and read_string takes up one entry for the number of bytes read, then one entry per byte. If a read_string is run
+ * over again with a smaller buffer (e.g. after changing its arguments), only the bytes that fit are read back, and the
+ * journal is cut short right after them.
+ *
+ * @author Henry Wang
+ */
+final class InputJournal implements SyscallIO {
+    private static final int INITIAL_SIZE = 64;
+
+    private final SyscallIO io;
+    private int[] inputs = new int[INITIAL_SIZE];
+    private int length;
+    private int position;
+    private boolean replaying;
+
+    /**
+     * Constructs an empty input journal.
+     *
+     * @param io the underlying I/O device.
+     */
+    InputJournal(SyscallIO io) {
+        this.io = io;
+    }
+
+    /**
+     * @return the position of the next input to read from the journal.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Moves back (or forward) to an earlier position of the journal.
+     *
+     * @param position the position of the next input to read.
+     */
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Sets whether if the program is being replayed, in which case no output is printed.
+     *
+     * @param replaying true to drop output, false to print it.
+     */
+    void setReplaying(boolean replaying) {
+        this.replaying = replaying;
+    }
+
+    @Override
+    public void printInt(int val) throws IOException {
+        if (!replaying) {
+            io.printInt(val);
+        }
+    }
+
+    @Override
+    public void printChar(int c) throws IOException {
+        if (!replaying) {
+            io.printChar(c);
+        }
+    }
+
+    @Override
+    public void print(byte[] buff, int offset, int length) throws IOException {
+        if (!replaying) {
+            io.print(buff, offset, length);
+        }
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        if (position < length) {
+            return inputs[position++];
+        }
+        return append(io.readInt());
+    }
+
+    @Override
+    public int readChar() throws IOException {
+        if (position < length) {
+            return inputs[position++];
+        }
+        return append(io.readChar());
+    }
+
+    @Override
+    public int readLine(byte[] buff, int offset, int length) throws IOException {
+        if (position < this.length) {
+            int entry = position++;
+            int read = Math.min(inputs[entry], length);
+            for (int i = 0; i < read; i++) {
+                buff[offset + i] = (byte) inputs[position++];
+            }
+            if (read < inputs[entry]) {
+                inputs[entry] = read;
+                this.length = position;
+            }
+            return read;
+        }
+
+        int read = append(io.readLine(buff, offset, length));
+        for (int i = 0; i < read; i++) {
+            append(buff[offset + i]);
+        }
+        return read;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        io.flush();
+    }
+
+    /**
+     * Appends an input to the end of the journal, dropping anything after the current position first.
+     *
+     * @param val the input value
+     * @return the input value
+     */
+    private int append(int val) {
+        length = position;
+        if (length == inputs.length) {
+            inputs = Arrays.copyOf(inputs, length * 2);
+        }
+        inputs[length++] = val;
+        position = length;
+        return val;
+    }
+}
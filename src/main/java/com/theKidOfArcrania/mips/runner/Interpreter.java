@@ -2,14 +2,28 @@ package com.theKidOfArcrania.mips.runner;
 
 import com.theKidOfArcrania.mips.Constants;
 import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
-import com.theKidOfArcrania.mips.util.BitPacker;
+import com.theKidOfArcrania.mips.runner.RunResult.StopReason;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.PrintStream;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
 
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_DIV_MFHI;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_DIV_MFLO;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_LUI_ORI;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_MULT_MFLO;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLTU_BEQ;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLTU_BNE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLT_BEQ;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLT_BNE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.I_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.RI_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.R_TYPE;
 import static com.theKidOfArcrania.mips.runner.ProgramException.ErrorType.ARIH;
 import static java.lang.Integer.toUnsignedLong;
 import static java.lang.Short.toUnsignedInt;
@@ -18,42 +32,319 @@ import static java.lang.Short.toUnsignedInt;
 
 /**
  * This interprets instruction opcodes for a MIPS program, allowing step-by-step running.
+ * <p>
+ * While recording (see {@link #startRecording(int, long)}), the program can also be run in reverse. Each instruction
+ * run forward records how to undo itself in a bounded {@link UndoLog}, and every so often, a checkpoint of the whole
+ * program is taken. Running in reverse undoes one instruction at a time, and whenever the undo log runs out, the
+ * latest checkpoint before the current point is restored and replayed forward to refill the undo log. So stepping back
+ * costs at most one replay of a checkpoint interval, no matter how long the program has been running.
+ * <p>
+ * Breakpoints are kept in a bitset indexed by the word offset of the instruction within the text segment, and memory
+ * watchpoints are kept by the {@link MemState}. Both are checked within the run loop itself (forwards and in reverse),
+ * and stop it with {@link StopReason#BREAKPOINT} or {@link StopReason#WATCHPOINT}.
  *
  * @author Henry Wang
  */
 public class Interpreter implements Constants, Registers {
-    private final BitPacker current;
+
+    /**
+     * Represents a frozen copy of an interpreter's program and memory state, e.g. right after a program has been
+     * loaded. A snapshot can be loaded into any number of interpreters (concurrently, if need be), each of which gets
+     * a copy-on-write fork of the memory state, so a program only has to be loaded once to be run against many inputs.
+     */
+    public static final class Snapshot implements ProgramLoader {
+        private final MemState.Snapshot state;
+        private final DecodedInst[] textCache;
+        private final DecodedInst[] pairCache;
+        private final int addrDataTail;
+        private final int addrTextTail;
+
+        /**
+         * Captures a snapshot of an interpreter.
+         *
+         * @param interp the interpreter to capture
+         */
+        private Snapshot(Interpreter interp) {
+            state = interp.state.snapshot();
+            textCache = interp.textCache.clone();
+            pairCache = interp.pairCache.clone();
+            addrDataTail = interp.addrDataTail;
+            addrTextTail = interp.addrTextTail;
+        }
+
+        /**
+         * Restores the interpreter to this snapshot.
+         *
+         * @param interp the interpreter to load into
+         * @see Interpreter#restore(Snapshot)
+         */
+        @Override
+        public void load(Interpreter interp) {
+            interp.restore(this);
+        }
+    }
+
+    private static final int COMPILE_THRESHOLD = 64;
+    private static final int MAX_BLOCK_LENGTH = 128;
+    private static final int UNCOMPILABLE = Integer.MIN_VALUE;
+    private static final int STRING_CHUNK = 1024;
+    private static final int MAX_CHECKPOINTS = 64;
+
+    /**
+     * Represents a checkpoint of a recorded program.
+     */
+    private static final class Checkpoint {
+        private final long time;
+        private final int input;
+        private final Snapshot snapshot;
+
+        /**
+         * Constructs a checkpoint.
+         *
+         * @param time     the number of instructions run since recording started.
+         * @param input    the position of the input journal.
+         * @param snapshot the snapshot of the program.
+         */
+        private Checkpoint(long time, int input, Snapshot snapshot) {
+            this.time = time;
+            this.input = input;
+            this.snapshot = snapshot;
+        }
+    }
+
     private final MemState state;
+    private DecodedInst[] textCache;
+    private DecodedInst[] pairCache;
+
+    private BlockCompiler compiler;
+    private CompiledBlock[] blocks;
+    private int[] blockCounts;
 
     private int addrDataTail;
     private int addrTextTail;
 
-    private final InputStream in;
-    private final PrintStream out;
+    private final SyscallIO io;
+    private final byte[] strBuff = new byte[STRING_CHUNK];
+
+    private UndoLog undo;
+    private InputJournal journal;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private long checkpointInterval;
+    private long nextCheckpoint;
+    private boolean replaying;
+
+    private final BitSet breakpoints = new BitSet();
 
     /**
-     * Creates a new interpreter with the default memory segments loaded.
+     * Creates a new interpreter with the default memory segments loaded, reading from and writing to the standard
+     * streams.
      */
     public Interpreter() {
-        in = new BufferedInputStream(System.in);
-        out = System.out;
+        this(new StreamSyscallIO(System.in, System.out));
+    }
+
+    /**
+     * Creates a new interpreter with the default memory segments loaded.
+     *
+     * @param io the I/O device that the console syscalls read from and write to
+     */
+    public Interpreter(SyscallIO io) {
+        this.io = Objects.requireNonNull(io);
 
-        current = new BitPacker(INST_SIZE);
         state = new MemState();
+        textCache = new DecodedInst[0];
+        pairCache = new DecodedInst[0];
+        blocks = new CompiledBlock[0];
+        blockCounts = new int[0];
 
         addrTextTail = ADDR_TEXT;
         addrDataTail = ADDR_DATA;
 
         state.allocateSegment(addrDataTail, ADDR_BLOCK_SIZE);
         state.allocateSegment(ADDR_GLOBL, ADDR_BLOCK_SIZE);
-        state.allocateSegment(ADDR_STACK - ADDR_BLOCK_SIZE + 1, ADDR_BLOCK_SIZE);
+        //Segment ends are exclusive, so the stack cannot include the very last addressable byte.
+        state.allocateSegment(ADDR_STACK - ADDR_BLOCK_SIZE + 1, ADDR_BLOCK_SIZE - 1);
 
         state.setRegister(REG_GP, ADDR_GLOBL);
-        state.setRegister(REG_SP, ADDR_STACK);
+        state.setRegister(REG_SP, ADDR_STACK & ~(INST_SIZE - 1));
 
         state.pc(ADDR_TEXT);
     }
 
+    public MemState getState() {
+        return state;
+    }
+
+    public boolean isTiered() {
+        return compiler != null;
+    }
+
+    /**
+     * Sets whether if this interpreter runs in tiered mode. In tiered mode, {@link #run(long)} profiles how often each
+     * basic block is entered, and once a block gets hot, it is compiled into a JVM class and run as a whole whenever
+     * that block starts. Cold code is still interpreted one instruction at a time, and so is everything run with
+     * {@link #runUntil(Predicate, long)}, since compiled blocks cannot be stopped midway.
+     *
+     * @param tiered true to enable tiered mode, false to only interpret.
+     */
+    public void setTiered(boolean tiered) {
+        if (tiered == isTiered()) {
+            return;
+        }
+
+        compiler = tiered ? new BlockCompiler() : null;
+        for (CompiledBlock block : blocks) {
+            if (block != null) {
+                block.valid = false;
+            }
+        }
+        Arrays.fill(blocks, null);
+        Arrays.fill(blockCounts, 0);
+    }
+
+    /**
+     * Captures the current program and memory state of this interpreter in a snapshot. Compiled blocks are not part of
+     * the snapshot.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Restores this interpreter to a snapshot, replacing its entire memory state and program. The memory is forked
+     * from the snapshot, so this only takes time proportional to the number of memory pages. Any compiled blocks are
+     * dropped, and whether this interpreter is tiered is kept as is.
+     *
+     * @param snapshot the snapshot to restore.
+     */
+    public void restore(Snapshot snapshot) {
+        state.restore(snapshot.state);
+        textCache = snapshot.textCache.clone();
+        pairCache = snapshot.pairCache.clone();
+        addrDataTail = snapshot.addrDataTail;
+        addrTextTail = snapshot.addrTextTail;
+
+        for (CompiledBlock block : blocks) {
+            if (block != null) {
+                block.valid = false;
+            }
+        }
+        blocks = new CompiledBlock[textCache.length];
+        blockCounts = new int[textCache.length];
+        state.setWriteListener(ADDR_TEXT, addrTextTail, this::invalidateText);
+    }
+
+    public boolean isRecording() {
+        return undo != null;
+    }
+
+    /**
+     * Starts recording the execution of the program, so that it can be run in reverse from then on, e.g. with
+     * {@link #reverseStep(long)}. While recording, instructions are always interpreted (with no compiled blocks,
+     * although fused pairs are still used), and all the input read by syscalls is kept, so that it can be read again
+     * when the program is run over again. Changes made directly to the memory state (or by loading a program) while
+     * paused are not recorded.
+     *
+     * @param capacity           the number of undo records to keep. Most instructions take up one record, plus
+     *                           one record for every four bytes stored (or for writing to the HI/LO registers). An
+     *                           instruction that takes up more records than this is undone by replaying instead.
+     * @param checkpointInterval the number of instructions between checkpoints. Once there are too many checkpoints,
+     *                           every other checkpoint is dropped, and this interval is doubled.
+     * @throws IllegalArgumentException if the capacity or the interval is not positive.
+     */
+    public void startRecording(int capacity, long checkpointInterval) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+
+        journal = new InputJournal(io);
+        undo = new UndoLog(capacity, journal);
+        checkpoints.clear();
+        this.checkpointInterval = checkpointInterval;
+        nextCheckpoint = 0;
+    }
+
+    /**
+     * Stops recording, dropping all of the recorded history.
+     */
+    public void stopRecording() {
+        undo = null;
+        journal = null;
+        checkpoints.clear();
+    }
+
+    /**
+     * @return the number of instructions run since recording started, less any that have been run in reverse.
+     * @throws IllegalStateException if this interpreter is not recording.
+     */
+    public long getTime() {
+        checkRecording();
+        return undo.getTime();
+    }
+
+    /**
+     * Runs the program in reverse for at most the specified number of instructions. This stops early if it reaches
+     * the point where recording started.
+     *
+     * @param maxInstructions the maximum number of instructions to undo.
+     * @return the result of this run. The PC is the address of the last instruction undone.
+     * @throws IllegalStateException if this interpreter is not recording.
+     */
+    public RunResult reverseStep(long maxInstructions) {
+        return reverse(maxInstructions, null);
+    }
+
+    /**
+     * Runs the program in reverse until the stop condition is met, for at most the specified number of instructions.
+     * The condition is tested after undoing every instruction, with the PC of the memory state pointing to that
+     * instruction (i.e. right before it runs), so that this stops at the same places as
+     * {@link #runUntil(Predicate, long)} would.
+     *
+     * @param condition       the stop condition.
+     * @param maxInstructions the maximum number of instructions to undo.
+     * @return the result of this run.
+     * @throws IllegalStateException if this interpreter is not recording.
+     */
+    public RunResult reverseUntil(Predicate<MemState> condition, long maxInstructions) {
+        return reverse(maxInstructions, Objects.requireNonNull(condition));
+    }
+
+    /**
+     * Sets or clears a breakpoint. A run stops with {@link StopReason#BREAKPOINT} right before it would execute an
+     * instruction with a breakpoint, except for the very first instruction of a run, so that a run can resume from a
+     * breakpoint. Hot blocks that contain a breakpoint are interpreted instead of run as a whole.
+     *
+     * @param addr    the address of the instruction.
+     * @param enabled true to set the breakpoint, false to clear it.
+     * @throws IllegalArgumentException if the address is not an instruction within the text segment.
+     */
+    public void setBreakpoint(int addr, boolean enabled) {
+        if ((addr & (INST_SIZE - 1)) != 0 || addr < ADDR_TEXT || addr >= addrTextTail) {
+            throw new IllegalArgumentException("Not an instruction address: 0x" + Integer.toHexString(addr));
+        }
+        breakpoints.set((addr - ADDR_TEXT) >> 2, enabled);
+    }
+
+    /**
+     * Checks whether if a breakpoint is set at an address.
+     *
+     * @param addr the address of the instruction.
+     * @return true if a breakpoint is set, false otherwise.
+     */
+    public boolean isBreakpoint(int addr) {
+        int ind = (addr - ADDR_TEXT) >> 2;
+        return (addr & (INST_SIZE - 1)) == 0 && ind >= 0 && breakpoints.get(ind);
+    }
+
+    /**
+     * Clears all the breakpoints.
+     */
+    public void clearBreakpoints() {
+        breakpoints.clear();
+    }
+
     /**
      * Appends a .text chunk to the end of the text segment
      *
@@ -64,6 +355,17 @@ public class Interpreter implements Constants, Registers {
         state.allocateSegment(addrTextTail, chunk.length);
         state.set(addrTextTail, chunk);
         addrTextTail += chunk.length;
+
+        int words = (addrTextTail - ADDR_TEXT + INST_SIZE - 1) / INST_SIZE;
+        textCache = Arrays.copyOf(textCache, words);
+        if (pairCache.length > 0) {
+            //The last instruction may now pair up with the appended one.
+            pairCache[pairCache.length - 1] = null;
+        }
+        pairCache = Arrays.copyOf(pairCache, words);
+        blocks = Arrays.copyOf(blocks, words);
+        blockCounts = Arrays.copyOf(blockCounts, words);
+        state.setWriteListener(ADDR_TEXT, addrTextTail, this::invalidateText);
     }
 
     /**
@@ -82,253 +384,711 @@ public class Interpreter implements Constants, Registers {
      *
      * @throws ProgramException if executing this instruction results in an illegal action
      */
-    @SuppressWarnings("MagicNumber")
     public void execute() throws ProgramException {
+        RunResult result = run(1);
+        if (result.getFault() != null) {
+            throw result.getFault();
+        }
+    }
+
+    /**
+     * Runs the program for at most the specified number of instructions. This stops early if the program exits or an
+     * instruction traps. In tiered mode, hot basic blocks are compiled and run as a whole, as long as the entire
+     * block fits within the remaining instruction count.
+     *
+     * @param maxInstructions the maximum number of instructions to execute.
+     * @return the result of this run.
+     */
+    public RunResult run(long maxInstructions) {
+        truncateHistory();
+        return run(maxInstructions, null);
+    }
+
+    /**
+     * Runs the program until the stop condition is met, for at most the specified number of instructions. The
+     * condition is tested before every instruction, with the PC of the memory state pointing to that instruction.
+     * Compiled blocks are not used while running with a condition, since they cannot be stopped midway.
+     *
+     * @param condition       the stop condition.
+     * @param maxInstructions the maximum number of instructions to execute.
+     * @return the result of this run.
+     */
+    public RunResult runUntil(Predicate<MemState> condition, long maxInstructions) {
+        truncateHistory();
+        return run(maxInstructions, Objects.requireNonNull(condition));
+    }
+
+    /**
+     * This is the main interpreter loop. The PC, next PC and the register file are all held in locals here, and are
+     * only flushed back into the memory state before a syscall, a compiled block, a stop condition, or when the loop
+     * stops for any reason. Buffered syscall output is also flushed once the loop stops.
+     * <p>
+     * Adjacent instructions that pseudo-instructions expand into are run as fused pairs (see
+     * {@link DecodedInst#fuse(DecodedInst, DecodedInst)}) whenever both instructions would have run back to back
+     * anyway: that is, there is no stop condition to test in between, the next PC follows on from the first
+     * instruction, and there are at least two instructions left to run. The first instruction must also not be in a
+     * delay slot, since then the second instruction would start a basic block. A fused case runs the first
+     * instruction, steps the PC past it, then falls into running the second instruction as usual.
+     * <p>
+     * While recording, each instruction is recorded in the undo log right before it runs (a fused pair is recorded as
+     * two steps), and a checkpoint is taken beforehand whenever one is due. If an instruction traps (or exits) after
+     * being recorded, its record is dropped again, since it is not counted as run.
+     * <p>
+     * Breakpoints and watchpoints are only tested when there are any, which is decided once per run. A fused pair is
+     * not used if its second instruction has a breakpoint, and neither is a compiled block that has a breakpoint past
+     * its first instruction. Compiled blocks are not used at all while there are any watchpoints, since they cannot be
+     * stopped right after a memory access (fused pairs never access memory). Neither are tested while replaying.
+     *
+     * @param maxInstructions the maximum number of instructions to execute.
+     * @param condition       the stop condition, or null if none.
+     * @return the result of this run.
+     */
+    @SuppressWarnings("MagicNumber")
+    private RunResult run(long maxInstructions, Predicate<MemState> condition) {
+        int[] regs = state.registers();
         int pc = state.pc();
+        int nPC = state.nPC();
+        long count = 0;
+        boolean blockStart = true;
+        boolean delaySlot = false;
+        long start = undo != null ? undo.getTime() : 0;
+        state.setUndoLog(undo);
+        boolean breaking = !replaying && !breakpoints.isEmpty();
+        boolean watching = !replaying && state.hasWatchpoints();
+        state.pollWatchHit();
+
+        try {
+            while (count < maxInstructions) {
+                if (breaking && count > 0 && isBreakpoint(pc)) {
+                    state.setPC(pc, nPC);
+                    return new RunResult(StopReason.BREAKPOINT, count, pc, null);
+                }
 
-        current.setDWORD(0, state.getInt(pc));
+                if (condition != null) {
+                    state.setPC(pc, nPC);
+                    if (condition.test(state)) {
+                        return new RunResult(StopReason.CONDITION, count, pc, null);
+                    }
+                } else if (blockStart && compiler != null && undo == null && !watching && nPC == pc + INST_SIZE) {
+                    CompiledBlock block = lookupBlock(pc);
+                    if (block != null && block.getLength() <= maxInstructions - count &&
+                            !(breaking && hasBreakpoint(pc + INST_SIZE, block.getLength() - 1))) {
+                        state.setPC(pc, nPC);
+                        try {
+                            count += block.run(state);
+                        } catch (ProgramException e) {
+                            //Blocks are straight-line code, so the faulting PC tells how far the block got.
+                            count += (state.pc() - pc) >> 2;
+                            throw e;
+                        } finally {
+                            pc = state.pc();
+                            nPC = state.nPC();
+                        }
+                        continue;
+                    }
+                }
 
-        int regS = current.get(BITS_REG_OFF, BITS_REG);
-        int regT = current.get(BITS_REG_OFF + BITS_REG, BITS_REG); //Also register immediate
-        int regD = current.get(BITS_REG_OFF + BITS_REG * 2, BITS_REG);
-        int shamt = current.get(BITS_SHAMT_OFF, BITS_SHAMT);
-        int imm = current.get(BITS_IMM_OFF, BITS_IMM);
-        int addr = current.get(BITS_ADDR_OFF, BITS_ADDR);
+                boolean fuse = condition == null && !delaySlot && nPC == pc + INST_SIZE &&
+                        maxInstructions - count > 1 && !(breaking && isBreakpoint(nPC));
+                DecodedInst inst = fuse ? fetchPair(pc) : fetch(pc);
+                int regS = inst.rs;
+                int regT = inst.rt;
+                int regD = inst.rd;
+                int shamt = inst.shamt;
+                int imm = inst.imm;
 
-        int advance = 4;
-        switch (current.get(0, BITS_OPCODE)) {
-            case 0x00: //R-type opcodes
-                switch (current.get(BITS_FUNCT_OFF, BITS_FUNCT)) {
-                    case 0x00: //sll
-                        reg(regD, reg(regT) << shamt);
+                if (undo != null) {
+                    if (undo.getTime() >= nextCheckpoint) {
+                        state.setPC(pc, nPC);
+                        checkpoint();
+                    }
+                    if (inst.handler >= FUSED) {
+                        undo.stepPair(pc, inst, regs, state);
+                    } else {
+                        undo.step(pc, nPC, inst, regs, state);
+                    }
+                }
+
+                int next = nPC + INST_SIZE;
+                switch (inst.handler) {
+                    case R_TYPE | 0x00: //sll
+                        regs[regD] = regs[regT] << shamt;
                         break;
-                    case 0x02: //srl
-                        reg(regD, reg(regT) >>> shamt);
+                    case R_TYPE | 0x02: //srl
+                        regs[regD] = regs[regT] >>> shamt;
                         break;
-                    case 0x03: //sra
-                        reg(regD, reg(regT) >> shamt);
+                    case R_TYPE | 0x03: //sra
+                        regs[regD] = regs[regT] >> shamt;
                         break;
-                    case 0x04: //sllv
-                        reg(regD, reg(regT) << reg(regS));
+                    case R_TYPE | 0x04: //sllv
+                        regs[regD] = regs[regT] << regs[regS];
                         break;
-                    case 0x06: //srlv
-                        reg(regD, reg(regT) >>> reg(regS));
+                    case R_TYPE | 0x06: //srlv
+                        regs[regD] = regs[regT] >>> regs[regS];
                         break;
-                    case 0x07: //sarv
-                        reg(regD, reg(regT) >> reg(regS));
+                    case R_TYPE | 0x07: //sarv
+                        regs[regD] = regs[regT] >> regs[regS];
                         break;
-                    case 0x08: //jr
-                        state.jump(reg(regS));
-                        advance = -1;
+                    case R_TYPE | 0x08: //jr
+                        next = regs[regS];
                         break;
-                    case 0x09: //jalr
-                        state.jump(reg(regS));
-                        advance = -1;
-                        reg(regD, pc + INST_SIZE * 2);
+                    case R_TYPE | 0x09: //jalr
+                        next = regs[regS];
+                        regs[regD] = pc + INST_SIZE * 2;
                         break;
-                    case 0x0c: //syscall
+                    case R_TYPE | 0x0c: //syscall
+                        state.setPC(pc, nPC);
+                        if (undo != null) {
+                            undo.saveInput(journal.getPosition());
+                        }
                         syscall();
                         break;
-                    case 0x0d: //break
+                    case R_TYPE | 0x0d: //break
                         throw new ProgramException(ErrorType.BKPT);
-                    case 0x10: //mfhi
-                        reg(regD, state.getHigh());
+                    case R_TYPE | 0x10: //mfhi
+                        regs[regD] = state.getHigh();
                         break;
-                    case 0x11: //mthi
-                        state.setHigh(reg(regS));
+                    case R_TYPE | 0x11: //mthi
+                        state.setHigh(regs[regS]);
                         break;
-                    case 0x12: //mflo
-                        reg(regD, state.getLow());
+                    case R_TYPE | 0x12: //mflo
+                        regs[regD] = state.getLow();
                         break;
-                    case 0x13: //mtlo
-                        state.setLow(reg(regS));
+                    case R_TYPE | 0x13: //mtlo
+                        state.setLow(regs[regS]);
                         break;
-                    case 0x18: //mult
-                        long res = (long) reg(regS) * reg(regT);
+                    case R_TYPE | 0x18: //mult
+                        long res = (long) regs[regS] * regs[regT];
                         state.setLow((int) res);
                         state.setHigh((int) (res >>> Integer.SIZE));
                         break;
-                    case 0x19: //multu
-                        res = regU(regS) * regU(regT);
+                    case R_TYPE | 0x19: //multu
+                        res = toUnsignedLong(regs[regS]) * toUnsignedLong(regs[regT]);
                         state.setLow((int) res);
                         state.setHigh((int) (res >>> Integer.SIZE));
                         break;
-                    case 0x1A: //div
-                        if (reg(regT) == 0) {
+                    case R_TYPE | 0x1A: //div
+                        if (regs[regT] == 0) {
                             throw new ProgramException(ARIH);
                         }
-                        state.setLow(reg(regS) / reg(regT));
-                        state.setHigh(reg(regS) % reg(regT));
+                        state.setLow(regs[regS] / regs[regT]);
+                        state.setHigh(regs[regS] % regs[regT]);
                         break;
-                    case 0x1B: //divu
-                        if (reg(regT) == 0) {
+                    case R_TYPE | 0x1B: //divu
+                        if (regs[regT] == 0) {
                             throw new ProgramException(ARIH);
                         }
-                        state.setLow((int) (regU(regS) / regU(regT)));
-                        state.setHigh((int) (regU(regS) % regU(regT)));
+                        state.setLow(Integer.divideUnsigned(regs[regS], regs[regT]));
+                        state.setHigh(Integer.remainderUnsigned(regs[regS], regs[regT]));
                         break;
-                    case 0x20: //add
-                        res = (long) reg(regS) + reg(regT);
+                    case R_TYPE | 0x20: //add
+                        res = (long) regs[regS] + regs[regT];
                         testOverflow(res);
-                        reg(regD, (int) res);
+                        regs[regD] = (int) res;
                         break;
-                    case 0x21: //addu
-                        reg(regD, reg(regS) + reg(regT));
+                    case R_TYPE | 0x21: //addu
+                        regs[regD] = regs[regS] + regs[regT];
                         break;
-                    case 0x22: // sub
-                        res = (long) reg(regS) - reg(regT);
+                    case R_TYPE | 0x22: // sub
+                        res = (long) regs[regS] - regs[regT];
                         testOverflow(res);
-                        reg(regD, (int) res);
+                        regs[regD] = (int) res;
                         break;
-                    case 0x23: // subu
-                        reg(regD, reg(regS) - reg(regT));
+                    case R_TYPE | 0x23: // subu
+                        regs[regD] = regs[regS] - regs[regT];
                         break;
-                    case 0x24: // and
-                        reg(regD, reg(regS) & reg(regT));
+                    case R_TYPE | 0x24: // and
+                        regs[regD] = regs[regS] & regs[regT];
                         break;
-                    case 0x25: // or
-                        reg(regD, reg(regS) | reg(regT));
+                    case R_TYPE | 0x25: // or
+                        regs[regD] = regs[regS] | regs[regT];
                         break;
-                    case 0x26: // xor
-                        reg(regD, reg(regS) ^ reg(regT));
+                    case R_TYPE | 0x26: // xor
+                        regs[regD] = regs[regS] ^ regs[regT];
                         break;
-                    case 0x27: // nor
-                        reg(regD, ~(reg(regS) | reg(regT)));
+                    case R_TYPE | 0x27: // nor
+                        regs[regD] = ~(regs[regS] | regs[regT]);
                         break;
-                    case 0x2a: // slt
-                        reg(regD, reg(regS) < reg(regT) ? 1 : 0);
+                    case R_TYPE | 0x2a: // slt
+                        regs[regD] = regs[regS] < regs[regT] ? 1 : 0;
                         break;
-                    case 0x2b: // sltu
-                        reg(regD, regU(reg(regS)) < regU(regT) ? 1 : 0);
+                    case R_TYPE | 0x2b: // sltu
+                        regs[regD] = Integer.compareUnsigned(regs[regS], regs[regT]) < 0 ? 1 : 0;
                         break;
-                    default:
-                        throw new ProgramException(ErrorType.RI);
-                }
-                break;
-            case 0x01: //RI-type opcodes
-                switch (regT) {
-                    case 0x00: //bltz
-                        if (reg(regS) < 0) {
-                            advance = imm << 2;
+                    case RI_TYPE | 0x00: //bltz
+                        if (regs[regS] < 0) {
+                            next = nPC + (imm << 2);
+                        }
+                        break;
+                    case RI_TYPE | 0x01: //bgez
+                        if (regs[regS] >= 0) {
+                            next = nPC + (imm << 2);
+                        }
+                        break;
+                    case RI_TYPE | 0x10: //bltzal
+                        if (regs[regS] < 0) {
+                            next = nPC + (imm << 2);
+                            regs[REG_RA] = pc + INST_SIZE * 2;
+                        }
+                        break;
+                    case RI_TYPE | 0x11: //bgezal
+                        if (regs[regS] >= 0) {
+                            next = nPC + (imm << 2);
+                            regs[REG_RA] = pc + INST_SIZE * 2;
+                        }
+                        break;
+                    case I_TYPE | 0x02: //j
+                        next = (pc & JMP_FAR_MASK) | (inst.addr << 2);
+                        break;
+                    case I_TYPE | 0x03: //jal
+                        regs[REG_RA] = pc + INST_SIZE * 2;
+                        next = (pc & JMP_FAR_MASK) | (inst.addr << 2);
+                        break;
+                    case I_TYPE | 0x04: //beq
+                        if (regs[regS] == regs[regT]) {
+                            next = nPC + (imm << 2);
+                        }
+                        break;
+                    case I_TYPE | 0x05: //bne
+                        if (regs[regS] != regs[regT]) {
+                            next = nPC + (imm << 2);
+                        }
+                        break;
+                    case I_TYPE | 0x06: //blez
+                        if (regs[regS] <= 0) {
+                            next = nPC + (imm << 2);
                         }
                         break;
-                    case 0x01: //bgez
-                        if (reg(regS) >= 0) {
-                            advance = imm << 2;
+                    case I_TYPE | 0x07: //bgtz
+                        if (regs[regS] > 0) {
+                            next = nPC + (imm << 2);
                         }
                         break;
-                    case 0x10: //bltzal
-                        if (reg(regS) < 0) {
-                            advance = imm << 2;
-                            reg(REG_RA, pc + INST_SIZE * 2);
+                    case I_TYPE | 0x08: //addi
+                        res = (long) regs[regS] + imm;
+                        testOverflow(res);
+                        regs[regT] = (int) res;
+                        break;
+                    case I_TYPE | 0x09: //addiu
+                        regs[regT] = regs[regS] + imm;
+                        break;
+                    case I_TYPE | 0x0a: //slti
+                        regs[regT] = regs[regS] < imm ? 1 : 0;
+                        break;
+                    case I_TYPE | 0x0b: //sltiu
+                        regs[regT] = Integer.compareUnsigned(regs[regS], imm) < 0 ? 1 : 0;
+                        break;
+                    case I_TYPE | 0x0c: //andi
+                        regs[regT] = regs[regS] & (imm & BITS_IMM_MASK);
+                        break;
+                    case I_TYPE | 0x0d: //ori
+                        regs[regT] = regs[regS] | (imm & BITS_IMM_MASK);
+                        break;
+                    case I_TYPE | 0x0e: //xori
+                        regs[regT] = regs[regS] ^ (imm & BITS_IMM_MASK);
+                        break;
+                    case I_TYPE | 0x0f: //lui
+                        regs[regT] = imm << Short.SIZE;
+                        break;
+                    case I_TYPE | 0x20: //lb
+                        regs[regT] = state.get(regs[regS] + imm);
+                        break;
+                    case I_TYPE | 0x21: //lh
+                        regs[regT] = state.getShort(regs[regS] + imm);
+                        break;
+                    case I_TYPE | 0x22: //lwl
+                        //TODO: not implemented
+                        break;
+                    case I_TYPE | 0x23: //lw
+                        regs[regT] = state.getInt(regs[regS] + imm);
+                        break;
+                    case I_TYPE | 0x24: //lbu
+                        regs[regT] = toUnsignedInt(state.get(regs[regS] + imm));
+                        break;
+                    case I_TYPE | 0x25: //lhu
+                        regs[regT] = toUnsignedInt(state.getShort(regs[regS] + imm));
+                        break;
+                    case I_TYPE | 0x26: //lwr
+                        //TODO: not implemented
+                        break;
+                    case I_TYPE | 0x28: //sb
+                        state.set(regs[regS] + imm, (byte) regs[regT]);
+                        break;
+                    case I_TYPE | 0x29: //sh
+                        state.setShort(regs[regS] + imm, (short) regs[regT]);
+                        break;
+                    case I_TYPE | 0x2a: //swl
+                        //Stores upper bytes
+                        //TODO: not implemented
+                        break;
+                    case I_TYPE | 0x2b: //sw
+                        state.setInt(regs[regS] + imm, regs[regT]);
+                        break;
+                    case I_TYPE | 0x2e: //swr
+                        //TODO: not implemented
+                        break;
+                    case FUSED | FUSED_LUI_ORI: //lui; ori
+                        regs[regT] = imm;
+                        pc = nPC;
+                        nPC = next;
+                        next += INST_SIZE;
+                        count++;
+                        break;
+                    case FUSED | FUSED_SLT_BNE: //slt; bne
+                    case FUSED | FUSED_SLT_BEQ: //slt; beq
+                    case FUSED | FUSED_SLTU_BNE: //sltu; bne
+                    case FUSED | FUSED_SLTU_BEQ: //sltu; beq
+                        int handler = inst.handler;
+                        boolean less = handler == (FUSED | FUSED_SLT_BNE) || handler == (FUSED | FUSED_SLT_BEQ) ?
+                                regs[regS] < regs[regT] : Integer.compareUnsigned(regs[regS], regs[regT]) < 0;
+                        regs[regD] = less ? 1 : 0;
+                        pc = nPC;
+                        nPC = next;
+                        next += INST_SIZE;
+                        count++;
+                        boolean bne = handler == (FUSED | FUSED_SLT_BNE) || handler == (FUSED | FUSED_SLTU_BNE);
+                        if (less == bne) {
+                            next = nPC + (imm << 2);
                         }
                         break;
-                    case 0x11: //bgezal
-                        if (reg(regS) >= 0) {
-                            advance = imm << 2;
-                            reg(REG_RA, pc + INST_SIZE * 2);
+                    case FUSED | FUSED_MULT_MFLO: //mult; mflo
+                        res = (long) regs[regS] * regs[regT];
+                        state.setLow((int) res);
+                        state.setHigh((int) (res >>> Integer.SIZE));
+                        regs[regD] = (int) res;
+                        pc = nPC;
+                        nPC = next;
+                        next += INST_SIZE;
+                        count++;
+                        break;
+                    case FUSED | FUSED_DIV_MFLO: //div; mflo
+                    case FUSED | FUSED_DIV_MFHI: //div; mfhi
+                        if (regs[regT] == 0) {
+                            throw new ProgramException(ARIH);
                         }
+                        int quot = regs[regS] / regs[regT];
+                        int rem = regs[regS] % regs[regT];
+                        state.setLow(quot);
+                        state.setHigh(rem);
+                        regs[regD] = inst.handler == (FUSED | FUSED_DIV_MFLO) ? quot : rem;
+                        pc = nPC;
+                        nPC = next;
+                        next += INST_SIZE;
+                        count++;
                         break;
                     default:
                         throw new ProgramException(ErrorType.RI);
                 }
-                break;
-            case 0x02: //j
-                state.jump((pc & JMP_FAR_MASK) | (addr << 2));
-                break;
-            case 0x03: //jal
-                reg(REG_RA, pc + INST_SIZE * 2);
-                state.jump((pc & JMP_FAR_MASK) | (addr << 2));
-                break;
-            case 0x04: //beq
-                if (reg(regS) == reg(regT)) {
-                    advance = imm << 2;
+                regs[REG_ZERO] = 0;
+
+                if (watching) {
+                    Watchpoint hit = state.pollWatchHit();
+                    if (hit != null) {
+                        state.setPC(nPC, next);
+                        return new RunResult(StopReason.WATCHPOINT, count + 1, pc, null, hit);
+                    }
+                }
+
+                pc = nPC;
+                nPC = next;
+                count++;
+
+                blockStart = delaySlot || inst.kind == BlockCompiler.KIND_STOP;
+                delaySlot = inst.kind == BlockCompiler.KIND_BRANCH;
+            }
+
+            state.setPC(pc, nPC);
+            return new RunResult(StopReason.STEP_LIMIT, count, pc, null);
+        } catch (ProgramException e) {
+            state.setPC(pc, nPC);
+            while (undo != null && undo.getTime() > start + count) {
+                undo.discardStep();
+            }
+            return new RunResult(e.getType() == ErrorType.EXIT ? StopReason.EXIT : StopReason.TRAP, count, pc, e);
+        } finally {
+            state.setUndoLog(null);
+            flushOutput();
+        }
+    }
+
+    /**
+     * This is the reverse counterpart of the main interpreter loop, undoing one instruction at a time.
+     *
+     * @param maxInstructions the maximum number of instructions to undo.
+     * @param condition       the stop condition, or null if none.
+     * @return the result of this run.
+     * @throws IllegalStateException if this interpreter is not recording.
+     */
+    private RunResult reverse(long maxInstructions, Predicate<MemState> condition) {
+        checkRecording();
+        long count = 0;
+        state.pollWatchHit();
+        try {
+            while (count < maxInstructions) {
+                if (undo.getSteps() == 0 && !undo.isOverflowed() && !refill()) {
+                    return new RunResult(StopReason.HISTORY_START, count, state.pc(), null);
+                }
+                //A step that did not fit in the undo log is undone by replaying up to right before it instead.
+                if (!undo.isOverflowed()) {
+                    undo.undoStep(state);
+                } else if (!replay(undo.getTime() - 1)) {
+                    return new RunResult(StopReason.HISTORY_START, count, state.pc(), null);
                 }
-                break;
-            case 0x05: //bne
-                if (reg(regS) != reg(regT)) {
-                    advance = imm << 2;
+                count++;
+
+                //Undoing a write to watched memory is a write as well.
+                Watchpoint hit = state.pollWatchHit();
+                if (hit != null) {
+                    return new RunResult(StopReason.WATCHPOINT, count, state.pc(), null, hit);
                 }
-                break;
-            case 0x06: //blez
-                if (reg(regS) <= 0) {
-                    advance = imm << 2;
+                if (isBreakpoint(state.pc())) {
+                    return new RunResult(StopReason.BREAKPOINT, count, state.pc(), null);
                 }
-                break;
-            case 0x07: //bgtz
-                if (reg(regS) > 0) {
-                    advance = imm << 2;
+                if (condition != null && condition.test(state)) {
+                    return new RunResult(StopReason.CONDITION, count, state.pc(), null);
                 }
-                break;
-            case 0x08: //addi
-                long res = (long) reg(regS) + imm;
-                testOverflow(res);
-                reg(regD, (int) res);
-                break;
-            case 0x09: //addiu
-                reg(regD, reg(regS) + imm);
-                break;
-            case 0x0a: //slti
-                reg(regT, reg(regS) < imm ? 1 : 0);
-                break;
-            case 0x0b: //sltiu
-                reg(regT, regU(regS) < toUnsignedLong(imm) ? 1 : 0);
-                break;
-            case 0x0c: //andi
-                reg(regT, reg(regS) & imm);
-                break;
-            case 0x0d: //ori
-                reg(regT, reg(regS) | imm);
-                break;
-            case 0x0e: //xori
-                reg(regT, reg(regS) ^ imm);
-                break;
-            case 0x0f: //lui
-                reg(regT, imm << Short.SIZE);
-                break;
-            case 0x20: //lb
-                reg(regT, state.get(reg(regS) + imm));
-                break;
-            case 0x21: //lh
-                reg(regT, state.getShort(reg(regS) + imm));
-                break;
-            case 0x22: //lwl
-                //TODO: not implemented
-                break;
-            case 0x23: //lw
-                reg(regT, state.getInt(reg(regS) + imm));
-                break;
-            case 0x24: //lbu
-                reg(regT, toUnsignedInt(state.get(reg(regS) + imm)));
-                break;
-            case 0x25: //lhu
-                reg(regT, toUnsignedInt(state.getShort(reg(regS) + imm)));
-                break;
-            case 0x26: //lwr
-                //TODO: not implemented
-                break;
-            case 0x28: //sb
-                state.set(reg(regS), (byte) reg(regT));
-                break;
-            case 0x29: //sh
-                state.setShort(reg(regS), (short) reg(regT));
-                break;
-            case 0x2a: //swl
-                //Stores upper bytes
-                //TODO: not implemented
-                break;
-            case 0x2b: //sw
-                state.setInt(reg(regS), reg(regT));
-                break;
-            case 0x2e: //swr
-                //TODO: not implemented
-                break;
-            default:
-                throw new ProgramException(ErrorType.RI);
-        }
-
-        if (advance != -1) {
-            state.advancePC(pc);
+            }
+            return new RunResult(StopReason.STEP_LIMIT, count, state.pc(), null);
+        } catch (ProgramException e) {
+            return new RunResult(StopReason.TRAP, count, state.pc(), e);
+        }
+    }
+
+    /**
+     * Refills the undo log once it has run out, by replaying the program back up to the current point.
+     *
+     * @return true if there is a step to undo again (or the last step overflowed), false if there is no earlier
+     * checkpoint.
+     * @throws ProgramException if the replay does not get back to the current point.
+     */
+    private boolean refill() throws ProgramException {
+        return replay(undo.getTime()) && (undo.getSteps() > 0 || undo.isOverflowed());
+    }
+
+    /**
+     * Restores the latest checkpoint taken before the current point, and then replays the program from there up to
+     * the target point, which also refills the undo log along the way. No output is printed while replaying, and any
+     * input is read back from the input journal.
+     *
+     * @param target the time to replay up to. This must not be after the current point, nor before the checkpoint.
+     * @return true if replayed, false if there is no earlier checkpoint.
+     * @throws ProgramException if the replay does not get up to the target point.
+     */
+    private boolean replay(long target) throws ProgramException {
+        long time = undo.getTime();
+        Checkpoint from = null;
+        for (Checkpoint checkpoint : checkpoints) {
+            if (checkpoint.time < time) {
+                from = checkpoint;
+            }
+        }
+        if (from == null) {
+            return false;
+        }
+
+        restore(from.snapshot);
+        journal.setPosition(from.input);
+        undo.clear(from.time);
+        nextCheckpoint = Long.MAX_VALUE;
+        journal.setReplaying(true);
+        replaying = true;
+        RunResult result;
+        try {
+            result = run(target - from.time, null);
+        } finally {
+            journal.setReplaying(false);
+            replaying = false;
+        }
+        state.pollWatchHit();
+
+        if (result.getReason() != StopReason.STEP_LIMIT) {
+            throw result.getFault();
+        }
+        return true;
+    }
+
+    /**
+     * Takes a checkpoint of the program at the current point of the recording. If there are too many checkpoints,
+     * every other checkpoint (apart from the first one) is dropped, and the checkpoint interval is doubled, so that
+     * the whole recording is still covered.
+     */
+    private void checkpoint() {
+        checkpoints.add(new Checkpoint(undo.getTime(), journal.getPosition(), snapshot()));
+        if (checkpoints.size() > MAX_CHECKPOINTS) {
+            int kept = 0;
+            for (int i = 0; i < checkpoints.size(); i += 2) {
+                checkpoints.set(kept++, checkpoints.get(i));
+            }
+            checkpoints.subList(kept, checkpoints.size()).clear();
+            checkpointInterval *= 2;
+        }
+        nextCheckpoint = undo.getTime() + checkpointInterval;
+    }
+
+    /**
+     * Drops any checkpoints after the current point of the recording, before running forward from there. These
+     * would otherwise be stale if anything is changed before the program is run again.
+     */
+    private void truncateHistory() {
+        if (undo == null) {
+            return;
+        }
+
+        long time = undo.getTime();
+        int count = checkpoints.size();
+        while (count > 0 && checkpoints.get(count - 1).time > time) {
+            checkpoints.remove(--count);
+        }
+        nextCheckpoint = count == 0 ? time : checkpoints.get(count - 1).time + checkpointInterval;
+    }
+
+    /**
+     * Checks whether if any breakpoint is set within a run of instructions.
+     *
+     * @param addr  the address of the first instruction
+     * @param count the number of instructions
+     * @return true if any of these instructions has a breakpoint, false otherwise.
+     */
+    private boolean hasBreakpoint(int addr, int count) {
+        int ind = (addr - ADDR_TEXT) >> 2;
+        int found = breakpoints.nextSetBit(Math.max(0, ind));
+        return found >= 0 && found < ind + count;
+    }
+
+    /**
+     * Checks that this interpreter is recording.
+     *
+     * @throws IllegalStateException if this interpreter is not recording.
+     */
+    private void checkRecording() {
+        if (undo == null) {
+            throw new IllegalStateException("Not recording");
+        }
+    }
+
+    /**
+     * Fetches the decoded instruction at the specified address. Instructions within the text segment are decoded at
+     * most once, and are then served from the instruction cache until that memory is written to again.
+     *
+     * @param pc the address of the instruction
+     * @return the decoded instruction
+     * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
+     */
+    private DecodedInst fetch(int pc) throws ProgramException {
+        int ind = (pc - ADDR_TEXT) >> 2;
+        if ((pc & (INST_SIZE - 1)) != 0 || ind < 0 || ind >= textCache.length) {
+            return DecodedInst.decode(state.fetchInt(pc));
+        }
+
+        DecodedInst inst = textCache[ind];
+        if (inst == null) {
+            inst = DecodedInst.decode(state.fetchInt(pc));
+            textCache[ind] = inst;
+        }
+        return inst;
+    }
+
+    /**
+     * Fetches the instruction at the specified address, fused with the instruction right after it if possible. The
+     * result is cached separately from the plain instructions (so that compiled blocks still see every instruction),
+     * and is invalidated whenever either instruction of the pair is written to.
+     *
+     * @param pc the address of the instruction
+     * @return the fused pair, or the plain decoded instruction if it cannot be fused.
+     * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
+     */
+    private DecodedInst fetchPair(int pc) throws ProgramException {
+        int ind = (pc - ADDR_TEXT) >> 2;
+        if ((pc & (INST_SIZE - 1)) != 0 || ind < 0 || ind >= pairCache.length) {
+            return fetch(pc);
+        }
+
+        DecodedInst inst = pairCache[ind];
+        if (inst == null) {
+            inst = fetch(pc);
+            if (ind + 1 < pairCache.length) {
+                DecodedInst pair = DecodedInst.fuse(inst, fetch(pc + INST_SIZE));
+                if (pair != null) {
+                    inst = pair;
+                }
+            }
+            pairCache[ind] = inst;
+        }
+        return inst;
+    }
+
+    /**
+     * Looks up the compiled block starting at the specified address, and profiles this block entry. If the block has
+     * been entered often enough, this will compile it.
+     *
+     * @param pc the address of the first instruction of the block
+     * @return the compiled block, or null if this block is (still) interpreted.
+     * @throws ProgramException if an instruction of this block cannot be fetched.
+     */
+    private CompiledBlock lookupBlock(int pc) throws ProgramException {
+        int ind = (pc - ADDR_TEXT) >> 2;
+        if ((pc & (INST_SIZE - 1)) != 0 || ind < 0 || ind >= blocks.length) {
+            return null;
+        }
+
+        CompiledBlock block = blocks[ind];
+        if (block != null || blockCounts[ind] == UNCOMPILABLE || ++blockCounts[ind] < COMPILE_THRESHOLD) {
+            return block;
+        }
+
+        DecodedInst[] insts = new DecodedInst[Math.min(MAX_BLOCK_LENGTH, textCache.length - ind)];
+        for (int i = 0; i < insts.length; i++) {
+            insts[i] = fetch(pc + i * INST_SIZE);
+        }
+
+        block = compiler.compile(pc, insts);
+        if (block == null) {
+            blockCounts[ind] = UNCOMPILABLE;
+        }
+        blocks[ind] = block;
+        return block;
+    }
+
+    /**
+     * Invalidates any cached instructions and compiled blocks that overlap with a written range of the text segment.
+     *
+     * @param addr   the starting address that was written
+     * @param length the number of bytes written
+     */
+    private void invalidateText(int addr, int length) {
+        int from = Math.max(0, (addr - ADDR_TEXT) >> 2);
+        int to = Math.min(textCache.length, (addr + length - ADDR_TEXT + INST_SIZE - 1) >> 2);
+        for (int i = from; i < to; i++) {
+            textCache[i] = null;
+        }
+
+        //A fused pair starting at the word before also covers the first written word.
+        for (int i = Math.max(0, from - 1); i < to; i++) {
+            pairCache[i] = null;
+        }
+
+        //Any block that starts up to MAX_BLOCK_LENGTH instructions earlier may cover these words.
+        for (int i = Math.max(0, from - MAX_BLOCK_LENGTH + 1); i < to; i++) {
+            CompiledBlock block = blocks[i];
+            if (block != null && i + block.getLength() > from) {
+                block.valid = false;
+                blocks[i] = null;
+                blockCounts[i] = 0;
+            } else if (blockCounts[i] == UNCOMPILABLE) {
+                blockCounts[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Flushes any output that the program has buffered up. This is done whenever a run stops, so that the output is
+     * visible while the program is paused.
+     */
+    private void flushOutput() {
+        try {
+            io.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
@@ -351,47 +1111,54 @@ public class Interpreter implements Constants, Registers {
      */
     @SuppressWarnings("MagicNumber")
     private void syscall() throws ProgramException {
+        SyscallIO io = journal != null ? journal : this.io;
         try {
-            Scanner scan = new Scanner(System.in);
             switch (reg(REG_V0)) {
                 case 1: //print_int
-                    out.println(reg(REG_A0));
+                    io.printInt(reg(REG_A0));
                     break;
                 case 4: //print_string
                     int addr = reg(REG_A0);
-                    int c;
-                    while ((c = state.get(addr++)) != 0) {
-                        out.print((char) c);
+                    int end = addr;
+                    while (state.get(end) != 0) {
+                        end++;
+                    }
+                    while (addr < end) {
+                        int length = Math.min(end - addr, strBuff.length);
+                        state.get(addr, strBuff, 0, length);
+                        io.print(strBuff, 0, length);
+                        addr += length;
                     }
                     break;
                 case 5: //read_int
-                    reg(REG_V0, scan.nextInt());
-                    scan.nextLine();
+                    reg(REG_V0, io.readInt());
                     break;
                 case 8: //read_string
                     addr = reg(REG_A0);
-                    int length = reg(REG_A1);
-                    while (length-- > 1) {
-                        c = in.read();
-                        if (c == -1) {
+                    int left = reg(REG_A1) - 1;
+                    while (left > 0) {
+                        int read = io.readLine(strBuff, 0, Math.min(left, strBuff.length));
+                        if (read == 0) {
                             break;
                         }
-                        state.set(addr++, (byte) c);
-                        if (c == '\n') {
+                        state.set(addr, strBuff, 0, read);
+                        addr += read;
+                        left -= read;
+                        if (strBuff[read - 1] == '\n') {
                             break;
                         }
                     }
                     break;
                 case 9: //sbrk
-                    System.out.println(reg(REG_A0));
+                    io.printInt(reg(REG_A0));
                     break;
                 case 10: //exit
                     throw new ProgramException(ErrorType.EXIT);
                 case 11: //print_character
-                    out.print((char) reg(REG_A0));
+                    io.printChar(reg(REG_A0));
                     break;
                 case 12: //read_character
-                    reg(REG_V0, in.read());
+                    reg(REG_V0, io.readChar());
                     break;
                 case 13: //open
                     //TODO: unimplemented.
@@ -422,16 +1189,6 @@ public class Interpreter implements Constants, Registers {
         return state.getRegister(regind);
     }
 
-    /**
-     * Utility method to query a register in an unsigned integer fom
-     *
-     * @param regind the register index
-     * @return the register value as an unsigned integer (returned as a long)
-     */
-    private long regU(int regind) {
-        return toUnsignedLong(state.getRegister(regind));
-    }
-
     /**
      * Utility method to set a register value
      *
@@ -439,6 +1196,8 @@ public class Interpreter implements Constants, Registers {
      * @param val    the value to set
      */
     private void reg(int regind, int val) {
-        state.setRegister(regind, val);
+        if (regind != REG_ZERO) {
+            state.setRegister(regind, val);
+        }
     }
 }
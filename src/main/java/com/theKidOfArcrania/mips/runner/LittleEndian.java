@@ -0,0 +1,90 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Utility methods to read and write little-endian integers directly from a backing byte array. These do no bounds or
+ * alignment checks beyond the ones done by the array access itself.
+ *
+ * @author Henry Wang
+ */
+final class LittleEndian {
+    private static final int BYTE_MASK = 0xFF;
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private LittleEndian() {
+    }
+
+    /**
+     * Reads a 16-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start reading from
+     * @return the value read
+     */
+    public static short getShort(byte[] data, int off) {
+        return (short) (data[off] & BYTE_MASK | data[off + 1] << Byte.SIZE);
+    }
+
+    /**
+     * Reads a 32-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start reading from
+     * @return the value read
+     */
+    public static int getInt(byte[] data, int off) {
+        return data[off] & BYTE_MASK | (data[off + 1] & BYTE_MASK) << Byte.SIZE |
+                (data[off + 2] & BYTE_MASK) << (2 * Byte.SIZE) | data[off + 3] << (3 * Byte.SIZE);
+    }
+
+    /**
+     * Reads a 64-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start reading from
+     * @return the value read
+     */
+    public static long getLong(byte[] data, int off) {
+        return getInt(data, off) & INT_MASK | (long) getInt(data, off + Integer.BYTES) << Integer.SIZE;
+    }
+
+    /**
+     * Writes a 16-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start writing to
+     * @param val  the value to write
+     */
+    public static void setShort(byte[] data, int off, short val) {
+        data[off] = (byte) val;
+        data[off + 1] = (byte) (val >> Byte.SIZE);
+    }
+
+    /**
+     * Writes a 32-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start writing to
+     * @param val  the value to write
+     */
+    public static void setInt(byte[] data, int off, int val) {
+        data[off] = (byte) val;
+        data[off + 1] = (byte) (val >> Byte.SIZE);
+        data[off + 2] = (byte) (val >> (2 * Byte.SIZE));
+        data[off + 3] = (byte) (val >> (3 * Byte.SIZE));
+    }
+
+    /**
+     * Writes a 64-bit little-endian integer.
+     *
+     * @param data the backing byte array
+     * @param off  the index to start writing to
+     * @param val  the value to write
+     */
+    public static void setLong(byte[] data, int off, long val) {
+        setInt(data, off, (int) val);
+        setInt(data, off + Integer.BYTES, (int) (val >> Integer.SIZE));
+    }
+}
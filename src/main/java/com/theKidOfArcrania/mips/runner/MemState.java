@@ -2,90 +2,144 @@ package com.theKidOfArcrania.mips.runner;
 
 import com.theKidOfArcrania.mips.Constants;
 import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
-import com.theKidOfArcrania.mips.util.RangeSet;
-
-import java.util.Set;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents the memory state (RAM memory and registers) for a MIPS program, including the TEXT/DATA segments.
+ * <p>
+ * A memory state can be captured in a {@link Snapshot}, which can then be forked into any number of new memory states
+ * (or restored into an existing one). With the default {@link PagedMemory}, the memory is shared copy-on-write, so
+ * forking only costs time proportional to the number of pages, and each fork only pays for the pages it writes to.
+ * <p>
+ * Memory can also be watched with {@link Watchpoint}s. The memory backend flags the watched memory (e.g. by page), and
+ * only accesses to flagged memory are checked against the watchpoints, so watching costs nothing for the rest of
+ * memory. The first watchpoint hit is kept until the interpreter polls for it.
  *
  * @author Henry Wang
  */
 public class MemState implements Constants, Registers {
 
     /**
-     * Represents a single memory segment
+     * Represents a frozen copy of a memory state. A snapshot is immutable, and can be forked concurrently from any
+     * number of threads.
      */
-    private static class Segment {
-        private final int start;
-        private final byte[] data;
-
-        /**
-         * Constructs a memory segment
-         *
-         * @param start the starting/base address
-         * @param size  the size of this memory segment
-         */
-        public Segment(int start, int size) {
-            this.start = start;
-            this.data = new byte[size];
-        }
-
-        /**
-         * Gets a byte at the address within this segment
-         *
-         * @param addr the absolute address to fetch
-         * @return the byte value
-         */
-        public byte get(int addr) {
-            return data[addr - start];
-        }
+    public static final class Snapshot {
+        private final MemoryBackend memory;
+        private final int[] regs;
+        private final int pc;
+        private final int nPC;
+        private final int high;
+        private final int low;
 
         /**
-         * Bulk get method.
+         * Captures a snapshot of a memory state.
          *
-         * @param addr   the address to start getting from
-         * @param buff   the byte buffer to write to
-         * @param offset the index offset of buffer to start from
-         * @param length the number of bytes to get.
+         * @param state the memory state to capture.
          */
-        public void get(int addr, byte[] buff, int offset, int length) {
-            System.arraycopy(data, addr - start, buff, offset, length);
+        private Snapshot(MemState state) {
+            memory = state.memory.fork();
+            regs = state.regs.clone();
+            pc = state.pc;
+            nPC = state.nPC;
+            high = state.high;
+            low = state.low;
         }
 
         /**
-         * Sets a byte at the address within this segment
+         * Creates a new memory state from this snapshot.
          *
-         * @param addr the absolute address to set
-         * @param b    the value to set to
+         * @return the new memory state.
          */
-        public void set(int addr, byte b) {
-            data[addr - start] = b;
-        }
-
-        /**
-         * Bulk set method.
-         *
-         * @param addr   the address to start setting to
-         * @param buff   the byte buffer to read from
-         * @param offset the index offset of buffer to start from
-         * @param length the number of bytes to set.
-         */
-        public void set(int addr, byte[] buff, int offset, int length) {
-            System.arraycopy(buff, offset, data, addr - start, length);
+        public MemState fork() {
+            MemState state = new MemState(memory.fork());
+            state.copyRegisters(this);
+            return state;
         }
     }
 
-    private static final long BYTE_MASK = 0xFFL;
-
     private int pc;
     private int nPC;
 
     private int high;
     private int low;
     private final int[] regs = new int[REGISTER_COUNT];
-    private final RangeSet<Segment> memory = new RangeSet<>();
+    private MemoryBackend memory;
+
+    private int watchStart;
+    private int watchEnd;
+    private WriteListener watcher;
+    private UndoLog undo;
+
+    private final List<Watchpoint> watchpoints = new ArrayList<>();
+    private Watchpoint watchHit;
+
+    /**
+     * Constructs a new memory state that is backed by a {@link PagedMemory}.
+     */
+    public MemState() {
+        this(new PagedMemory());
+    }
+
+    /**
+     * Constructs a new memory state with the specified memory backend.
+     *
+     * @param memory the memory backend used to store the RAM memory.
+     */
+    public MemState(MemoryBackend memory) {
+        this.memory = memory;
+        memory.setAccessListener(this::memoryAccessed);
+    }
+
+    /**
+     * Captures the current memory state (including the registers and PC, but not the write listener) in a snapshot.
+     * Later changes to this memory state do not affect the snapshot.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Creates an independent copy of this memory state. This is the same as forking a new snapshot of this state.
+     *
+     * @return the new memory state.
+     */
+    public MemState fork() {
+        return snapshot().fork();
+    }
+
+    /**
+     * Restores this memory state to a snapshot, replacing all of its memory and registers. The write listener and the
+     * watchpoints are kept, and the write listener is notified that its entire watched range has been written to.
+     *
+     * @param snapshot the snapshot to restore.
+     */
+    public void restore(Snapshot snapshot) {
+        memory = snapshot.memory.fork();
+        memory.setAccessListener(this::memoryAccessed);
+        flagWatchpoints();
+        copyRegisters(snapshot);
+        if (watcher != null) {
+            watcher.memoryWritten(watchStart, watchEnd - watchStart);
+        }
+    }
+
+    /**
+     * Copies the registers and program counters of a snapshot into this memory state.
+     *
+     * @param snapshot the snapshot to copy from
+     */
+    private void copyRegisters(Snapshot snapshot) {
+        System.arraycopy(snapshot.regs, 0, regs, 0, REGISTER_COUNT);
+        pc = snapshot.pc;
+        nPC = snapshot.nPC;
+        high = snapshot.high;
+        low = snapshot.low;
+    }
 
     //Program counter operations
 
@@ -96,6 +150,13 @@ public class MemState implements Constants, Registers {
         return pc;
     }
 
+    /**
+     * @return the address of the instruction to execute after the current one (differs from pc + 4 in a delay slot)
+     */
+    public int nPC() {
+        return nPC;
+    }
+
     /**
      * Sets the next instruction to execute.
      *
@@ -106,6 +167,18 @@ public class MemState implements Constants, Registers {
         this.nPC = pc + INST_SIZE;
     }
 
+    /**
+     * Sets both the current and the next program counter at once. This is used by the interpreter to flush its
+     * locally held program counters back into the memory state.
+     *
+     * @param pc  the current program counter
+     * @param nPC the next program counter
+     */
+    void setPC(int pc, int nPC) {
+        this.pc = pc;
+        this.nPC = nPC;
+    }
+
     /**
      * Advances the program counter by an offset number of bytes.
      *
@@ -138,6 +211,16 @@ public class MemState implements Constants, Registers {
         return regs[regInd];
     }
 
+    /**
+     * Obtains the backing array of the register file. The interpreter holds onto this array while running so that
+     * register accesses are plain array accesses. Writes to the zero register are not filtered out here.
+     *
+     * @return the register file.
+     */
+    int[] registers() {
+        return regs;
+    }
+
     /**
      * Sets a register value
      *
@@ -166,6 +249,102 @@ public class MemState implements Constants, Registers {
 
     //Memory operations
 
+    /**
+     * Sets the listener that is notified whenever a write touches the address range <code>[start, end)</code>. Only
+     * one listener can be registered at a time, so this replaces any previous listener.
+     *
+     * @param start    the starting address of the watched range (inclusive)
+     * @param end      the ending address of the watched range (exclusive)
+     * @param listener the listener to notify, or null to remove the listener
+     */
+    public void setWriteListener(int start, int end, WriteListener listener) {
+        watchStart = start;
+        watchEnd = end;
+        watcher = listener;
+    }
+
+    /**
+     * Adds a watchpoint, which is hit by any access (of a watched kind) that overlaps with its range.
+     *
+     * @param watchpoint the watchpoint to add.
+     */
+    public void addWatchpoint(Watchpoint watchpoint) {
+        watchpoints.add(watchpoint);
+        memory.setWatched(watchpoint.getStart(), watchpoint.getLength(), true);
+    }
+
+    /**
+     * Removes a watchpoint.
+     *
+     * @param watchpoint the watchpoint to remove.
+     * @return true if the watchpoint was removed, false if it was not added.
+     */
+    public boolean removeWatchpoint(Watchpoint watchpoint) {
+        if (!watchpoints.remove(watchpoint)) {
+            return false;
+        }
+
+        //Other watchpoints may share the memory flagged for this one.
+        memory.setWatched(watchpoint.getStart(), watchpoint.getLength(), false);
+        flagWatchpoints();
+        if (watchHit == watchpoint) {
+            watchHit = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return a read-only view of the watchpoints.
+     */
+    public List<Watchpoint> getWatchpoints() {
+        return Collections.unmodifiableList(watchpoints);
+    }
+
+    /**
+     * @return true if there are any watchpoints.
+     */
+    boolean hasWatchpoints() {
+        return !watchpoints.isEmpty();
+    }
+
+    /**
+     * Obtains the first watchpoint that has been hit since the last poll, and clears it.
+     *
+     * @return the watchpoint that was hit, or null if none.
+     */
+    Watchpoint pollWatchHit() {
+        Watchpoint hit = watchHit;
+        watchHit = null;
+        return hit;
+    }
+
+    /**
+     * Sets the undo log that records the old contents of memory before every write, or null to stop recording.
+     *
+     * @param undo the undo log.
+     */
+    void setUndoLog(UndoLog undo) {
+        this.undo = undo;
+    }
+
+    /**
+     * Writes back the old contents of memory that an undo log has recorded. The write listener is notified, but this
+     * write itself is not recorded.
+     *
+     * @param addr   the starting address to restore
+     * @param length the number of bytes to restore, at most four
+     * @param old    the old bytes, packed in little endian
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    void undoWrite(int addr, int length, int old) throws ProgramException {
+        if (watcher != null && addr < watchEnd && addr + length > watchStart) {
+            watcher.memoryWritten(addr, length);
+        }
+        for (int i = 0; i < length; i++) {
+            memory.set(addr + i, (byte) (old >>> i * Byte.SIZE));
+        }
+    }
+
     /**
      * Allocates a memory segment at a starting base address.
      *
@@ -181,14 +360,8 @@ public class MemState implements Constants, Registers {
             throw new IllegalArgumentException("Integer overflow alert!");
         }
 
-        if (!memory.isRangeEmpty(start, start + size)) {
-            throw new IllegalArgumentException("Cannot allocate overlapping memory segments");
-        }
-
-        if (size == 0) {
-            return;
-        }
-        memory.add(start, start + size, new Segment(start, size));
+        memory.allocate(start, size);
+        flagWatchpoints();
     }
 
     /**
@@ -199,7 +372,7 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment (ADDRL).
      */
     public byte get(int addr) throws ProgramException {
-        return getSegment(addr, true).get(addr);
+        return memory.get(addr);
     }
 
     /**
@@ -216,19 +389,7 @@ public class MemState implements Constants, Registers {
             throw new ProgramException(ErrorType.ADDRL);
         }
 
-        while (length > 0) {
-            Segment seg = getSegment(addr, true);
-            int reading = Math.min(length, seg.start + seg.data.length - addr);
-            if (reading == 0) {
-                throw new InternalError();
-            }
-
-            seg.get(addr, buff, offset, reading);
-
-            offset += reading;
-            addr += reading;
-            length -= reading;
-        }
+        memory.get(addr, buff, offset, length);
     }
 
     /**
@@ -250,7 +411,8 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
      */
     public short getShort(int addr) throws ProgramException {
-        return (short) getLittleEndian(addr, Short.BYTES);
+        checkAligned(addr, Short.BYTES);
+        return memory.getShort(addr);
     }
 
     /**
@@ -261,7 +423,25 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
      */
     public int getInt(int addr) throws ProgramException {
-        return (int) getLittleEndian(addr, Integer.BYTES);
+        checkAligned(addr, Integer.BYTES);
+        return memory.getInt(addr);
+    }
+
+    /**
+     * Fetches an instruction word. This is like {@link #getInt(int)}, except that the read does not hit any
+     * watchpoints, since only the loads and stores that the program itself runs are watched.
+     *
+     * @param addr the address of the instruction
+     * @return the instruction word.
+     * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
+     */
+    int fetchInt(int addr) throws ProgramException {
+        Watchpoint hit = watchHit;
+        try {
+            return getInt(addr);
+        } finally {
+            watchHit = hit;
+        }
     }
 
     /**
@@ -272,7 +452,8 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRL).
      */
     public long getLong(int addr) throws ProgramException {
-        return getLittleEndian(addr, Long.BYTES);
+        checkAligned(addr, Long.BYTES);
+        return memory.getLong(addr);
     }
 
     /**
@@ -283,7 +464,8 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment (ADDRS).
      */
     public void set(int addr, byte val) throws ProgramException {
-        getSegment(addr, false).set(addr, val);
+        notifyWrite(addr, Byte.BYTES);
+        memory.set(addr, val);
     }
 
     /**
@@ -300,19 +482,8 @@ public class MemState implements Constants, Registers {
             throw new ProgramException(ErrorType.ADDRS);
         }
 
-        while (length > 0) {
-            Segment seg = getSegment(addr, false);
-            int reading = Math.min(length, seg.start + seg.data.length - addr);
-            if (reading == 0) {
-                throw new InternalError();
-            }
-
-            seg.set(addr, buff, offset, reading);
-
-            offset += reading;
-            addr += reading;
-            length -= reading;
-        }
+        notifyWrite(addr, length);
+        memory.set(addr, buff, offset, length);
     }
 
     /**
@@ -334,7 +505,9 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRS).
      */
     public void setShort(int addr, short val) throws ProgramException {
-        setLittleEndian(addr, Short.BYTES, val);
+        checkAligned(addr, Short.BYTES);
+        notifyWrite(addr, Short.BYTES);
+        memory.setShort(addr, val);
     }
 
     /**
@@ -345,7 +518,9 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRS).
      */
     public void setInt(int addr, int val) throws ProgramException {
-        setLittleEndian(addr, Integer.BYTES, val);
+        checkAligned(addr, Integer.BYTES);
+        notifyWrite(addr, Integer.BYTES);
+        memory.setInt(addr, val);
     }
 
     /**
@@ -356,67 +531,66 @@ public class MemState implements Constants, Registers {
      * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRS).
      */
     public void setLong(int addr, long val) throws ProgramException {
-        setLittleEndian(addr, Long.BYTES, val);
+        checkAligned(addr, Long.BYTES);
+        notifyWrite(addr, Long.BYTES);
+        memory.setLong(addr, val);
     }
 
     /**
-     * Fetches a little-endian integer of a particular size from memory
+     * Checks that an address is aligned to the size of the integer accessed there.
      *
-     * @param addr  the address to read from
+     * @param addr  the address accessed
      * @param bytes the size of the integer
-     * @return the read integer
-     * @throws ProgramException if the address does not map to a valid segment or address is not aligned (ADDRL).
+     * @throws ProgramException if the address is misaligned (ADDRL).
      */
-    private long getLittleEndian(int addr, int bytes) throws ProgramException {
-        if (addr % bytes != 0) {
+    private static void checkAligned(int addr, int bytes) throws ProgramException {
+        if ((addr & bytes - 1) != 0) {
             throw new ProgramException(ErrorType.ADDRL);
         }
+    }
 
-        byte[] buff = new byte[bytes];
-        get(addr, buff);
-
-        long ret = 0;
-        for (int i = 0; i < bytes; i++) {
-            ret |= (buff[i] & BYTE_MASK) << (i * Byte.SIZE);
+    /**
+     * Flags the memory of every watchpoint as watched in the memory backend, e.g. after replacing the backend, or
+     * after allocating memory that a watchpoint covers.
+     */
+    private void flagWatchpoints() {
+        for (Watchpoint watchpoint : watchpoints) {
+            memory.setWatched(watchpoint.getStart(), watchpoint.getLength(), true);
         }
-
-        return ret;
     }
 
     /**
-     * Writes a little-endian integer of a particular size to memory
+     * Checks an access to watched memory against the watchpoints, keeping the first watchpoint that is hit.
      *
-     * @param addr  the address to write to
-     * @param bytes the size of the integer
-     * @param val   the integer to write
-     * @throws ProgramException if the address does not map to a valid segment, or if address is misaligned (ADDRS).
+     * @param addr   the starting address accessed
+     * @param length the number of bytes accessed
+     * @param write  true if this is a write, false if this is a read.
      */
-    private void setLittleEndian(int addr, int bytes, long val) throws ProgramException {
-        if ((addr & bytes - 1) != 0) {
-            throw new ProgramException(ErrorType.ADDRL);
+    private void memoryAccessed(int addr, int length, boolean write) {
+        if (watchHit != null) {
+            return;
         }
-
-        byte[] buff = new byte[bytes];
-        for (int i = 0; i < bytes; i++) {
-            buff[i] = (byte) (val >> (i * Byte.SIZE));
+        for (Watchpoint watchpoint : watchpoints) {
+            if (watchpoint.matches(addr, length, write)) {
+                watchHit = watchpoint;
+                return;
+            }
         }
-
-        set(addr, buff);
     }
 
     /**
-     * Fetches a memory segment associated that contains the address
+     * Notifies the write listener if the written range intersects with the watched range, and records the old contents
+     * of the written range if an undo log is set.
      *
-     * @param addr the address to find
-     * @param get  whether if this is a get or set operation
-     * @return a memory segment if found
-     * @throws ProgramException if the address does not map to a valid segment (ADDRL/ADDRS).
+     * @param addr   the starting address written to
+     * @param length the number of bytes written
      */
-    private Segment getSegment(int addr, boolean get) throws ProgramException {
-        Set<Segment> found = memory.get(addr);
-        if (found.isEmpty()) {
-            throw new ProgramException(get ? ErrorType.ADDRL : ErrorType.ADDRS);
+    private void notifyWrite(int addr, int length) {
+        if (watcher != null && addr < watchEnd && addr + length > watchStart) {
+            watcher.memoryWritten(addr, length);
+        }
+        if (undo != null) {
+            undo.saveMemory(memory, addr, length);
         }
-        return found.iterator().next();
     }
 }
@@ -0,0 +1,181 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Represents the backing store of the RAM memory used by {@link MemState}. A memory backend only keeps track of which
+ * addresses are mapped and the bytes stored at those addresses; all the alignment checks and write notifications are
+ * still done by the {@link MemState} itself.
+ *
+ * @author Henry Wang
+ * @see PagedMemory
+ * @see SegmentMemory
+ */
+public interface MemoryBackend {
+    int BYTE_MASK = 0xFF;
+    int SHORT_MASK = 0xFFFF;
+    long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Listens to the accesses to watched memory of a backend.
+     */
+    @FunctionalInterface
+    interface AccessListener {
+        /**
+         * Called right after a watched range of memory has been read or written. A single access may be reported in
+         * several pieces.
+         *
+         * @param addr   the starting address accessed
+         * @param length the number of bytes accessed
+         * @param write  true if this is a write, false if this is a read.
+         */
+        void memoryAccessed(int addr, int length, boolean write);
+    }
+
+    /**
+     * Maps a new memory segment at a starting base address. Any bytes within this segment will initially be zero.
+     * The caller should have already checked that the range is non-negative and does not overflow.
+     *
+     * @param start the starting/base address
+     * @param size  the size of this memory segment
+     * @throws IllegalArgumentException if this segment overlaps with an existing segment.
+     */
+    void allocate(int start, int size);
+
+    /**
+     * Creates an independent copy of this memory, with the same segments mapped and the same bytes stored. Writes to
+     * either copy afterwards are not visible in the other.
+     * <p>
+     * Forking must not modify this memory in any way that is visible to another thread forking the same memory, so a
+     * memory that is no longer written to can be forked concurrently.
+     *
+     * @return the copy of this memory.
+     */
+    MemoryBackend fork();
+
+    /**
+     * Sets the listener that is notified of every access to watched memory.
+     *
+     * @param listener the listener, or null to remove the listener.
+     */
+    void setAccessListener(AccessListener listener);
+
+    /**
+     * Flags (or unflags) the memory overlapping an address range as watched. This is done at the granularity of the
+     * backend (e.g. whole pages), so accesses just outside of the range may be reported as well. The flags are only
+     * checked on the paths that accesses to flagged memory are diverted to, so that accesses to memory that is not
+     * watched cost nothing extra. The flags are not copied by {@link #fork()}.
+     *
+     * @param start   the starting address of the range
+     * @param length  the number of bytes in the range
+     * @param watched true to flag the memory as watched, false to unflag it.
+     */
+    void setWatched(int start, int length, boolean watched);
+
+    /**
+     * Gets a single byte
+     *
+     * @param addr address to get byte
+     * @return the value
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL).
+     */
+    byte get(int addr) throws ProgramException;
+
+    /**
+     * Bulk get method. The caller should have already checked the bounds of the buffer.
+     *
+     * @param addr   the address to start getting from
+     * @param buff   the byte buffer to write to
+     * @param offset the index offset of buffer to start from
+     * @param length the number of bytes to get.
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL).
+     */
+    void get(int addr, byte[] buff, int offset, int length) throws ProgramException;
+
+    /**
+     * Sets a single byte
+     *
+     * @param addr address to set byte
+     * @param val  the value to set
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    void set(int addr, byte val) throws ProgramException;
+
+    /**
+     * Bulk set method. The caller should have already checked the bounds of the buffer.
+     *
+     * @param addr   the address to start setting to
+     * @param buff   the byte buffer to read from
+     * @param offset the index offset of buffer to start from
+     * @param length the number of bytes to set.
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    void set(int addr, byte[] buff, int offset, int length) throws ProgramException;
+
+    /**
+     * Gets a 16-bit little-endian integer. By default, this is assembled from single byte reads.
+     *
+     * @param addr the address to start getting from
+     * @return the value
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL).
+     */
+    default short getShort(int addr) throws ProgramException {
+        return (short) (get(addr) & BYTE_MASK | get(addr + 1) << Byte.SIZE);
+    }
+
+    /**
+     * Gets a 32-bit little-endian integer. By default, this is assembled from single byte reads.
+     *
+     * @param addr the address to start getting from
+     * @return the value
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL).
+     */
+    default int getInt(int addr) throws ProgramException {
+        return getShort(addr) & SHORT_MASK | getShort(addr + Short.BYTES) << Short.SIZE;
+    }
+
+    /**
+     * Gets a 64-bit little-endian integer. By default, this is assembled from two 32-bit reads.
+     *
+     * @param addr the address to start getting from
+     * @return the value
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL).
+     */
+    default long getLong(int addr) throws ProgramException {
+        return getInt(addr) & INT_MASK | (long) getInt(addr + Integer.BYTES) << Integer.SIZE;
+    }
+
+    /**
+     * Sets a 16-bit little-endian integer. By default, this is split into single byte writes.
+     *
+     * @param addr the address to start setting to
+     * @param val  the value to write
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    default void setShort(int addr, short val) throws ProgramException {
+        set(addr, (byte) val);
+        set(addr + 1, (byte) (val >> Byte.SIZE));
+    }
+
+    /**
+     * Sets a 32-bit little-endian integer. By default, this is split into 16-bit writes.
+     *
+     * @param addr the address to start setting to
+     * @param val  the value to write
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    default void setInt(int addr, int val) throws ProgramException {
+        setShort(addr, (short) val);
+        setShort(addr + Short.BYTES, (short) (val >> Short.SIZE));
+    }
+
+    /**
+     * Sets a 64-bit little-endian integer. By default, this is split into 32-bit writes.
+     *
+     * @param addr the address to start setting to
+     * @param val  the value to write
+     * @throws ProgramException if the address does not map to a valid segment (ADDRS).
+     */
+    default void setLong(int addr, long val) throws ProgramException {
+        setInt(addr, (int) val);
+        setInt(addr + Integer.BYTES, (int) (val >> Integer.SIZE));
+    }
+}
@@ -0,0 +1,439 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+
+import java.util.Arrays;
+
+/**
+ * A memory backend that maps addresses through a two-level page table of 4 KiB pages. The top level is indexed by the
+ * upper 10 bits of the address, and the second level by the next 10 bits, so looking up the page of an address is
+ * always two array loads and never allocates anything.
+ * <p>
+ * Pages are created when a segment is allocated, but the backing byte array of each page is only allocated on the
+ * first write to that page. Until then the page reads as all zeros. This keeps large, mostly unused segments such as
+ * the stack and the global data segment cheap. Pages that are only partially covered by segments keep a bitmap of the
+ * bytes that are mapped, so that accesses to the gaps between segments still fault.
+ * <p>
+ * Forking a paged memory is copy-on-write at page granularity: the fork gets its own page tables, but the backing byte
+ * arrays are shared and marked as such, and a page only copies its bytes on its first write after a fork. Forking
+ * therefore takes time proportional to the number of pages, rather than their contents.
+ * <p>
+ * Watched memory is flagged a page at a time. A watched page always keeps a bitmap, even once fully mapped, so that the
+ * word-sized fast path (which skips the bitmap for fully mapped pages) never has to test the flag itself.
+ *
+ * @author Henry Wang
+ */
+public class PagedMemory implements MemoryBackend {
+
+    /**
+     * Represents a single page of memory.
+     */
+    private static class Page {
+        private byte[] data;
+        private boolean shared;
+        private boolean watched;
+        private long[] mapped;
+
+        /**
+         * Constructs a new page with no bytes mapped.
+         */
+        public Page() {
+            mapped = new long[PAGE_SIZE / Long.SIZE];
+        }
+
+        /**
+         * Constructs a copy of a page that shares its backing data. The data of the original page is marked as shared
+         * as well, so whichever page is written first makes its own copy.
+         *
+         * @param other the page to copy.
+         */
+        public Page(Page other) {
+            if (other.data != null && !other.shared) {
+                other.shared = true;
+            }
+            data = other.data;
+            shared = data != null;
+            if (other.mapped != null) {
+                mapped = other.mapped.clone();
+                compact();
+            }
+        }
+
+        /**
+         * Checks whether if a byte within this page is mapped.
+         *
+         * @param off the offset within this page
+         * @return true if mapped, false if not mapped.
+         */
+        public boolean isMapped(int off) {
+            return mapped == null || (mapped[off >>> 6] & 1L << off) != 0;
+        }
+
+        /**
+         * Checks whether if a range of bytes within this page are all mapped.
+         *
+         * @param off    the offset within this page
+         * @param length the number of bytes to check
+         * @return true if all mapped, false if any byte is not mapped.
+         */
+        public boolean isMapped(int off, int length) {
+            if (mapped == null) {
+                return true;
+            }
+            for (int i = off; i < off + length; i++) {
+                if (!isMapped(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether if any byte within a range of bytes in this page is mapped.
+         *
+         * @param off    the offset within this page
+         * @param length the number of bytes to check
+         * @return true if any byte is mapped, false if none are mapped.
+         */
+        public boolean isAnyMapped(int off, int length) {
+            for (int i = off; i < off + length; i++) {
+                if (isMapped(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether if this page is watched.
+         *
+         * @return true if watched, false if not watched.
+         */
+        public boolean isWatched() {
+            return mapped != null && watched;
+        }
+
+        /**
+         * Flags or unflags this page as watched.
+         *
+         * @param watched true if watched, false if not watched.
+         */
+        public void setWatched(boolean watched) {
+            this.watched = watched;
+            if (watched && mapped == null) {
+                mapped = new long[PAGE_SIZE / Long.SIZE];
+                Arrays.fill(mapped, -1L);
+            } else if (!watched) {
+                compact();
+            }
+        }
+
+        /**
+         * Maps a range of bytes within this page. Once the entire page is mapped, the bitmap is dropped altogether
+         * (unless this page is watched).
+         *
+         * @param off    the offset within this page
+         * @param length the number of bytes to map
+         */
+        public void map(int off, int length) {
+            for (int i = off; i < off + length; i++) {
+                mapped[i >>> 6] |= 1L << i;
+            }
+            compact();
+        }
+
+        /**
+         * Drops the bitmap if the entire page is mapped, and this page is not watched.
+         */
+        private void compact() {
+            if (watched || mapped == null) {
+                return;
+            }
+            for (long bits : mapped) {
+                if (bits != -1L) {
+                    return;
+                }
+            }
+            mapped = null;
+        }
+
+        /**
+         * Obtains the backing data of this page for writing, allocating it if necessary. If the data is shared with
+         * another page, this page copies it first.
+         *
+         * @return the page data.
+         */
+        public byte[] data() {
+            if (data == null) {
+                data = new byte[PAGE_SIZE];
+            } else if (shared) {
+                data = data.clone();
+                shared = false;
+            }
+            return data;
+        }
+    }
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int TABLE_BITS = 10;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final int DIR_SHIFT = PAGE_BITS + TABLE_BITS;
+
+    private final Page[][] directory = new Page[1 << (Integer.SIZE - DIR_SHIFT)][];
+    private AccessListener listener;
+
+    @Override
+    public PagedMemory fork() {
+        PagedMemory fork = new PagedMemory();
+        for (int i = 0; i < directory.length; i++) {
+            Page[] table = directory[i];
+            if (table == null) {
+                continue;
+            }
+
+            Page[] copy = new Page[TABLE_SIZE];
+            for (int j = 0; j < TABLE_SIZE; j++) {
+                if (table[j] != null) {
+                    copy[j] = new Page(table[j]);
+                }
+            }
+            fork.directory[i] = copy;
+        }
+        return fork;
+    }
+
+    @Override
+    public void setAccessListener(AccessListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setWatched(int start, int length, boolean watched) {
+        for (long addr = start & ~PAGE_MASK; addr < (long) start + length; addr += PAGE_SIZE) {
+            Page page = getPage((int) addr);
+            if (page != null) {
+                page.setWatched(watched);
+            }
+        }
+    }
+
+    @Override
+    public void allocate(int start, int size) {
+        if (size == 0) {
+            Page page = getPage(start);
+            if (page != null && page.isMapped(start & PAGE_MASK)) {
+                throw new IllegalArgumentException("Cannot allocate overlapping memory segments");
+            }
+            return;
+        }
+
+        for (int addr = start, left = size; left > 0; ) {
+            int off = addr & PAGE_MASK;
+            int len = Math.min(left, PAGE_SIZE - off);
+            Page page = getPage(addr);
+            if (page != null && page.isAnyMapped(off, len)) {
+                throw new IllegalArgumentException("Cannot allocate overlapping memory segments");
+            }
+            addr += len;
+            left -= len;
+        }
+
+        for (int addr = start, left = size; left > 0; ) {
+            int off = addr & PAGE_MASK;
+            int len = Math.min(left, PAGE_SIZE - off);
+            createPage(addr).map(off, len);
+            addr += len;
+            left -= len;
+        }
+    }
+
+    @Override
+    public byte get(int addr) throws ProgramException {
+        Page page = getPage(addr);
+        int off = addr & PAGE_MASK;
+        if (page == null || !page.isMapped(off)) {
+            throw new ProgramException(ErrorType.ADDRL);
+        }
+        byte val = page.data == null ? 0 : page.data[off];
+        accessed(page, addr, Byte.BYTES, false);
+        return val;
+    }
+
+    @Override
+    public void get(int addr, byte[] buff, int offset, int length) throws ProgramException {
+        while (length > 0) {
+            int off = addr & PAGE_MASK;
+            int reading = Math.min(length, PAGE_SIZE - off);
+            Page page = getPage(addr);
+            if (page == null || !page.isMapped(off, reading)) {
+                throw new ProgramException(ErrorType.ADDRL);
+            }
+
+            if (page.data == null) {
+                for (int i = offset; i < offset + reading; i++) {
+                    buff[i] = 0;
+                }
+            } else {
+                System.arraycopy(page.data, off, buff, offset, reading);
+            }
+            accessed(page, addr, reading, false);
+
+            offset += reading;
+            addr += reading;
+            length -= reading;
+        }
+    }
+
+    @Override
+    public void set(int addr, byte val) throws ProgramException {
+        Page page = getPage(addr);
+        int off = addr & PAGE_MASK;
+        if (page == null || !page.isMapped(off)) {
+            throw new ProgramException(ErrorType.ADDRS);
+        }
+        page.data()[off] = val;
+        accessed(page, addr, Byte.BYTES, true);
+    }
+
+    @Override
+    public void set(int addr, byte[] buff, int offset, int length) throws ProgramException {
+        while (length > 0) {
+            int off = addr & PAGE_MASK;
+            int writing = Math.min(length, PAGE_SIZE - off);
+            Page page = getPage(addr);
+            if (page == null || !page.isMapped(off, writing)) {
+                throw new ProgramException(ErrorType.ADDRS);
+            }
+
+            System.arraycopy(buff, offset, page.data(), off, writing);
+            accessed(page, addr, writing, true);
+
+            offset += writing;
+            addr += writing;
+            length -= writing;
+        }
+    }
+
+    @Override
+    public short getShort(int addr) throws ProgramException {
+        Page page = getFastPage(addr, Short.BYTES);
+        if (page == null) {
+            return MemoryBackend.super.getShort(addr);
+        }
+        return page.data == null ? 0 : LittleEndian.getShort(page.data, addr & PAGE_MASK);
+    }
+
+    @Override
+    public int getInt(int addr) throws ProgramException {
+        Page page = getFastPage(addr, Integer.BYTES);
+        if (page == null) {
+            return MemoryBackend.super.getInt(addr);
+        }
+        return page.data == null ? 0 : LittleEndian.getInt(page.data, addr & PAGE_MASK);
+    }
+
+    @Override
+    public long getLong(int addr) throws ProgramException {
+        Page page = getFastPage(addr, Long.BYTES);
+        if (page == null) {
+            return MemoryBackend.super.getLong(addr);
+        }
+        return page.data == null ? 0 : LittleEndian.getLong(page.data, addr & PAGE_MASK);
+    }
+
+    @Override
+    public void setShort(int addr, short val) throws ProgramException {
+        Page page = getFastPage(addr, Short.BYTES);
+        if (page == null) {
+            MemoryBackend.super.setShort(addr, val);
+        } else {
+            LittleEndian.setShort(page.data(), addr & PAGE_MASK, val);
+        }
+    }
+
+    @Override
+    public void setInt(int addr, int val) throws ProgramException {
+        Page page = getFastPage(addr, Integer.BYTES);
+        if (page == null) {
+            MemoryBackend.super.setInt(addr, val);
+        } else {
+            LittleEndian.setInt(page.data(), addr & PAGE_MASK, val);
+        }
+    }
+
+    @Override
+    public void setLong(int addr, long val) throws ProgramException {
+        Page page = getFastPage(addr, Long.BYTES);
+        if (page == null) {
+            MemoryBackend.super.setLong(addr, val);
+        } else {
+            LittleEndian.setLong(page.data(), addr & PAGE_MASK, val);
+        }
+    }
+
+    /**
+     * Notifies the access listener if an accessed page is watched.
+     *
+     * @param page   the page accessed
+     * @param addr   the starting address accessed
+     * @param length the number of bytes accessed
+     * @param write  true if this is a write, false if this is a read.
+     */
+    private void accessed(Page page, int addr, int length, boolean write) {
+        if (page.isWatched() && listener != null) {
+            listener.memoryAccessed(addr, length, write);
+        }
+    }
+
+    /**
+     * Looks up the page for an access that lies entirely within one page, with every byte of it mapped. This is the
+     * fast path for word-sized accesses; anything else (crossing a page, touching an unmapped byte, or touching a
+     * watched page) is left to the byte-by-byte slow path, which will also raise the proper fault or notification.
+     *
+     * @param addr   the starting address of the access
+     * @param length the number of bytes accessed
+     * @return the page, or null if the fast path cannot be taken.
+     */
+    private Page getFastPage(int addr, int length) {
+        int off = addr & PAGE_MASK;
+        if (off + length > PAGE_SIZE) {
+            return null;
+        }
+        Page page = getPage(addr);
+        return page != null && page.isMapped(off, length) && !page.isWatched() ? page : null;
+    }
+
+    /**
+     * Looks up the page containing an address.
+     *
+     * @param addr the address to look up
+     * @return the page, or null if no page has been created for this address.
+     */
+    private Page getPage(int addr) {
+        Page[] table = directory[addr >>> DIR_SHIFT];
+        return table == null ? null : table[(addr >>> PAGE_BITS) & TABLE_MASK];
+    }
+
+    /**
+     * Looks up the page containing an address, creating an empty page if one does not exist yet.
+     *
+     * @param addr the address to look up
+     * @return the page.
+     */
+    private Page createPage(int addr) {
+        Page[] table = directory[addr >>> DIR_SHIFT];
+        if (table == null) {
+            table = new Page[TABLE_SIZE];
+            directory[addr >>> DIR_SHIFT] = table;
+        }
+
+        int ind = (addr >>> PAGE_BITS) & TABLE_MASK;
+        if (table[ind] == null) {
+            table[ind] = new Page();
+        }
+        return table[ind];
+    }
+}
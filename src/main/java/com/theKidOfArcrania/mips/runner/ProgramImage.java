@@ -0,0 +1,72 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+
+/**
+ * Represents an assembled program: one contiguous binary image for each memory segment, in the same layout as the
+ * segments have in memory. An image can be loaded into any number of interpreters, so a program only needs to be
+ * assembled once to be run many times.
+ *
+ * @author Henry Wang
+ */
+public final class ProgramImage implements ProgramLoader, Constants {
+    private final byte[][] segments;
+
+    /**
+     * Constructs a program image. The image takes ownership of the segment arrays.
+     *
+     * @param segments the images of each segment, indexed by the segment index (i.e. {@link #SEG_TEXT}).
+     * @throws IllegalArgumentException if there isn't exactly one image per segment.
+     */
+    public ProgramImage(byte[][] segments) {
+        if (segments.length != SEG_COUNT) {
+            throw new IllegalArgumentException("Expected " + SEG_COUNT + " segments");
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * Obtains a copy of the image of a segment.
+     *
+     * @param segment the segment index
+     * @return the binary image of the segment.
+     */
+    public byte[] getSegment(int segment) {
+        return segments[segment].clone();
+    }
+
+    /**
+     * Obtains the size of a segment image.
+     *
+     * @param segment the segment index
+     * @return the size of this segment in bytes.
+     */
+    public int getSegmentSize(int segment) {
+        return segments[segment].length;
+    }
+
+    /**
+     * Loads the text, data and global segments into the interpreter. The interpreter has no kernel memory, so a
+     * program with any kernel text or data cannot be loaded.
+     *
+     * @param interp the interpreter to load into
+     * @throws ProgramException if the program cannot be loaded, i.e. if it has kernel segments, or if a segment does
+     *                          not fit in memory.
+     */
+    @Override
+    public void load(Interpreter interp) throws ProgramException {
+        if (segments[SEG_KTEXT].length > 0 || segments[SEG_KDATA].length > 0) {
+            throw new ProgramException(ErrorType.ADDRS);
+        }
+        if (segments[SEG_TEXT].length > 0) {
+            interp.appendText(segments[SEG_TEXT]);
+        }
+        if (segments[SEG_DATA].length > 0) {
+            interp.appendData(segments[SEG_DATA]);
+        }
+        if (segments[SEG_GLOBL].length > 0) {
+            interp.getState().set(ADDR_GLOBL, segments[SEG_GLOBL]);
+        }
+    }
+}
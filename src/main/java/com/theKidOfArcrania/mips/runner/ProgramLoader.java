@@ -0,0 +1,18 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Loads a program (its text and data) into a freshly created interpreter.
+ *
+ * @author Henry Wang
+ * @see BatchRunner
+ */
+@FunctionalInterface
+public interface ProgramLoader {
+    /**
+     * Loads the program into the interpreter.
+     *
+     * @param interp the interpreter to load into
+     * @throws ProgramException if the program cannot be loaded.
+     */
+    void load(Interpreter interp) throws ProgramException;
+}
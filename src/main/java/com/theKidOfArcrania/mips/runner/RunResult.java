@@ -0,0 +1,120 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Represents the outcome of running an {@link Interpreter} for some number of instructions.
+ *
+ * @author Henry Wang
+ * @see Interpreter#run(long)
+ */
+public final class RunResult {
+
+    /**
+     * Represents why the interpreter stopped running.
+     */
+    public enum StopReason {
+        /**
+         * The maximum number of instructions was executed.
+         */
+        STEP_LIMIT,
+        /**
+         * The stop condition passed to {@link Interpreter#runUntil} was met.
+         */
+        CONDITION,
+        /**
+         * The program called the exit syscall.
+         */
+        EXIT,
+        /**
+         * An instruction trapped with a {@link ProgramException}.
+         */
+        TRAP,
+        /**
+         * Running in reverse reached the start of the recorded history.
+         */
+        HISTORY_START,
+        /**
+         * The interpreter reached an instruction with a breakpoint set (see {@link Interpreter#setBreakpoint}).
+         */
+        BREAKPOINT,
+        /**
+         * An instruction accessed memory covered by a {@link Watchpoint}.
+         */
+        WATCHPOINT
+    }
+
+    private final StopReason reason;
+    private final long instructions;
+    private final int pc;
+    private final ProgramException fault;
+    private final Watchpoint watchpoint;
+
+    /**
+     * Constructs a run result.
+     *
+     * @param reason       the reason the interpreter stopped
+     * @param instructions the number of instructions that completed
+     * @param pc           the PC the interpreter stopped at
+     * @param fault        the exception that stopped the interpreter, or null if none.
+     */
+    RunResult(StopReason reason, long instructions, int pc, ProgramException fault) {
+        this(reason, instructions, pc, fault, null);
+    }
+
+    /**
+     * Constructs a run result.
+     *
+     * @param reason       the reason the interpreter stopped
+     * @param instructions the number of instructions that completed
+     * @param pc           the PC the interpreter stopped at
+     * @param fault        the exception that stopped the interpreter, or null if none.
+     * @param watchpoint   the watchpoint that stopped the interpreter, or null if none.
+     */
+    RunResult(StopReason reason, long instructions, int pc, ProgramException fault, Watchpoint watchpoint) {
+        this.reason = reason;
+        this.instructions = instructions;
+        this.pc = pc;
+        this.fault = fault;
+        this.watchpoint = watchpoint;
+    }
+
+    public StopReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the number of instructions that completed during this run. A trapping instruction is not counted.
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the PC the interpreter stopped at. For {@link StopReason#EXIT} and {@link StopReason#TRAP}, this is the
+     * address of the instruction that exited/faulted. For {@link StopReason#WATCHPOINT}, this is the address of the
+     * instruction that accessed the watched memory (which has completed, so the memory state is already past it).
+     */
+    public int getPC() {
+        return pc;
+    }
+
+    /**
+     * @return the exception that stopped the interpreter, or null if it stopped for any other reason.
+     */
+    public ProgramException getFault() {
+        return fault;
+    }
+
+    /**
+     * @return the watchpoint that stopped the interpreter, or null if it stopped for any other reason.
+     */
+    public Watchpoint getWatchpoint() {
+        return watchpoint;
+    }
+
+    @Override
+    public String toString() {
+        return "RunResult{" + reason + ", instructions=" + instructions + ", pc=0x" + Integer.toHexString(pc) +
+                (fault == null ? "" : ", fault=" + fault.getType()) + (watchpoint == null ? "" : ", " + watchpoint) +
+                "}";
+    }
+}
@@ -0,0 +1,291 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+import com.theKidOfArcrania.mips.util.RangeSet;
+
+/**
+ * A memory backend that stores each allocated segment as one contiguous byte array, and looks up the segment of an
+ * address through a {@link RangeSet}. Every segment is fully allocated up front, and forking copies every segment.
+ * Watched memory is flagged a whole segment at a time.
+ *
+ * @author Henry Wang
+ */
+public class SegmentMemory implements MemoryBackend {
+
+    /**
+     * Represents a single memory segment
+     */
+    private static class Segment {
+        private final int start;
+        private final byte[] data;
+        private boolean watched;
+        private int fastLength;
+
+        /**
+         * Constructs a memory segment
+         *
+         * @param start the starting/base address
+         * @param size  the size of this memory segment
+         */
+        public Segment(int start, int size) {
+            this.start = start;
+            this.data = new byte[size];
+            this.fastLength = size;
+        }
+
+        /**
+         * Constructs a copy of a memory segment
+         *
+         * @param other the segment to copy
+         */
+        public Segment(Segment other) {
+            this.start = other.start;
+            this.data = other.data.clone();
+            this.fastLength = data.length;
+        }
+
+        /**
+         * Flags or unflags this segment as watched.
+         *
+         * @param watched true if watched, false if not watched.
+         */
+        public void setWatched(boolean watched) {
+            this.watched = watched;
+            fastLength = watched ? -1 : data.length;
+        }
+
+        /**
+         * Checks whether if a range of bytes lies entirely within this segment, so that it can be accessed directly.
+         * This is always false while the segment is watched.
+         *
+         * @param addr   the absolute starting address
+         * @param length the number of bytes
+         * @return true if the range is within this segment, false otherwise.
+         */
+        public boolean contains(int addr, int length) {
+            return addr - start + length <= fastLength;
+        }
+
+        /**
+         * Gets a byte at the address within this segment
+         *
+         * @param addr the absolute address to fetch
+         * @return the byte value
+         */
+        public byte get(int addr) {
+            return data[addr - start];
+        }
+
+        /**
+         * Bulk get method.
+         *
+         * @param addr   the address to start getting from
+         * @param buff   the byte buffer to write to
+         * @param offset the index offset of buffer to start from
+         * @param length the number of bytes to get.
+         */
+        public void get(int addr, byte[] buff, int offset, int length) {
+            System.arraycopy(data, addr - start, buff, offset, length);
+        }
+
+        /**
+         * Sets a byte at the address within this segment
+         *
+         * @param addr the absolute address to set
+         * @param b    the value to set to
+         */
+        public void set(int addr, byte b) {
+            data[addr - start] = b;
+        }
+
+        /**
+         * Bulk set method.
+         *
+         * @param addr   the address to start setting to
+         * @param buff   the byte buffer to read from
+         * @param offset the index offset of buffer to start from
+         * @param length the number of bytes to set.
+         */
+        public void set(int addr, byte[] buff, int offset, int length) {
+            System.arraycopy(buff, offset, data, addr - start, length);
+        }
+    }
+
+    private final RangeSet<Segment> memory = new RangeSet<>();
+    private AccessListener listener;
+
+    @Override
+    public SegmentMemory fork() {
+        SegmentMemory fork = new SegmentMemory();
+        for (RangeSet<Segment>.RangeElement ele : memory.elementsView()) {
+            for (Segment seg : ele.getItemsView()) {
+                fork.memory.add(seg.start, seg.start + seg.data.length, new Segment(seg));
+            }
+        }
+        return fork;
+    }
+
+    @Override
+    public void setAccessListener(AccessListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setWatched(int start, int length, boolean watched) {
+        memory.forEachOverlapping(start, start + length, (from, to, items) -> {
+            for (Segment seg : items) {
+                seg.setWatched(watched);
+            }
+        });
+    }
+
+    @Override
+    public void allocate(int start, int size) {
+        if (!memory.isRangeEmpty(start, start + size)) {
+            throw new IllegalArgumentException("Cannot allocate overlapping memory segments");
+        }
+
+        if (size == 0) {
+            return;
+        }
+        memory.add(start, start + size, new Segment(start, size));
+    }
+
+    @Override
+    public byte get(int addr) throws ProgramException {
+        Segment seg = getSegment(addr, true);
+        byte val = seg.get(addr);
+        accessed(seg, addr, Byte.BYTES, false);
+        return val;
+    }
+
+    @Override
+    public void get(int addr, byte[] buff, int offset, int length) throws ProgramException {
+        while (length > 0) {
+            Segment seg = getSegment(addr, true);
+            int reading = Math.min(length, seg.start + seg.data.length - addr);
+            if (reading == 0) {
+                throw new InternalError();
+            }
+
+            seg.get(addr, buff, offset, reading);
+            accessed(seg, addr, reading, false);
+
+            offset += reading;
+            addr += reading;
+            length -= reading;
+        }
+    }
+
+    @Override
+    public void set(int addr, byte val) throws ProgramException {
+        Segment seg = getSegment(addr, false);
+        seg.set(addr, val);
+        accessed(seg, addr, Byte.BYTES, true);
+    }
+
+    @Override
+    public void set(int addr, byte[] buff, int offset, int length) throws ProgramException {
+        while (length > 0) {
+            Segment seg = getSegment(addr, false);
+            int reading = Math.min(length, seg.start + seg.data.length - addr);
+            if (reading == 0) {
+                throw new InternalError();
+            }
+
+            seg.set(addr, buff, offset, reading);
+            accessed(seg, addr, reading, true);
+
+            offset += reading;
+            addr += reading;
+            length -= reading;
+        }
+    }
+
+    @Override
+    public short getShort(int addr) throws ProgramException {
+        Segment seg = getSegment(addr, true);
+        if (!seg.contains(addr, Short.BYTES)) {
+            return MemoryBackend.super.getShort(addr);
+        }
+        return LittleEndian.getShort(seg.data, addr - seg.start);
+    }
+
+    @Override
+    public int getInt(int addr) throws ProgramException {
+        Segment seg = getSegment(addr, true);
+        if (!seg.contains(addr, Integer.BYTES)) {
+            return MemoryBackend.super.getInt(addr);
+        }
+        return LittleEndian.getInt(seg.data, addr - seg.start);
+    }
+
+    @Override
+    public long getLong(int addr) throws ProgramException {
+        Segment seg = getSegment(addr, true);
+        if (!seg.contains(addr, Long.BYTES)) {
+            return MemoryBackend.super.getLong(addr);
+        }
+        return LittleEndian.getLong(seg.data, addr - seg.start);
+    }
+
+    @Override
+    public void setShort(int addr, short val) throws ProgramException {
+        Segment seg = getSegment(addr, false);
+        if (!seg.contains(addr, Short.BYTES)) {
+            MemoryBackend.super.setShort(addr, val);
+        } else {
+            LittleEndian.setShort(seg.data, addr - seg.start, val);
+        }
+    }
+
+    @Override
+    public void setInt(int addr, int val) throws ProgramException {
+        Segment seg = getSegment(addr, false);
+        if (!seg.contains(addr, Integer.BYTES)) {
+            MemoryBackend.super.setInt(addr, val);
+        } else {
+            LittleEndian.setInt(seg.data, addr - seg.start, val);
+        }
+    }
+
+    @Override
+    public void setLong(int addr, long val) throws ProgramException {
+        Segment seg = getSegment(addr, false);
+        if (!seg.contains(addr, Long.BYTES)) {
+            MemoryBackend.super.setLong(addr, val);
+        } else {
+            LittleEndian.setLong(seg.data, addr - seg.start, val);
+        }
+    }
+
+    /**
+     * Notifies the access listener if an accessed segment is watched.
+     *
+     * @param seg    the segment accessed
+     * @param addr   the starting address accessed
+     * @param length the number of bytes accessed
+     * @param write  true if this is a write, false if this is a read.
+     */
+    private void accessed(Segment seg, int addr, int length, boolean write) {
+        if (seg.watched && listener != null) {
+            listener.memoryAccessed(addr, length, write);
+        }
+    }
+
+    /**
+     * Fetches a memory segment associated that contains the address
+     *
+     * @param addr the address to find
+     * @param get  whether if this is a get or set operation
+     * @return a memory segment if found
+     * @throws ProgramException if the address does not map to a valid segment (ADDRL/ADDRS).
+     */
+    private Segment getSegment(int addr, boolean get) throws ProgramException {
+        Segment found = memory.findAt(addr);
+        if (found == null) {
+            throw new ProgramException(get ? ErrorType.ADDRL : ErrorType.ADDRS);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,182 @@
+package com.theKidOfArcrania.mips.runner;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A syscall I/O device over a pair of byte streams. Output is collected in a buffer, and is only written out when
+ * the buffer fills up, when {@link #flush()} is called, or right before blocking on any input (so that prompts are
+ * always visible). Input is read through one shared buffer that all the read syscalls decode from, so mixing
+ * read_int, read_string and read_character never loses any bytes.
+ *
+ * @author Henry Wang
+ */
+public class StreamSyscallIO implements SyscallIO {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final InputStream in;
+    private final OutputStream out;
+
+    private final byte[] outBuff = new byte[BUFFER_SIZE];
+    private int outCount;
+
+    private final byte[] inBuff = new byte[BUFFER_SIZE];
+    private int inPos;
+    private int inLimit;
+
+    /**
+     * Constructs a syscall I/O device over a pair of streams.
+     *
+     * @param in  the stream to read input from
+     * @param out the stream to write output to
+     */
+    public StreamSyscallIO(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    @Override
+    public void printInt(int val) throws IOException {
+        String str = Integer.toString(val);
+        ensureOutput(str.length() + LINE_SEPARATOR.length);
+        for (int i = 0; i < str.length(); i++) {
+            outBuff[outCount++] = (byte) str.charAt(i);
+        }
+        System.arraycopy(LINE_SEPARATOR, 0, outBuff, outCount, LINE_SEPARATOR.length);
+        outCount += LINE_SEPARATOR.length;
+    }
+
+    @Override
+    public void printChar(int c) throws IOException {
+        ensureOutput(1);
+        outBuff[outCount++] = (byte) c;
+    }
+
+    @Override
+    public void print(byte[] buff, int offset, int length) throws IOException {
+        if (length > outBuff.length) {
+            flush();
+            out.write(buff, offset, length);
+            return;
+        }
+
+        ensureOutput(length);
+        System.arraycopy(buff, offset, outBuff, outCount, length);
+        outCount += length;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int c = peek();
+        while (c != -1 && Character.isWhitespace(c)) {
+            inPos++;
+            c = peek();
+        }
+        if (c == -1) {
+            throw new EOFException("Expected an integer");
+        }
+
+        StringBuilder token = new StringBuilder();
+        while (c != -1 && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            inPos++;
+            c = peek();
+        }
+
+        //Discard the rest of the line.
+        while (c != -1) {
+            inPos++;
+            if (c == '\n') {
+                break;
+            }
+            c = peek();
+        }
+
+        try {
+            return Integer.parseInt(token.toString());
+        } catch (NumberFormatException e) {
+            throw new IOException("Expected an integer: " + token, e);
+        }
+    }
+
+    @Override
+    public int readChar() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            inPos++;
+        }
+        return c;
+    }
+
+    @Override
+    public int readLine(byte[] buff, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length && fill()) {
+            int chunk = Math.min(length - read, inLimit - inPos);
+            for (int i = 0; i < chunk; i++) {
+                byte b = inBuff[inPos++];
+                buff[offset + read++] = b;
+                if (b == '\n') {
+                    return read;
+                }
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (outCount > 0) {
+            out.write(outBuff, 0, outCount);
+            outCount = 0;
+            out.flush();
+        }
+    }
+
+    /**
+     * Makes room within the output buffer, flushing it if needed.
+     *
+     * @param length the number of bytes to make room for. This must not exceed the buffer size.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void ensureOutput(int length) throws IOException {
+        if (outCount + length > outBuff.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Peeks at the next input byte without consuming it.
+     *
+     * @return the next byte (as an unsigned value), or -1 at the end of the input.
+     * @throws IOException if an I/O error occurs.
+     */
+    private int peek() throws IOException {
+        return fill() ? inBuff[inPos] & 0xFF : -1;
+    }
+
+    /**
+     * Refills the input buffer if it is empty. Any buffered output is flushed first, since the program is about to
+     * wait on its input.
+     *
+     * @return true if there is some input available, false at the end of the input.
+     * @throws IOException if an I/O error occurs.
+     */
+    private boolean fill() throws IOException {
+        if (inPos < inLimit) {
+            return true;
+        }
+
+        flush();
+        int read = in.read(inBuff);
+        if (read <= 0) {
+            return false;
+        }
+        inPos = 0;
+        inLimit = read;
+        return true;
+    }
+}
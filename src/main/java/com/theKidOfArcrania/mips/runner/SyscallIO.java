@@ -0,0 +1,72 @@
+package com.theKidOfArcrania.mips.runner;
+
+import java.io.IOException;
+
+/**
+ * Represents the I/O device behind the console syscalls of an {@link Interpreter}. All text is handled as raw bytes,
+ * exactly as they are stored in the MIPS memory.
+ *
+ * @author Henry Wang
+ * @see StreamSyscallIO
+ */
+public interface SyscallIO {
+    /**
+     * Prints an integer (print_int), followed by a line separator.
+     *
+     * @param val the integer to print
+     * @throws IOException if an I/O error occurs.
+     */
+    void printInt(int val) throws IOException;
+
+    /**
+     * Prints a single character (print_character).
+     *
+     * @param c the character to print. Only the lowest byte is printed.
+     * @throws IOException if an I/O error occurs.
+     */
+    void printChar(int c) throws IOException;
+
+    /**
+     * Prints a run of bytes (print_string).
+     *
+     * @param buff   the buffer holding the bytes
+     * @param offset the index offset of buffer to start from
+     * @param length the number of bytes to print
+     * @throws IOException if an I/O error occurs.
+     */
+    void print(byte[] buff, int offset, int length) throws IOException;
+
+    /**
+     * Reads an integer (read_int), and then discards the rest of that line.
+     *
+     * @return the integer read
+     * @throws IOException if the input ends or does not hold an integer.
+     */
+    int readInt() throws IOException;
+
+    /**
+     * Reads a single character (read_character).
+     *
+     * @return the character read, or -1 at the end of the input.
+     * @throws IOException if an I/O error occurs.
+     */
+    int readChar() throws IOException;
+
+    /**
+     * Reads up to a number of bytes (read_string), stopping after a newline or at the end of the input.
+     *
+     * @param buff   the buffer to read into
+     * @param offset the index offset of buffer to start from
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, including the newline (if any).
+     * @throws IOException if an I/O error occurs.
+     */
+    int readLine(byte[] buff, int offset, int length) throws IOException;
+
+    /**
+     * Flushes any buffered output.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void flush() throws IOException;
+}
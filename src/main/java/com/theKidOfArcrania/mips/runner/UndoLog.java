@@ -0,0 +1,402 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_LUI_ORI;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLTU_BEQ;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLTU_BNE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLT_BEQ;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.FUSED_SLT_BNE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.I_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.RI_TYPE;
+import static com.theKidOfArcrania.mips.runner.DecodedInst.R_TYPE;
+
+/**
+ * Records how to undo each instruction that the interpreter runs, so that the program can be stepped backwards. This
+ * is a fixed-size ring buffer of undo records, each of which is four ints wide: a header (the kind of record, plus a
+ * small operand), followed by up to three values. Every instruction starts with a step record that holds its PC, next
+ * PC, and the old value of its destination register (see {@link DecodedInst#dest}), so most instructions take up just
+ * one record. A fused pair of instructions is recorded as two separate steps, so that either one can be undone. This
+ * is followed by records for the old values of anything else it is about to overwrite: the HI/LO registers, any memory
+ * that it stores to, and the input position of the {@link InputJournal} for syscalls.
+ * <p>
+ * Undoing a step pops records off the end until it reaches the step record, restoring each old value on the way. Once
+ * the ring is full, the oldest records are overwritten. Only steps whose step record is still in the ring can be
+ * undone, since the rest of a step is always recorded after its step record.
+ * <p>
+ * A single step can have more records than the ring can hold (e.g. a read_string into a large buffer). Rather than
+ * overwriting its own step record, such a step drops all of its records (along with everything else in the ring), and
+ * is flagged as overflowed instead, so that it can only be undone by replaying the program up to right before it.
+ *
+ * @author Henry Wang
+ */
+final class UndoLog implements Constants, Registers {
+    static final int DEST_HILO = -1;
+
+    private static final int RECORD_SIZE = 4;
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private static final int STEP = 0;
+    private static final int HILO = 1;
+    private static final int MEM = 2;
+    private static final int INPUT = 3;
+
+    /**
+     * Determines which register an instruction overwrites, so that its old value can be recorded before the
+     * instruction runs. Memory and syscall side effects are recorded separately.
+     *
+     * @param handler the composite handler index of the instruction
+     * @param rt      the target register index
+     * @param rd      the destination register index
+     * @return the register index, {@link #DEST_HILO} for the HI/LO registers, or the zero register if it does not
+     * write to any register. Restoring the zero register is always harmless.
+     */
+    @SuppressWarnings("MagicNumber")
+    static int destOf(int handler, int rt, int rd) {
+        int dest;
+        switch (handler) {
+            case R_TYPE | 0x00: //sll
+            case R_TYPE | 0x02: //srl
+            case R_TYPE | 0x03: //sra
+            case R_TYPE | 0x04: //sllv
+            case R_TYPE | 0x06: //srlv
+            case R_TYPE | 0x07: //srav
+            case R_TYPE | 0x09: //jalr
+            case R_TYPE | 0x10: //mfhi
+            case R_TYPE | 0x12: //mflo
+            case R_TYPE | 0x20: //add
+            case R_TYPE | 0x21: //addu
+            case R_TYPE | 0x22: //sub
+            case R_TYPE | 0x23: //subu
+            case R_TYPE | 0x24: //and
+            case R_TYPE | 0x25: //or
+            case R_TYPE | 0x26: //xor
+            case R_TYPE | 0x27: //nor
+            case R_TYPE | 0x2a: //slt
+            case R_TYPE | 0x2b: //sltu
+                dest = rd;
+                break;
+            case R_TYPE | 0x11: //mthi
+            case R_TYPE | 0x13: //mtlo
+            case R_TYPE | 0x18: //mult
+            case R_TYPE | 0x19: //multu
+            case R_TYPE | 0x1A: //div
+            case R_TYPE | 0x1B: //divu
+                return DEST_HILO;
+            case R_TYPE | 0x0c: //syscall
+                dest = REG_V0;
+                break;
+            case RI_TYPE | 0x10: //bltzal
+            case RI_TYPE | 0x11: //bgezal
+            case I_TYPE | 0x03: //jal
+                dest = REG_RA;
+                break;
+            case I_TYPE | 0x08: //addi
+            case I_TYPE | 0x09: //addiu
+            case I_TYPE | 0x0a: //slti
+            case I_TYPE | 0x0b: //sltiu
+            case I_TYPE | 0x0c: //andi
+            case I_TYPE | 0x0d: //ori
+            case I_TYPE | 0x0e: //xori
+            case I_TYPE | 0x0f: //lui
+            case I_TYPE | 0x20: //lb
+            case I_TYPE | 0x21: //lh
+            case I_TYPE | 0x23: //lw
+            case I_TYPE | 0x24: //lbu
+            case I_TYPE | 0x25: //lhu
+                dest = rt;
+                break;
+            default:
+                return REG_ZERO;
+        }
+        return dest;
+    }
+
+    private final int[] ring;
+    private final int capacity;
+    private final InputJournal journal;
+
+    private int head;
+    private int size;
+    private int steps;
+    private long time;
+    private int stepIndex;
+    private boolean overflowed;
+
+    /**
+     * Constructs an empty undo log.
+     *
+     * @param capacity the maximum number of records that can be held.
+     * @param journal  the input journal that syscalls read from.
+     */
+    UndoLog(int capacity, InputJournal journal) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.ring = new int[capacity * RECORD_SIZE];
+        this.capacity = capacity;
+        this.journal = journal;
+    }
+
+    /**
+     * @return the number of instructions that have been run since recording started (minus any undone ones).
+     */
+    long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the number of the most recent steps that can be undone.
+     */
+    int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Checks whether if the most recent step had too many records to fit in the ring. If so, there are no records
+     * left to undo, but that step is still counted in the time.
+     *
+     * @return true if the most recent step overflowed, false otherwise.
+     */
+    boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Drops all the records, and resets the time, e.g. after restoring a checkpoint.
+     *
+     * @param time the time of the current state.
+     */
+    void clear(long time) {
+        head = 0;
+        size = 0;
+        steps = 0;
+        overflowed = false;
+        this.time = time;
+    }
+
+    /**
+     * Records the start of an instruction, along with the old value of the register(s) that it overwrites.
+     *
+     * @param pc    the address of the instruction.
+     * @param nPC   the address of the instruction after it.
+     * @param inst  the decoded instruction.
+     * @param regs  the register file.
+     * @param state the memory state.
+     */
+    void step(int pc, int nPC, DecodedInst inst, int[] regs, MemState state) {
+        int dest = inst.dest;
+        step(pc, nPC, dest, regs[dest >= 0 ? dest : REG_ZERO], state);
+    }
+
+    /**
+     * Records the start of a fused pair of instructions (see {@link DecodedInst#fuse(DecodedInst, DecodedInst)}) as
+     * two steps. Neither instruction of a fused pair accesses memory, and the register that the second instruction
+     * overwrites is known up front, so both steps can be recorded before the pair runs.
+     *
+     * @param pc    the address of the first instruction, which is never in a delay slot.
+     * @param inst  the fused pair.
+     * @param regs  the register file.
+     * @param state the memory state.
+     */
+    void stepPair(int pc, DecodedInst inst, int[] regs, MemState state) {
+        step(pc, pc + INST_SIZE, inst, regs, state);
+
+        int dest;
+        int old;
+        switch (inst.handler) {
+            case FUSED | FUSED_LUI_ORI:
+                //The ori overwrites what the lui has just loaded.
+                dest = inst.rt;
+                old = inst.imm & ~BITS_IMM_MASK;
+                break;
+            case FUSED | FUSED_SLT_BNE:
+            case FUSED | FUSED_SLT_BEQ:
+            case FUSED | FUSED_SLTU_BNE:
+            case FUSED | FUSED_SLTU_BEQ:
+                dest = REG_ZERO;
+                old = 0;
+                break;
+            default: //mflo/mfhi
+                dest = inst.rd;
+                old = regs[dest];
+                break;
+        }
+        step(pc + INST_SIZE, pc + 2 * INST_SIZE, dest, old, state);
+    }
+
+    /**
+     * Records the start of an instruction.
+     *
+     * @param pc    the address of the instruction.
+     * @param nPC   the address of the instruction after it.
+     * @param dest  the register that it overwrites, or {@link #DEST_HILO}.
+     * @param old   the old value of that register.
+     * @param state the memory state.
+     */
+    private void step(int pc, int nPC, int dest, int old, MemState state) {
+        overflowed = false;
+        stepIndex = head;
+        push(STEP | (dest >= 0 ? dest : REG_ZERO) << KIND_BITS, pc, nPC, old);
+        steps++;
+        time++;
+        if (dest < 0) {
+            save(HILO, state.getHigh(), state.getLow(), 0);
+        }
+    }
+
+    /**
+     * Records the position of the input journal before a syscall, since it might read input.
+     *
+     * @param position the input position.
+     */
+    void saveInput(int position) {
+        save(INPUT, position, 0, 0);
+    }
+
+    /**
+     * Records the old contents of a range of memory that is about to be written to, in chunks of up to four bytes.
+     * If any part of the range is not mapped, the rest of the range is not recorded, since the write faults there.
+     *
+     * @param memory the memory backend.
+     * @param addr   the starting address to be written.
+     * @param length the number of bytes to be written.
+     */
+    void saveMemory(MemoryBackend memory, int addr, int length) {
+        for (int off = 0; off < length && !overflowed; off += Integer.BYTES) {
+            int bytes = Math.min(Integer.BYTES, length - off);
+            int old = 0;
+            try {
+                if (bytes == Integer.BYTES && (addr + off & (Integer.BYTES - 1)) == 0) {
+                    old = memory.getInt(addr + off);
+                } else {
+                    for (int i = 0; i < bytes; i++) {
+                        old |= Byte.toUnsignedInt(memory.get(addr + off + i)) << i * Byte.SIZE;
+                    }
+                }
+            } catch (ProgramException e) {
+                return;
+            }
+            save(MEM | bytes << KIND_BITS, addr + off, old, 0);
+        }
+    }
+
+    /**
+     * Undoes the most recent step, restoring everything that it has overwritten, and moving the PC back to it.
+     *
+     * @param state the memory state to restore into.
+     * @return true if a step was undone, false if there are no more steps to undo.
+     * @throws ProgramException if the memory cannot be restored.
+     */
+    boolean undoStep(MemState state) throws ProgramException {
+        if (steps == 0) {
+            return false;
+        }
+
+        int[] regs = state.registers();
+        while (true) {
+            int ind = pop();
+            int header = ring[ind];
+            int a = ring[ind + 1];
+            int b = ring[ind + 2];
+            switch (header & KIND_MASK) {
+                case STEP:
+                    regs[header >>> KIND_BITS] = ring[ind + 3];
+                    state.setPC(a, b);
+                    steps--;
+                    time--;
+                    return true;
+                case HILO:
+                    state.setHigh(a);
+                    state.setLow(b);
+                    break;
+                case MEM:
+                    state.undoWrite(a, header >>> KIND_BITS, b);
+                    break;
+                case INPUT:
+                    journal.setPosition(a);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
+
+    /**
+     * Drops the records of the most recent step without restoring anything. This is used when an instruction traps
+     * (or exits) after its step has been recorded, since the instruction is not counted as run.
+     */
+    void discardStep() {
+        time--;
+        if (overflowed) {
+            overflowed = false;
+            return;
+        }
+        while (steps > 0) {
+            if ((ring[pop()] & KIND_MASK) == STEP) {
+                steps--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pushes a record of the current step onto the end of the ring. If this would overwrite the step record of the
+     * current step itself, the whole ring is dropped instead, and the current step is flagged as overflowed. Any
+     * further records of an overflowed step are ignored.
+     *
+     * @param header the kind of record, plus its operand.
+     * @param a      the first value
+     * @param b      the second value
+     * @param c      the third value
+     */
+    private void save(int header, int a, int b, int c) {
+        if (overflowed) {
+            return;
+        }
+        if (size == capacity && head == stepIndex) {
+            head = 0;
+            size = 0;
+            steps = 0;
+            overflowed = true;
+            return;
+        }
+        push(header, a, b, c);
+    }
+
+    /**
+     * Pushes a record onto the end of the ring, overwriting the oldest record if the ring is full.
+     *
+     * @param header the kind of record, plus its operand.
+     * @param a      the first value
+     * @param b      the second value
+     * @param c      the third value
+     */
+    private void push(int header, int a, int b, int c) {
+        int ind = head * RECORD_SIZE;
+        if (size < capacity) {
+            size++;
+        } else if ((ring[ind] & KIND_MASK) == STEP) {
+            steps--;
+        }
+
+        ring[ind] = header;
+        ring[ind + 1] = a;
+        ring[ind + 2] = b;
+        ring[ind + 3] = c;
+        head = head + 1 == capacity ? 0 : head + 1;
+    }
+
+    /**
+     * Pops the most recent record off the ring. There must be at least one record.
+     *
+     * @return the index into the ring of the popped record.
+     */
+    private int pop() {
+        head = (head == 0 ? capacity : head) - 1;
+        size--;
+        return head * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,60 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Represents a memory watchpoint: a range of addresses that stops the interpreter right after an instruction writes
+ * to it (or also reads from it, for an access watchpoint).
+ *
+ * @author Henry Wang
+ * @see MemState#addWatchpoint(Watchpoint)
+ */
+public final class Watchpoint {
+    private final int start;
+    private final int length;
+    private final boolean reads;
+
+    /**
+     * Constructs a watchpoint.
+     *
+     * @param start  the starting address of the watched range
+     * @param length the number of bytes watched
+     * @param reads  true to stop on reads as well as writes, false to only stop on writes.
+     * @throws IllegalArgumentException if the length is not positive, or if the range overflows.
+     */
+    public Watchpoint(int start, int length, boolean reads) {
+        if (length <= 0 || start + length < start) {
+            throw new IllegalArgumentException("Invalid watch range");
+        }
+        this.start = start;
+        this.length = length;
+        this.reads = reads;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isReads() {
+        return reads;
+    }
+
+    /**
+     * Checks whether if an access triggers this watchpoint.
+     *
+     * @param addr   the starting address accessed
+     * @param length the number of bytes accessed
+     * @param write  true if this is a write, false if this is a read.
+     * @return true if the access overlaps with this watchpoint, and is of a watched kind.
+     */
+    boolean matches(int addr, int length, boolean write) {
+        return (write || reads) && addr < start + this.length && addr + length > start;
+    }
+
+    @Override
+    public String toString() {
+        return "Watchpoint{0x" + Integer.toHexString(start) + ", length=" + length + (reads ? ", reads" : "") + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package com.theKidOfArcrania.mips.runner;
+
+/**
+ * Listens to any writes that occur within a watched address range of a {@link MemState}.
+ *
+ * @author Henry Wang
+ * @see MemState#setWriteListener(int, int, WriteListener)
+ */
+@FunctionalInterface
+public interface WriteListener {
+    /**
+     * Called whenever a write touches the watched range. This may be called before the write has completed, so
+     * listeners should only use this to invalidate any state that was derived from that memory.
+     *
+     * @param addr   the starting address that was written to
+     * @param length the number of bytes written
+     */
+    void memoryWritten(int addr, int length);
+}
@@ -27,6 +27,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -138,21 +139,22 @@ public class AssemblyEditor extends StackPane {
          *
          * @param lineNum the line number
          * @param colNum  the column number or -1 if to obtain all highlight markers.
-         * @return the set of markers.
+         * @return the (read-only) set of markers.
          */
         public Set<HighlightMark<?>> getMarkersAt(int lineNum, int colNum) {
             if (lineNum > lines.size() || lineNum <= 0) {
-                return new HashSet<>();
+                return Collections.emptySet();
             }
-            if (colNum == -1) {
-                synchronized (this) {
-                    HashSet<HighlightMark<?>> markers = new HashSet<>();
-                    for (RangeSet<HighlightMark<?>>.RangeElement e : lines.get(lineNum - 1).markers)
-                        markers.addAll(e.getItems());
-                    return markers;
+            synchronized (this) {
+                RangeSet<HighlightMark<?>> markers = lines.get(lineNum - 1).markers;
+                if (colNum == -1) {
+                    HashSet<HighlightMark<?>> all = new HashSet<>();
+                    for (RangeSet<HighlightMark<?>>.RangeElement e : markers.elementsView())
+                        all.addAll(e.getItemsView());
+                    return all;
                 }
+                return markers.getView(colNum);
             }
-            return lines.get(lineNum - 1).markers.get(colNum);
         }
 
         /**
@@ -200,6 +202,19 @@ public class AssemblyEditor extends StackPane {
             line.markers.retainRange(0, length);
         }
 
+        /**
+         * Replaces all the lines with blank lines with initially no styling.
+         *
+         * @param lineCount the new number of lines.
+         */
+        public synchronized void reset(int lineCount) {
+            lines.clear();
+            lines.ensureCapacity(lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                lines.add(new LineStyle());
+            }
+        }
+
         /**
          * Inserts a new blank line with initially no styling.
          *
@@ -240,13 +255,14 @@ public class AssemblyEditor extends StackPane {
                     guardLine(i + 1, length);
                 }
 
-                RangeSet<HighlightMark<?>> markers;
-                synchronized (this) {
-                    markers = new RangeSet<>(line.markers);
-                }
-
                 if (line.modified && line.guard > 0) {
                     line.modified = false;
+
+                    //Copying only shares the item sets, so this is cheap.
+                    RangeSet<HighlightMark<?>> markers;
+                    synchronized (this) {
+                        markers = new RangeSet<>(line.markers);
+                    }
                     if (cursorPos.getLineNumber() - 1 == i) {
                         findPair(i + 1, cursorPos.getColumnNumber() - 1, ')', markers);
                         findPair(i + 1, cursorPos.getColumnNumber(), '(', markers);
@@ -254,13 +270,13 @@ public class AssemblyEditor extends StackPane {
 
                     int last = 0;
                     StyleSpansBuilder<Collection<String>> ssb = new StyleSpansBuilder<>();
-                    for (RangeSet<HighlightMark<?>>.RangeElement ele : markers) {
+                    for (RangeSet<HighlightMark<?>>.RangeElement ele : markers.elementsView()) {
                         if (last < ele.getFrom()) {
                             ssb.add(Collections.emptyList(), ele.getFrom() - last);
                         }
 
                         last = ele.getTo();
-                        ssb.add(ele.getItems().stream().map(HighlightMark::getType).map(Enum::toString)
+                        ssb.add(ele.getItemsView().stream().map(HighlightMark::getType).map(Enum::toString)
                                 .collect(Collectors.toSet()), last - ele.getFrom());
                     }
 
@@ -341,6 +357,7 @@ public class AssemblyEditor extends StackPane {
     private final Tooltip tagMsg;
 
     private int moveCount = 10;
+    private boolean loading;
 
 
     /**
@@ -427,7 +444,36 @@ public class AssemblyEditor extends StackPane {
         scroll.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
         getChildren().addAll(scroll);
 
-        codeArea.insertText(0, code);
+        loadCode(code);
+    }
+
+    /**
+     * Replaces all the code within this editor, i.e. when opening a file. Rather than inserting the code line by line,
+     * the parser, line positions and line styles are all loaded in bulk, and the whole code is then reparsed in a
+     * single pass.
+     *
+     * @param code the new code.
+     */
+    public synchronized void loadCode(String code) {
+        if (code.equals(codeArea.getText())) {
+            return;
+        }
+
+        parser.loadCode(code);
+        linePos.clear();
+        linePos.ensureCapacity(parser.getLineCount());
+        linePos.add(0);
+        for (int i = code.indexOf('\n'); i != -1; i = code.indexOf('\n', i + 1)) {
+            linePos.add(i + 1);
+        }
+        styles.reset(parser.getLineCount());
+
+        loading = true;
+        try {
+            codeArea.replaceText(code);
+        } finally {
+            loading = false;
+        }
     }
 
     /**
@@ -473,7 +519,7 @@ public class AssemblyEditor extends StackPane {
 
         highlightSyntaxes.clear();
         highlightTags.clear();
-        if (parser.reparse(false, cancelled)) {
+        if (parser.reparse(false, cancelled, ForkJoinPool.commonPool())) {
             parser.resolveSymbols(cancelled);
         }
 
@@ -526,16 +572,16 @@ public class AssemblyEditor extends StackPane {
      * @return the pending computing task.
      */
     private synchronized Task<Void> computeChanges(PlainTextChange change) {
-        //Update change
-        if (!change.getRemoved().isEmpty()) {
+        //Update change (unless the code was just loaded in bulk)
+        if (!loading && !change.getRemoved().isEmpty()) {
             removeRange(change.getRemoved(), change.getPosition());
         }
-        if (!change.getInserted().isEmpty()) {
+        if (!loading && !change.getInserted().isEmpty()) {
             insertRange(change.getInserted(), change.getPosition());
         }
 
-        //Remove styles for the dirty lines
-        for (int i = 1; i <= parser.getLineCount(); i++) {
+        //Remove styles for the dirty lines (a bulk load already starts out with no styles)
+        for (int i = 1; !loading && i <= parser.getLineCount(); i++) {
             if (parser.isLineDirty(i)) {
                 styles.clearStyles(i);
             } else if (!parser.isLineMalformed(i)) {
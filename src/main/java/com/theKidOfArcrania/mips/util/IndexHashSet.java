@@ -1,24 +1,53 @@
 package com.theKidOfArcrania.mips.util;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * This particular set implementation combines the O constant time of accessing indexes and searching objects from
  * HashSet and ArrayLists.
+ * <p>
+ * The elements are stored in order within an array, and are indexed by an open-addressing hash table whose slots
+ * hold plain <tt>int</tt> indexes into that array (so nothing is boxed). Whenever elements are inserted or removed in
+ * the middle, all the indexes after them are renumbered in a single pass over the hash table, no matter how many
+ * elements were inserted or removed at once.
  *
  * @author Henry Wang
  */
 public class IndexHashSet<T> extends AbstractSet<T> {
-    private final HashMap<T, Integer> indexes = new HashMap<>();
-    private final ArrayList<T> elements = new ArrayList<>();
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int EMPTY = -1;
+
+    private Object[] elements;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * The hash table, holding the index of each element (or {@link #EMPTY}). This is kept at most half full.
+     */
+    private int[] table;
+    private int mask;
+
+    /**
+     * Constructs an empty index hash set.
+     */
+    public IndexHashSet() {
+        elements = new Object[DEFAULT_CAPACITY];
+        hashes = new int[DEFAULT_CAPACITY];
+        allocateTable(DEFAULT_CAPACITY);
+    }
 
     @Override
     public boolean add(T element) {
-        if (indexes.containsKey(element)) {
+        int hash = hash(element);
+        if (find(element, hash) != EMPTY) {
             return false;
         }
-        indexes.put(element, elements.size());
-        elements.add(element);
+        ensureCapacity(size + 1);
+        elements[size] = element;
+        hashes[size] = hash;
+        insertSlot(hash, size);
+        size++;
         return true;
     }
 
@@ -31,20 +60,10 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      * @param element element to be inserted
      * @return true if an element was added, false if it is not added.
      * @throws IndexOutOfBoundsException if the index is out of range
-     *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
+     *                                   (<tt>index &lt; 0 || index &gt; size()</tt>)
      */
     public boolean add(int index, T element) {
-        if (indexes.containsKey(element)) {
-            return false;
-        }
-
-        elements.add(index, element);
-        indexes.put(element, index);
-
-        int size = size();
-        for (int i = index; i < size; i++)
-            indexes.put(elements.get(i), i);
-        return true;
+        return addAll(index, Collections.singletonList(element));
     }
 
     /**
@@ -54,49 +73,91 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      * @param index the index to add from.
      * @param c     the collection of elements to add.
      * @return true if the list changed as a result of this call.
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *                                   (<tt>index &lt; 0 || index &gt; size()</tt>)
      */
     public boolean addAll(int index, Collection<? extends T> c) {
-        ArrayList<T> adding = new ArrayList<>(c.size());
-        for (T ele : adding) {
-            if (!indexes.containsKey(ele)) {
-                adding.add(ele);
+        checkPosition(index);
+
+        //Append the new elements first, so that duplicates within the collection are also detected.
+        int oldSize = size;
+        ensureCapacity(size + c.size());
+        for (T ele : c) {
+            int hash = hash(ele);
+            if (find(ele, hash) == EMPTY) {
+                elements[size] = ele;
+                hashes[size] = hash;
+                insertSlot(hash, size);
+                size++;
             }
         }
 
-        if (adding.isEmpty()) {
+        int added = size - oldSize;
+        if (added == 0) {
             return false;
         }
+        if (index == oldSize) {
+            return true;
+        }
 
-        elements.addAll(index, adding);
-        int size = size();
-        for (int i = index; i < size; i++)
-            indexes.put(elements.get(i), i);
+        //Rotate the new elements into place, then renumber everything in one pass.
+        rotate(index, oldSize, size);
+        for (int i = 0; i < table.length; i++) {
+            int ind = table[i];
+            if (ind >= oldSize) {
+                table[i] = ind - oldSize + index;
+            } else if (ind >= index) {
+                table[i] = ind + added;
+            }
+        }
         return true;
     }
 
+    @Override
     public void clear() {
-        elements.clear();
-        indexes.clear();
+        Arrays.fill(elements, 0, size, null);
+        Arrays.fill(table, EMPTY);
+        size = 0;
     }
 
     @Override
     public boolean contains(Object o) {
-        return indexes.containsKey(o);
+        return indexOf(o) != -1;
     }
 
     /**
-     * Increases the capacity of the <tt>ArrayList</tt> portion of this <code>IndexHashSet</code> instance, if
-     * necessary, to ensure that it can hold at least the number of elements specified by the minimum capacity argument.
+     * Increases the capacity of this <code>IndexHashSet</code> instance, if necessary, to ensure that it can hold
+     * at least the number of elements specified by the minimum capacity argument.
      *
      * @param minCapacity the desired minimum capacity
      */
     public void ensureCapacity(int minCapacity) {
-        elements.ensureCapacity(minCapacity);
+        if (minCapacity > elements.length) {
+            int capacity = Math.max(minCapacity, elements.length + (elements.length >> 1));
+            elements = Arrays.copyOf(elements, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        if (minCapacity * 2 > table.length) {
+            allocateTable(Integer.highestOneBit(minCapacity * 2 - 1) << 1);
+            rehash();
+        }
     }
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof IndexHashSet && elements.equals(((IndexHashSet) o).elements);
+        if (!(o instanceof IndexHashSet)) {
+            return false;
+        }
+        IndexHashSet<?> other = (IndexHashSet<?>) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!Objects.equals(elements[i], other.elements[i])) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -107,13 +168,19 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      * @throws IndexOutOfBoundsException if the index is out of range
      *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
      */
+    @SuppressWarnings("unchecked")
     public T get(int index) {
-        return elements.get(index);
+        checkIndex(index);
+        return (T) elements[index];
     }
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        int hashCode = 1;
+        for (int i = 0; i < size; i++) {
+            hashCode = 31 * hashCode + hashes[i];
+        }
+        return hashCode;
     }
 
     /**
@@ -125,29 +192,39 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      * @return the index of the object.
      */
     public int indexOf(Object o) {
-        return indexes.getOrDefault(o, -1);
+        int slot = find(o, hash(o));
+        return slot == EMPTY ? -1 : table[slot];
     }
 
     @Override
     public Iterator<T> iterator() {
-        Iterator<T> itr = elements.iterator();
         return new Iterator<T>() {
-            private T prev;
+            private int next = 0;
+            private int last = -1;
 
             @Override
             public boolean hasNext() {
-                return itr.hasNext();
+                return next < size;
             }
 
+            @SuppressWarnings("unchecked")
             @Override
             public T next() {
-                return prev = itr.next();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return (T) elements[last];
             }
 
             @Override
             public void remove() {
-                itr.remove();
-                indexes.remove(prev);
+                if (last == -1) {
+                    throw new IllegalStateException();
+                }
+                IndexHashSet.this.remove(last);
+                next = last;
+                last = -1;
             }
         };
     }
@@ -157,23 +234,125 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      *
      * @param index the index to remove element from.
      * @return the element removed
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
      */
     public T remove(int index) {
-        T removed = elements.remove(index);
-        indexes.remove(removed);
+        T removed = get(index);
+        removeRange(index, index + 1);
         return removed;
     }
 
     @Override
     public boolean remove(Object o) {
-        Integer ind = indexes.remove(o);
-        if (ind != null) {
-            elements.remove(ind);
-            return true;
-        } else {
+        int ind = indexOf(o);
+        if (ind == -1) {
             return false;
         }
+        removeRange(ind, ind + 1);
+        return true;
+    }
 
+    /**
+     * Removes an element at the specified index in constant time, by moving the last element into its place. Unlike
+     * {@link #remove(int)}, this does not preserve the order of the elements.
+     *
+     * @param index the index to remove element from.
+     * @return the element removed
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
+     */
+    public T swapRemove(int index) {
+        T removed = get(index);
+        int last = size - 1;
+        deleteSlot(slotOf(index));
+        if (index != last) {
+            table[slotOf(last)] = index;
+            elements[index] = elements[last];
+            hashes[index] = hashes[last];
+        }
+        elements[last] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes all the elements within a range of indexes, shifting any subsequent elements to the left.
+     *
+     * @param from the starting index (inclusive)
+     * @param to   the ending index (exclusive)
+     * @throws IndexOutOfBoundsException if the range is out of bounds, or <tt>from &gt; to</tt>
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size);
+        }
+        int removed = to - from;
+        if (removed == 0) {
+            return;
+        }
+
+        if (removed * 4 > size) {
+            //Cheaper to rebuild the hash table outright.
+            System.arraycopy(elements, to, elements, from, size - to);
+            System.arraycopy(hashes, to, hashes, from, size - to);
+            Arrays.fill(elements, size - removed, size, null);
+            size -= removed;
+            rehash();
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            deleteSlot(slotOf(i));
+        }
+        System.arraycopy(elements, to, elements, from, size - to);
+        System.arraycopy(hashes, to, hashes, from, size - to);
+        Arrays.fill(elements, size - removed, size, null);
+        size -= removed;
+        if (from < size) {
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] >= to) {
+                    table[i] -= removed;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeIf(e -> !c.contains(e));
+    }
+
+    /**
+     * Removes all elements that meet a specified condition. The remaining elements are compacted and re-indexed in
+     * a single pass.
+     *
+     * @param filter condition by which to remove elements.
+     * @return true if any elements were removed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test((T) elements[i])) {
+                elements[kept] = elements[i];
+                hashes[kept] = hashes[i];
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        rehash();
+        return true;
     }
 
     /**
@@ -190,7 +369,7 @@ public class IndexHashSet<T> extends AbstractSet<T> {
         if (ind == -1) {
             return null;
         } else {
-            return (S) elements.get(ind);
+            return (S) elements[ind];
         }
     }
 
@@ -206,18 +385,26 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
      */
     public T set(int index, T element) {
-        if (indexes.getOrDefault(element, -1) != index) {
+        T prev = get(index);
+        int existing = indexOf(element);
+        if (existing == index) {
+            elements[index] = element;
+            return prev;
+        } else if (existing != -1) {
             return null;
         }
-        T prev = elements.set(index, element);
-        indexes.remove(prev);
-        indexes.put(element, index);
+
+        deleteSlot(slotOf(index));
+        int hash = hash(element);
+        elements[index] = element;
+        hashes[index] = hash;
+        insertSlot(hash, index);
         return prev;
     }
 
     @Override
     public int size() {
-        return elements.size();
+        return size;
     }
 
     /**
@@ -225,10 +412,13 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      *
      * @param c the comparator to sort against.
      */
+    @SuppressWarnings("unchecked")
     public void sort(Comparator<? super T> c) {
-        elements.sort(c);
-        for (int i = 0; i < elements.size(); i++)
-            indexes.put(elements.get(i), i);
+        Arrays.sort((T[]) elements, 0, size, c);
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(elements[i]);
+        }
+        rehash();
     }
 
     /**
@@ -240,22 +430,166 @@ public class IndexHashSet<T> extends AbstractSet<T> {
      *                                   (<tt>index &lt; 0 || index &gt;= size()</tt>)
      */
     public void swap(int a, int b) {
-        T eleA = elements.get(a);
-        T eleB = elements.get(b);
-        elements.set(b, eleA);
-        elements.set(a, eleB);
-        indexes.put(eleA, b);
-        indexes.put(eleB, a);
+        checkIndex(a);
+        checkIndex(b);
+        int slotA = slotOf(a);
+        int slotB = slotOf(b);
+        table[slotA] = b;
+        table[slotB] = a;
+
+        Object ele = elements[a];
+        elements[a] = elements[b];
+        elements[b] = ele;
+        int hash = hashes[a];
+        hashes[a] = hashes[b];
+        hashes[b] = hash;
     }
 
     @Override
     public Object[] toArray() {
-        return elements.toArray();
+        return Arrays.copyOf(elements, size);
     }
 
-    @SuppressWarnings("SuspiciousToArrayCall")
+    @SuppressWarnings("unchecked")
     @Override
     public <U> U[] toArray(U[] a) {
-        return elements.toArray(a);
+        if (a.length < size) {
+            return (U[]) Arrays.copyOf(elements, size, a.getClass());
+        }
+        System.arraycopy(elements, 0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Computes the (spread) hash of an element. The hash code is scrambled so that runs of nearby hash codes (as
+     * with similar strings) do not pile up into long probe sequences.
+     *
+     * @param o the element
+     * @return the hash code.
+     */
+    private static int hash(Object o) {
+        int h = Objects.hashCode(o) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the hash table slot of an element.
+     *
+     * @param o    the element to find
+     * @param hash the hash of the element
+     * @return the slot holding the element's index, or {@link #EMPTY} if not found.
+     */
+    private int find(Object o, int hash) {
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int ind = table[slot];
+            if (ind == EMPTY) {
+                return EMPTY;
+            }
+            Object ele = elements[ind];
+            if (ele == o || hashes[ind] == hash && o != null && o.equals(ele)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Finds the hash table slot that holds a particular index.
+     *
+     * @param index the index of an element in this set.
+     * @return the slot holding that index.
+     */
+    private int slotOf(int index) {
+        int slot = hashes[index] & mask;
+        while (table[slot] != index) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Inserts an index into the hash table. The element must not already be in the table.
+     *
+     * @param hash  the hash of the element
+     * @param index the index of the element
+     */
+    private void insertSlot(int hash, int index) {
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index;
+    }
+
+    /**
+     * Deletes a slot from the hash table, shifting back any later entries of the same probe sequence so that no
+     * tombstones are needed.
+     *
+     * @param slot the slot to delete.
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hashes[table[next]] & mask;
+            //Move the entry into the hole if its home slot is not within (hole, next].
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    /**
+     * Allocates a new empty hash table.
+     *
+     * @param capacity the number of slots, which must be a power of two.
+     */
+    private void allocateTable(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Rebuilds the hash table from the elements array.
+     */
+    private void rehash() {
+        Arrays.fill(table, EMPTY);
+        for (int i = 0; i < size; i++) {
+            insertSlot(hashes[i], i);
+        }
+    }
+
+    /**
+     * Rotates a range of the elements, so that the elements within <tt>[mid, to)</tt> are moved to start at
+     * <tt>from</tt>. This does not touch the hash table.
+     *
+     * @param from the start of the range
+     * @param mid  the start of the elements to move to the front
+     * @param to   the end of the range
+     */
+    private void rotate(int from, int mid, int to) {
+        int moved = to - mid;
+        Object[] tmpEles = Arrays.copyOfRange(elements, mid, to);
+        int[] tmpHashes = Arrays.copyOfRange(hashes, mid, to);
+        System.arraycopy(elements, from, elements, from + moved, mid - from);
+        System.arraycopy(hashes, from, hashes, from + moved, mid - from);
+        System.arraycopy(tmpEles, 0, elements, from, moved);
+        System.arraycopy(tmpHashes, 0, hashes, from, moved);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkPosition(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
     }
 }
@@ -0,0 +1,117 @@
+package com.theKidOfArcrania.mips.util;
+
+import com.theKidOfArcrania.mips.Constants;
+
+/**
+ * Encodes and decodes the bit fields of a 32-bit instruction word with plain shifts and masks. This is the fixed-width
+ * counterpart of {@link BitPacker}: like it, bit offsets count from the MSB of the word, but the whole word lives in a
+ * single <tt>int</tt>, so nothing is allocated and no bytes are looped over.
+ *
+ * @author Henry Wang
+ */
+public final class InstCodec implements Constants {
+    private InstCodec() {
+    }
+
+    /**
+     * Fetches a bit field from an instruction word.
+     *
+     * @param word   the instruction word
+     * @param offset the bit offset of this field, counting from the MSB
+     * @param length the number of bits of this field (1 to 32)
+     * @return the (unsigned) value of the field.
+     */
+    public static int get(int word, int offset, int length) {
+        return word << offset >>> (Integer.SIZE - length);
+    }
+
+    /**
+     * Shifts a value into its bit field of an instruction word. The result can be OR'ed together with the other
+     * fields to form the instruction word.
+     *
+     * @param offset the bit offset of this field, counting from the MSB
+     * @param length the number of bits of this field (1 to 32)
+     * @param value  the value to set, truncated to the field length
+     * @return the instruction word bits of this field.
+     */
+    public static int field(int offset, int length, int value) {
+        return value << (Integer.SIZE - length) >>> offset;
+    }
+
+    /**
+     * Replaces a bit field of an instruction word.
+     *
+     * @param word   the instruction word
+     * @param offset the bit offset of this field, counting from the MSB
+     * @param length the number of bits of this field (1 to 32)
+     * @param value  the value to set, truncated to the field length
+     * @return the new instruction word.
+     */
+    public static int set(int word, int offset, int length, int value) {
+        return word & ~field(offset, length, -1) | field(offset, length, value);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the opcode field.
+     */
+    public static int opcode(int word) {
+        return get(word, 0, BITS_OPCODE);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the rs (source register) field.
+     */
+    public static int rs(int word) {
+        return get(word, BITS_REG_OFF, BITS_REG);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the rt (target register) field, which is also the regimm code.
+     */
+    public static int rt(int word) {
+        return get(word, BITS_REG_OFF + BITS_REG, BITS_REG);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the rd (destination register) field.
+     */
+    public static int rd(int word) {
+        return get(word, BITS_REG_OFF + BITS_REG * 2, BITS_REG);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the shift amount field.
+     */
+    public static int shamt(int word) {
+        return get(word, BITS_SHAMT_OFF, BITS_SHAMT);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the funct field.
+     */
+    public static int funct(int word) {
+        return get(word, BITS_FUNCT_OFF, BITS_FUNCT);
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the 16-bit immediate field, sign-extended.
+     */
+    public static int imm(int word) {
+        return (short) word;
+    }
+
+    /**
+     * @param word the instruction word
+     * @return the 26-bit jump address field.
+     */
+    public static int addr(int word) {
+        return word & BITS_ADDR_MASK;
+    }
+}
@@ -0,0 +1,161 @@
+package com.theKidOfArcrania.mips.util;
+
+import java.util.Map;
+
+/**
+ * Represents an immutable table of keywords, looked up through a perfect hash. When the table is built, a hash
+ * function is searched for such that no two keywords land in the same slot, so a lookup only ever needs to compare
+ * against a single keyword. Keywords can be looked up straight from any range of characters, without creating a
+ * string for the range.
+ *
+ * @param <V> the type of the values that keywords map to.
+ * @author Henry Wang
+ */
+public final class KeywordTable<V> {
+    private static final int MAX_ATTEMPTS = 1000;
+
+    private final boolean ignoreCase;
+    private final String[] keys;
+    private final Object[] values;
+    private final int mask;
+    private final int multiplier;
+
+    /**
+     * Builds a keyword table.
+     *
+     * @param entries    the mappings of all the keywords. Keywords must only consist of ASCII characters.
+     * @param ignoreCase true if keywords should be matched regardless of case.
+     * @throws IllegalArgumentException if the keywords are not all distinct, or no perfect hash could be found.
+     */
+    public KeywordTable(Map<String, ? extends V> entries, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+
+        String[] names = new String[entries.size()];
+        int ind = 0;
+        for (String name : entries.keySet()) {
+            names[ind++] = ignoreCase ? foldCase(name) : name;
+        }
+
+        int size = Integer.highestOneBit(Math.max(1, names.length * 2 - 1)) << 1;
+        int mult = 31;
+        String[] slots;
+        while ((slots = tryHash(names, size - 1, mult)) == null) {
+            mult += 2;
+            if (mult > 31 + 2 * MAX_ATTEMPTS) {
+                //Try again with a larger table.
+                if (size >= names.length << 4) {
+                    throw new IllegalArgumentException("Keywords are not distinct.");
+                }
+                size <<= 1;
+                mult = 31;
+            }
+        }
+        mask = size - 1;
+        multiplier = mult;
+        keys = slots;
+
+        values = new Object[keys.length];
+        for (Map.Entry<String, ? extends V> ent : entries.entrySet()) {
+            String name = ent.getKey();
+            values[slot(name, 0, name.length())] = ent.getValue();
+        }
+    }
+
+    /**
+     * Looks up a keyword.
+     *
+     * @param key the keyword to look up
+     * @return the associated value, or null if this is not a keyword.
+     */
+    public V get(CharSequence key) {
+        return get(key, 0, key.length());
+    }
+
+    /**
+     * Looks up a keyword from a range of characters.
+     *
+     * @param src  the characters containing the keyword.
+     * @param from the starting index of the keyword
+     * @param to   the ending index of the keyword (exclusive)
+     * @return the associated value, or null if this is not a keyword.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence src, int from, int to) {
+        int slot = slot(src, from, to);
+        String key = keys[slot];
+        if (key == null || key.length() != to - from) {
+            return null;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(src.charAt(from + i))) {
+                return null;
+            }
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Computes the slot of a keyword.
+     *
+     * @param src  the characters containing the keyword.
+     * @param from the starting index of the keyword
+     * @param to   the ending index of the keyword (exclusive)
+     * @return the slot index.
+     */
+    private int slot(CharSequence src, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = hash * multiplier + fold(src.charAt(i));
+        }
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Attempts to place every keyword into its own slot.
+     *
+     * @param names the (case-folded) keywords
+     * @param mask  the slot mask, one less than the table size.
+     * @param mult  the hash multiplier to try.
+     * @return the slots, or null if two keywords collide.
+     */
+    private static String[] tryHash(String[] names, int mask, int mult) {
+        String[] slots = new String[mask + 1];
+        for (String name : names) {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++) {
+                hash = hash * mult + name.charAt(i);
+            }
+            hash = (hash ^ (hash >>> 16)) & mask;
+            if (slots[hash] != null) {
+                return null;
+            }
+            slots[hash] = name;
+        }
+        return slots;
+    }
+
+    /**
+     * Folds the case of a character if this table ignores case.
+     *
+     * @param ch the character
+     * @return the folded character.
+     */
+    private char fold(char ch) {
+        if (!ignoreCase) {
+            return ch;
+        }
+        if (ch >= 'a' && ch <= 'z') {
+            return (char) (ch - ('a' - 'A'));
+        }
+        return ch < 0x80 ? ch : Character.toUpperCase(ch);
+    }
+
+    private static String foldCase(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            sb.append(ch >= 'a' && ch <= 'z' ? (char) (ch - ('a' - 'A')) : ch);
+        }
+        return sb.toString();
+    }
+}
@@ -1,12 +1,19 @@
 package com.theKidOfArcrania.mips.util;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 /**
  * Represents a set of items that span over a range.
+ * <p>
+ * Internally, the range is split into disjoint range elements, each holding the set of items spanning over it, and
+ * kept in a balanced tree sorted by the starting point of each element. Finding the element at a position takes
+ * O(log n) time, and adding items to a range takes O(log n + k) time, where k is the number of elements that the
+ * range overlaps. The item sets of the elements are never modified once created, so elements that are split apart
+ * simply share their item set.
  *
  * @author Henry Wang
  */
@@ -16,7 +23,7 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      * correspond to the two end-points of this range. Within this range, it contains the said elements.
      */
     public class RangeElement implements Cloneable {
-        private final Set<T> items;
+        private Set<T> items;
         private int from;
         private int to;
 
@@ -25,10 +32,10 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
          *
          * @param from  the starting range.
          * @param to    the ending range.
-         * @param items the list of items to add.
+         * @param items the (unmodifiable) set of items. This set can be shared among range elements.
          */
-        private RangeElement(int from, int to, Collection<? extends T> items) {
-            this.items = new HashSet<>(items);
+        private RangeElement(int from, int to, Set<T> items) {
+            this.items = items;
             this.from = from;
             this.to = to;
         }
@@ -47,6 +54,16 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
             return new HashSet<>(items);
         }
 
+        /**
+         * Obtains a read-only view of the items spanning over this range. Unlike {@link #getItems()}, this does not
+         * copy the items. The view itself never changes, even if the range set is modified afterwards.
+         *
+         * @return the set of items.
+         */
+        public Set<T> getItemsView() {
+            return items;
+        }
+
         public int getFrom() {
             return from;
         }
@@ -61,13 +78,30 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
         }
     }
 
-    private final ArrayList<RangeElement> eles;
+    /**
+     * Visits the range elements of a range set, without copying any of them.
+     *
+     * @param <T> the type of the items
+     */
+    @FunctionalInterface
+    public interface RangeVisitor<T> {
+        /**
+         * Visits a single range element.
+         *
+         * @param from  the starting range of the element.
+         * @param to    the ending range of the element.
+         * @param items a read-only view of the items spanning over the element.
+         */
+        void visit(int from, int to, Set<? extends T> items);
+    }
+
+    private final TreeMap<Integer, RangeElement> eles;
 
     /**
      * Creates a new range list.
      */
     public RangeSet() {
-        this.eles = new ArrayList<>();
+        this.eles = new TreeMap<>();
     }
 
     /**
@@ -75,10 +109,12 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      *
      * @param other the other range set to copy from.
      */
+    @SuppressWarnings("unchecked")
     public RangeSet(RangeSet<? extends T> other) {
-        this.eles = new ArrayList<>();
-        for (RangeSet<? extends T>.RangeElement e : other.eles) {
-            eles.add(new RangeElement(e.from, e.to, e.items));
+        this.eles = new TreeMap<>();
+        for (RangeSet<? extends T>.RangeElement e : other.eles.values()) {
+            //Item sets are never modified, so they can be safely shared.
+            eles.put(e.from, new RangeElement(e.from, e.to, (Set<T>) e.items));
         }
     }
 
@@ -112,22 +148,39 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
             throw new IllegalArgumentException("`from` must be less than or equal to `to`.");
         }
 
-        RangeElement ele = new RangeElement(from, to, items);
-        if (eles.isEmpty()) {
-            eles.add(ele);
-            return true;
-        }
+        split(from);
+        split(to);
+
+        Set<T> added = null;
+        boolean changed = false;
+        int pos = from;
+        Map.Entry<Integer, RangeElement> ent = eles.ceilingEntry(from);
+        while (pos < to) {
+            RangeElement ele = ent == null ? null : ent.getValue();
+            int gapEnd = ele == null ? to : Math.min(ele.from, to);
+            if (pos < gapEnd) {
+                //Fill in the hole before the next element.
+                if (added == null) {
+                    added = freeze(new HashSet<>(items));
+                }
+                eles.put(pos, new RangeElement(pos, gapEnd, added));
+                changed = true;
+                pos = gapEnd;
+                continue;
+            }
 
-        int ind = binarySearch(from);
-        if (ind == -1) {
-            ind = combineRange(0, ele);
-        }
-        while (ele.from < ele.to && ind < eles.size()) {
-            ind = mergeRange(ind, ele);
-            ind = combineRange(ind, ele);
+            if (!ele.items.containsAll(items)) {
+                HashSet<T> union = new HashSet<>(ele.items);
+                union.addAll(items);
+                ele.items = freeze(union);
+                changed = true;
+            }
+            pos = ele.to;
+            ent = eles.higherEntry(ele.from);
         }
-        consolidate();
-        return true;
+
+        consolidate(from, to);
+        return changed;
     }
 
     /**
@@ -145,16 +198,12 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      * @return true if we have an empty range, false if not.
      */
     public boolean isRangeEmpty(int low, int high) {
-        int indLow = binarySearch(low);
-        int indHigh = binarySearch(high);
-
-        boolean lowTouch = indLow == -1 || indHigh >= eles.size() || eles.get(indLow).to <= low;
-        boolean highTouch = indHigh == -1 || (indHigh < eles.size() && high <= eles.get(indHigh).from);
-        if (indLow == indHigh) {
-            return lowTouch;
-        } else {
-            return indHigh - indLow == 1 && lowTouch && highTouch;
+        Map.Entry<Integer, RangeElement> before = eles.floorEntry(low);
+        if (before != null && before.getValue().to > low) {
+            return false;
         }
+        Integer next = eles.higherKey(low);
+        return next == null || next >= high;
     }
 
     /**
@@ -164,15 +213,81 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      * @return the set of items if any.
      */
     public Set<T> get(int pos) {
-        int ind = binarySearch(pos);
-        if (ind == -1) {
-            return new HashSet<>();
-        } else {
-            RangeElement ele = eles.get(ind);
-            return ele.to > pos ? new HashSet<>(ele.items) : new HashSet<>();
+        RangeElement ele = elementAt(pos);
+        return ele == null ? new HashSet<>() : new HashSet<>(ele.items);
+    }
+
+    /**
+     * Obtains a read-only view of all items at a specified position. Unlike {@link #get(int)}, this does not copy
+     * the items. The view itself never changes, even if the range set is modified afterwards.
+     *
+     * @param pos the position to look at
+     * @return the set of items, which is empty if there are none.
+     */
+    public Set<T> getView(int pos) {
+        RangeElement ele = elementAt(pos);
+        return ele == null ? Collections.emptySet() : ele.items;
+    }
+
+    /**
+     * Performs an action on each item at a specified position. This does not allocate anything.
+     *
+     * @param pos    the position to look at
+     * @param action the action to perform on each item.
+     */
+    public void forEachAt(int pos, Consumer<? super T> action) {
+        RangeElement ele = elementAt(pos);
+        if (ele != null) {
+            for (T item : ele.items) {
+                action.accept(item);
+            }
         }
     }
 
+    /**
+     * Finds any one item at a specified position. This is useful when items are known to never overlap each other.
+     * This does not copy the set of items.
+     *
+     * @param pos the position to look at
+     * @return an item at that position, or null if there are no items.
+     */
+    public T findAt(int pos) {
+        RangeElement ele = elementAt(pos);
+        return ele == null ? null : ele.items.iterator().next();
+    }
+
+    /**
+     * Visits all the range elements that overlap a specified range, in order. The visited ranges are NOT clipped to
+     * the specified range. This does not copy any of the range elements. The range set must not be modified while
+     * visiting.
+     *
+     * @param from    the starting range
+     * @param to      the ending range
+     * @param visitor the visitor to visit the range elements.
+     */
+    public void forEachOverlapping(int from, int to, RangeVisitor<? super T> visitor) {
+        Map.Entry<Integer, RangeElement> ent = eles.floorEntry(from);
+        if (ent == null || ent.getValue().to <= from) {
+            ent = eles.higherEntry(from);
+        }
+        while (ent != null && ent.getKey() < to) {
+            RangeElement ele = ent.getValue();
+            visitor.visit(ele.from, ele.to, ele.items);
+            ent = eles.higherEntry(ele.from);
+        }
+    }
+
+    /**
+     * Obtains a read-only view of all the range elements, in order. Unlike {@link #iterator()}, this does not copy
+     * any range elements, so the elements reflect any later changes to this range set. The range set must not be
+     * modified while iterating this view.
+     *
+     * @return the collection of range elements.
+     */
+    public Collection<RangeElement> elementsView() {
+        return Collections.unmodifiableCollection(eles.values());
+    }
+
     /**
      * Removes all elements that meet a specified condition
      *
@@ -181,20 +296,38 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      */
     public boolean removeIf(Predicate<T> test) {
         boolean removed = false;
-        Iterator<RangeElement> itr = eles.iterator();
+        Iterator<RangeElement> itr = eles.values().iterator();
         RangeElement prev = null;
+        Set<T> lastItems = null;
+        Set<T> lastFiltered = null;
         while (itr.hasNext()) {
             RangeElement ele = itr.next();
-            removed |= ele.items.removeIf(test);
+
+            //Elements split apart share their item sets, so only filter each set once.
+            if (ele.items != lastItems) {
+                lastItems = ele.items;
+                lastFiltered = lastItems;
+                for (T item : lastItems) {
+                    if (test.test(item)) {
+                        HashSet<T> filtered = new HashSet<>(lastItems);
+                        filtered.removeIf(test);
+                        lastFiltered = freeze(filtered);
+                        break;
+                    }
+                }
+            }
+            if (lastFiltered != ele.items) {
+                removed = true;
+                ele.items = lastFiltered;
+            }
+
             if (ele.items.isEmpty()) {
                 itr.remove();
+            } else if (prev != null && prev.to == ele.from && sameItems(prev, ele)) {
+                prev.to = ele.to;
+                itr.remove();
             } else {
-                if (prev != null && prev.to == ele.from && prev.items.equals(ele.items)) {
-                    prev.to = ele.to;
-                    itr.remove();
-                } else {
-                    prev = ele;
-                }
+                prev = ele;
             }
         }
         return removed;
@@ -208,24 +341,7 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
      * @return true if this range list has changed as a result of this removal.
      */
     public boolean remove(T item) {
-        boolean removed = false;
-        Iterator<RangeElement> itr = eles.iterator();
-        RangeElement prev = null;
-        while (itr.hasNext()) {
-            RangeElement ele = itr.next();
-            removed |= ele.items.remove(item);
-            if (ele.items.isEmpty()) {
-                itr.remove();
-            } else {
-                if (prev != null && prev.to == ele.from && prev.items.equals(ele.items)) {
-                    prev.to = ele.to;
-                    itr.remove();
-                } else {
-                    prev = ele;
-                }
-            }
-        }
-        return removed;
+        return removeIf(e -> Objects.equals(e, item));
     }
 
     /**
@@ -238,21 +354,10 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
         if (eles.isEmpty()) {
             return;
         }
-        while (eles.get(0).to <= from)
-            eles.remove(0);
-        if (eles.isEmpty()) {
-            return;
-        }
-        if (eles.get(0).from < from) {
-            eles.get(0).from = from;
-        }
-
-        int i = eles.size() - 1;
-        while (i >= 0 && eles.get(i).from >= to)
-            eles.remove(i--);
-        if (!eles.isEmpty() && eles.get(i).to > to) {
-            eles.get(i).to = to;
-        }
+        split(from);
+        split(to);
+        eles.headMap(from).clear();
+        eles.tailMap(to, true).clear();
     }
 
     /**
@@ -284,7 +389,7 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
     @Override
     public Iterator<RangeElement> iterator() {
         List<RangeElement> list = new ArrayList<>();
-        for (RangeElement ele : eles) {
+        for (RangeElement ele : eles.values()) {
             RangeElement copy = ele.copy();
             list.add(copy);
         }
@@ -295,7 +400,7 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
     @Override
     public Spliterator<RangeElement> spliterator() {
         List<RangeElement> list = new ArrayList<>();
-        for (RangeElement ele : eles) {
+        for (RangeElement ele : eles.values()) {
             RangeElement copy = ele.copy();
             list.add(copy);
         }
@@ -304,128 +409,88 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement> {
 
     @Override
     public String toString() {
-        return eles.toString();
+        return eles.values().toString();
     }
 
     /**
-     * Consolidates all contiguous ranges that contain the same elements.
+     * Finds the range element containing a position.
+     *
+     * @param pos the position to look at
+     * @return the range element, or null if no element contains this position.
      */
-    private void consolidate() {
-        RangeElement last = null;
-        ArrayList<RangeElement> tmp = new ArrayList<>();
-        for (RangeElement e : eles) {
-            if (last == null) {
-                tmp.add(e);
-            } else if (last.to >= e.from && last.items.equals(e.items)) {
-                last.to = e.to;
-                e = last;
-            } else {
-                tmp.add(e);
-            }
-            last = e;
+    private RangeElement elementAt(int pos) {
+        Map.Entry<Integer, RangeElement> ent = eles.floorEntry(pos);
+        if (ent == null || ent.getValue().to <= pos) {
+            return null;
         }
-        eles.clear();
-        eles.addAll(tmp);
+        return ent.getValue();
     }
 
     /**
-     * Merges a range element with the specified range element. This will insert/remove the existing range elements as
-     * needed to make room for this range.
+     * Splits the range element containing a position, so that an element starts at that position. Both halves share
+     * the same item set. This does nothing if no element contains the position, or if an element already starts at
+     * that position.
      *
-     * @param ind    the index of the range to merge with.
-     * @param insert the range element to perform merge with.
-     * @return the next index to check merge with after the needed inserts.
+     * @param pos the position to split at.
      */
-    private int mergeRange(int ind, RangeElement insert) {
-        if (insert.from == insert.to) {
-            return ind;
+    private void split(int pos) {
+        RangeElement ele = elementAt(pos);
+        if (ele != null && ele.from < pos) {
+            eles.put(pos, new RangeElement(pos, ele.to, ele.items));
+            ele.to = pos;
         }
+    }
 
-        RangeElement merged = eles.get(ind);
-        if (merged.items.containsAll(insert.items)) {
-            //No need to merge.
-            insert.from = Math.min(insert.to, Math.max(insert.from, merged.to));
-            return ind + 1;
+    /**
+     * Consolidates all contiguous ranges that contain the same elements, in the vicinity of a modified range.
+     *
+     * @param from the starting point of the modified range.
+     * @param to   the ending point of the modified range.
+     */
+    private void consolidate(int from, int to) {
+        Map.Entry<Integer, RangeElement> ent = eles.lowerEntry(from);
+        if (ent == null) {
+            ent = eles.ceilingEntry(from);
         }
 
-        if (merged.from < insert.from) {
-            if (merged.to <= insert.from) {
-                return ind + 1; //averted merge.
+        RangeElement last = null;
+        while (ent != null && ent.getKey() <= to) {
+            RangeElement e = ent.getValue();
+            if (last != null && last.to == e.from && sameItems(last, e)) {
+                last.to = e.to;
+                eles.remove(e.from);
+            } else {
+                last = e;
             }
-            eles.add(ind++, new RangeElement(merged.from, insert.from, merged.items));
-            merged.from = insert.from;
-        }
-        //assert merged.from == insert.from
-        if (insert.to < merged.to) {
-            eles.add(++ind, new RangeElement(insert.to, merged.to, merged.items));
+            ent = eles.higherEntry(e.from);
         }
-        insert.from = merged.to = Math.min(merged.to, insert.to);
-        merged.items.addAll(insert.items);
-        return ind + 1;
     }
 
     /**
-     * Combines the specified range element. This differs from {@link #mergeRange(int, RangeElement)} because this
-     * function assumes that the low end of this range element DOES NOT intersect with any existing ranges. This will
-     * combine until it detects a range element that it will clobber.
+     * Checks whether two range elements contain the same items.
      *
-     * @param ind    the index of the nearest range that might intersect this range. This can be a number >= size if
-     *               there are no ranges to check.
-     * @param insert the range element to perform combination with.
-     * @return the index of the range element to detect possible merging with, after any inserts.
+     * @param a the first range element
+     * @param b the second range element
+     * @return true if they have the same items, false otherwise.
      */
-    private int combineRange(int ind, RangeElement insert) {
-        if (insert.from == insert.to) {
-            return ind;
-        }
-
-        if (ind >= eles.size()) {
-            eles.add(new RangeElement(insert.from, insert.to, insert.items));
-            return ind;
+    private boolean sameItems(RangeElement a, RangeElement b) {
+        if (a.items == b.items) {
+            return true;
         }
-
-        RangeElement evade = eles.get(ind);
-        if (evade.from == insert.from) {
-            return ind;
+        if (!a.items.equals(b.items)) {
+            return false;
         }
-
-        //assert evade.from > insert.from
-        int combineTo = Math.min(evade.from, insert.to);
-        eles.add(ind++, new RangeElement(insert.from, combineTo, insert.items));
-        insert.from = combineTo;
-        return ind;
+        b.items = a.items;
+        return true;
     }
 
     /**
-     * Locates the index of the highest range element that is under this number point. This is implemented by a
-     * modified binary search. If this point is lower than the lowest range element, this will return -1.
+     * Freezes a set of items so that it can be shared among range elements.
      *
-     * @param point the number to search
-     * @return the index referring to the matched range element.
+     * @param items the set of items, which must not be modified afterwards.
+     * @return an unmodifiable view of the set.
      */
-    private int binarySearch(int point) {
-        if (eles.isEmpty()) {
-            return -1;
-        }
-
-        int low = 0;
-        int high = eles.size() - 1;
-
-        while (low < high) {
-            int mid = (low + high) / 2;
-            int cmp = point - eles.get(mid).from;
-            if (cmp > 0) {
-                low = mid + 1;
-            } else if (cmp < 0) {
-                high = mid - 1;
-            } else { //if (cmp == 0)
-                return mid;
-            }
-        }
-
-        if (high < 0) {
-            return -1;
-        }
-        return point >= eles.get(high).from ? high : high - 1;
+    private static <T> Set<T> freeze(Set<T> items) {
+        return Collections.unmodifiableSet(items);
     }
 }
@@ -0,0 +1,349 @@
+package com.theKidOfArcrania.mips.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents a list that is backed by a balanced (AVL) binary tree, where the index of each element is implicitly
+ * defined by the sizes of the subtrees before it. Unlike an array list, inserting or removing an element anywhere in
+ * the list takes O(log n) time, at the cost of random access also taking O(log n) time. Iterating over the list
+ * still takes constant amortized time per element.
+ * <p>
+ * Note that this is NOT synchronization safe.
+ *
+ * @param <E> the type of the elements
+ * @author Henry Wang
+ */
+public class TreeList<E> extends AbstractList<E> {
+    /**
+     * Represents a single node in the tree, holding one element.
+     *
+     * @param <E> the type of the element
+     */
+    private static final class Node<E> {
+        private E value;
+        private Node<E> left;
+        private Node<E> right;
+        private int size;
+        private int height;
+
+        /**
+         * Constructs a leaf node.
+         *
+         * @param value the element to hold.
+         */
+        private Node(E value) {
+            this.value = value;
+            this.size = 1;
+            this.height = 1;
+        }
+    }
+
+    private Node<E> root;
+
+    /**
+     * Constructs an empty tree list.
+     */
+    public TreeList() {
+        root = null;
+    }
+
+    /**
+     * Constructs a tree list holding all the elements of a collection, in the order the collection iterates them.
+     * This takes linear time.
+     *
+     * @param items the elements to add.
+     */
+    @SuppressWarnings("unchecked")
+    public TreeList(Collection<? extends E> items) {
+        root = build((E[]) items.toArray(), 0, items.size());
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        return node(index).value;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        Node<E> n = node(index);
+        E old = n.value;
+        n.value = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        root = insert(root, index, element);
+        modCount++;
+    }
+
+    /**
+     * Appends all the elements of a collection. If this list is empty (i.e. when loading a list in bulk), the tree is
+     * built directly from the collection in linear time.
+     *
+     * @param c the elements to add.
+     * @return true if this list changed as a result of this call.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addAll(Collection<? extends E> c) {
+        if (root != null) {
+            return super.addAll(c);
+        }
+        root = build((E[]) c.toArray(), 0, c.size());
+        modCount++;
+        return root != null;
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = node(index).value;
+        root = delete(root, index);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Obtains an iterator over the elements starting from a particular index. Finding the first element takes
+     * O(log n) time, and each element after that takes constant amortized time.
+     *
+     * @param index the index of the first element to iterate.
+     * @return the iterator
+     * @throws IndexOutOfBoundsException if the index is not within <tt>[0, size()]</tt>
+     */
+    public Iterator<E> iterator(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        ArrayDeque<Node<E>> path = new ArrayDeque<>();
+        Node<E> n = root;
+        while (n != null) {
+            int leftSize = size(n.left);
+            if (index <= leftSize) {
+                path.push(n);
+                if (index == leftSize) {
+                    break;
+                }
+                n = n.left;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+
+        return new Iterator<E>() {
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Node<E> next = path.pop();
+                for (Node<E> n = next.right; n != null; n = n.left) {
+                    path.push(n);
+                }
+                return next.value;
+            }
+        };
+    }
+
+    /**
+     * Finds the node at a particular index.
+     *
+     * @param index the index of the node
+     * @return the node
+     * @throws IndexOutOfBoundsException if the index is not within <tt>[0, size())</tt>
+     */
+    private Node<E> node(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<E> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Builds a perfectly balanced subtree from a range of elements.
+     *
+     * @param items the array of elements
+     * @param from  the starting index (inclusive)
+     * @param to    the ending index (exclusive)
+     * @return the root of the subtree, or null if the range is empty.
+     */
+    private static <E> Node<E> build(E[] items, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+
+        int mid = (from + to) >>> 1;
+        Node<E> n = new Node<>(items[mid]);
+        n.left = build(items, from, mid);
+        n.right = build(items, mid + 1, to);
+        return update(n);
+    }
+
+    /**
+     * Inserts an element into a subtree.
+     *
+     * @param n       the root of the subtree
+     * @param index   the index within the subtree to insert at
+     * @param element the element to insert
+     * @return the new root of the subtree.
+     */
+    private static <E> Node<E> insert(Node<E> n, int index, E element) {
+        if (n == null) {
+            return new Node<>(element);
+        }
+
+        int leftSize = size(n.left);
+        if (index <= leftSize) {
+            n.left = insert(n.left, index, element);
+        } else {
+            n.right = insert(n.right, index - leftSize - 1, element);
+        }
+        return balance(n);
+    }
+
+    /**
+     * Deletes an element from a subtree.
+     *
+     * @param n     the root of the subtree
+     * @param index the index within the subtree of the element to delete.
+     * @return the new root of the subtree.
+     */
+    private static <E> Node<E> delete(Node<E> n, int index) {
+        int leftSize = size(n.left);
+        if (index < leftSize) {
+            n.left = delete(n.left, index);
+        } else if (index > leftSize) {
+            n.right = delete(n.right, index - leftSize - 1);
+        } else if (n.left == null) {
+            return n.right;
+        } else if (n.right == null) {
+            return n.left;
+        } else {
+            //Replace this node with the first node of the right subtree.
+            Node<E> first = n.right;
+            while (first.left != null) {
+                first = first.left;
+            }
+            n.value = first.value;
+            n.right = delete(n.right, 0);
+        }
+        return balance(n);
+    }
+
+    /**
+     * Rebalances a node whose subtrees differ in height by at most two.
+     *
+     * @param n the node to rebalance
+     * @return the new root of the subtree.
+     */
+    private static <E> Node<E> balance(Node<E> n) {
+        int diff = height(n.left) - height(n.right);
+        if (diff > 1) {
+            if (height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        } else if (diff < -1) {
+            if (height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+        return update(n);
+    }
+
+    /**
+     * Rotates a subtree to the left, so that its right child becomes the root.
+     *
+     * @param n the root of the subtree
+     * @return the new root of the subtree.
+     */
+    private static <E> Node<E> rotateLeft(Node<E> n) {
+        Node<E> r = n.right;
+        n.right = r.left;
+        r.left = update(n);
+        return update(r);
+    }
+
+    /**
+     * Rotates a subtree to the right, so that its left child becomes the root.
+     *
+     * @param n the root of the subtree
+     * @return the new root of the subtree.
+     */
+    private static <E> Node<E> rotateRight(Node<E> n) {
+        Node<E> l = n.left;
+        n.left = l.right;
+        l.right = update(n);
+        return update(l);
+    }
+
+    /**
+     * Recomputes the size and height of a node from its children.
+     *
+     * @param n the node to update
+     * @return the same node
+     */
+    private static <E> Node<E> update(Node<E> n) {
+        n.size = size(n.left) + size(n.right) + 1;
+        n.height = Math.max(height(n.left), height(n.right)) + 1;
+        return n;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static int height(Node<?> n) {
+        return n == null ? 0 : n.height;
+    }
+}
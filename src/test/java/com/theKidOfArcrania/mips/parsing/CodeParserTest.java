@@ -0,0 +1,254 @@
+package com.theKidOfArcrania.mips.parsing;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.highlight.Highlighter;
+import com.theKidOfArcrania.mips.highlight.Syntax;
+import com.theKidOfArcrania.mips.highlight.Tag;
+import com.theKidOfArcrania.mips.runner.Interpreter;
+import com.theKidOfArcrania.mips.runner.ProgramException;
+import com.theKidOfArcrania.mips.runner.ProgramImage;
+import com.theKidOfArcrania.mips.runner.RunResult;
+import com.theKidOfArcrania.mips.runner.StreamSyscallIO;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class CodeParserTest implements Constants {
+
+    private static final String SUM_PROGRAM = String.join("\n",
+            ".data",
+            "msg:",
+            ".asciiz \"sum=\"",
+            "vals:",
+            ".word 3, 4, 5",
+            ".text",
+            "main:",
+            "la $a0, msg",
+            "li $v0, 4",
+            "syscall",
+            "la $t0, vals",
+            "li $t1, 3",
+            "clear $a0",
+            "loop:",
+            "lw $t2, 0($t0)",
+            "addu $a0, $a0, $t2",
+            "addiu $t0, $t0, 4",
+            "addiu $t1, $t1, -1",
+            "bgtz $t1, loop",
+            "nop",
+            "li $v0, 1",
+            "syscall",
+            "li $v0, 10",
+            "syscall");
+
+    private static ProgramImage assemble(String code) {
+        CodeParser parser = new CodeParser(code, null);
+        assertTrue(parser.reparse(false));
+        assertTrue(parser.resolveSymbols());
+        return parser.assemble();
+    }
+
+    @Test
+    public void dataLayout() {
+        ProgramImage image = assemble(SUM_PROGRAM);
+        assertArrayEquals(new byte[] {'s', 'u', 'm', '=', 0, 0, 0, 0, 3, 0, 0, 0, 4, 0, 0, 0, 5, 0, 0, 0},
+                image.getSegment(SEG_DATA));
+        //Each li and la expands into two instructions.
+        assertEquals(22 * INST_SIZE, image.getSegmentSize(SEG_TEXT));
+    }
+
+    @Test
+    public void assembleAndRun() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Interpreter interp = new Interpreter(new StreamSyscallIO(new ByteArrayInputStream(new byte[0]), out));
+        assemble(SUM_PROGRAM).load(interp);
+
+        assertEquals(RunResult.StopReason.EXIT, interp.run(1000).getReason());
+        assertEquals("sum=12" + System.lineSeparator(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void loadGlobalData() throws Exception {
+        Interpreter interp = new Interpreter();
+        new ProgramImage(new byte[][] {{}, {}, {1, 2}, {}, {}}).load(interp);
+        assertEquals(0x0201, interp.getState().getShort(ADDR_GLOBL));
+    }
+
+    @Test(expected = ProgramException.class)
+    public void loadKernelData() throws Exception {
+        new ProgramImage(new byte[][] {{}, {}, {}, {}, {1}}).load(new Interpreter());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void assembleUnresolved() {
+        new CodeParser(".text\nj nowhere\n", null).assemble();
+    }
+
+    private static class TagRecorder implements Highlighter {
+        private final List<Tag> tags = new ArrayList<>();
+        private final List<Syntax> syntaxes = new ArrayList<>();
+
+        @Override
+        public void insertTag(Tag tag) {
+            tags.add(tag);
+        }
+
+        @Override
+        public void insertSyntax(Syntax syn) {
+            syntaxes.add(syn);
+        }
+
+        List<Tag> sorted() {
+            List<Tag> sorted = new ArrayList<>(tags);
+            sorted.sort(Comparator.comparing(Tag::toString));
+            return sorted;
+        }
+    }
+
+    private static String longProgram() {
+        StringBuilder code = new StringBuilder(".text\n");
+        for (int i = 0; i < 400; i++) {
+            if (i % 50 == 0) {
+                code.append("l").append(i / 50).append(":\n");
+            }
+            if (i % 20 == 0) {
+                code.append("beq $zero, $zero, l").append((i / 20) % 8).append("\n");
+            } else if (i == 333) {
+                code.append("j missing\n");
+            } else {
+                code.append("addiu $t0, $t0, 1\n");
+            }
+        }
+        return code.toString();
+    }
+
+    private static void assertSameAsFresh(CodeParser parser, TagRecorder recorder) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 1; i <= parser.getLineCount(); i++) {
+            code.append(parser.getLine(i)).append('\n');
+        }
+        TagRecorder freshRecorder = new TagRecorder();
+        CodeParser fresh = new CodeParser(code.toString(), freshRecorder);
+        assertTrue(fresh.reparse(false));
+
+        assertTrue(parser.reparse(false));
+        recorder.tags.clear();
+        freshRecorder.tags.clear();
+        assertEquals(fresh.resolveSymbols(), parser.resolveSymbols());
+        assertEquals(freshRecorder.sorted(), recorder.sorted());
+        if (fresh.resolveSymbols()) {
+            assertArrayEquals(fresh.assemble().getSegment(SEG_TEXT), parser.assemble().getSegment(SEG_TEXT));
+        }
+    }
+
+    @Test
+    public void incrementalResolve() {
+        TagRecorder recorder = new TagRecorder();
+        CodeParser parser = new CodeParser(longProgram(), recorder);
+        assertSameAsFresh(parser, recorder);
+
+        //Shift the later labels forwards and backwards.
+        parser.insertLine(300, "addiu $t1, $t1, 2");
+        assertSameAsFresh(parser, recorder);
+        parser.deleteLine(10);
+        assertSameAsFresh(parser, recorder);
+
+        //Fix the unresolved symbol, then break it again by removing its label.
+        parser.insertLine(405, "missing:");
+        assertSameAsFresh(parser, recorder);
+        parser.modifyLine(405, "");
+        assertSameAsFresh(parser, recorder);
+
+        //No change at all.
+        assertSameAsFresh(parser, recorder);
+    }
+
+    @Test
+    public void parallelReparse() throws Exception {
+        String[] lines = longProgram().split("\n");
+        TagRecorder seqRecorder = new TagRecorder();
+        TagRecorder parRecorder = new TagRecorder();
+        CodeParser seq = new CodeParser("", seqRecorder);
+        CodeParser par = new CodeParser("", parRecorder);
+        for (int copy = 0; copy < 4; copy++) {
+            for (String line : lines) {
+                if (copy > 0 && line.endsWith(":")) {
+                    line = "c" + copy + line;
+                }
+                seq.insertLine(seq.getLineCount(), line);
+                par.insertLine(par.getLineCount(), line);
+            }
+            seq.insertLine(seq.getLineCount(), "bogus $t0, 1");
+            par.insertLine(par.getLineCount(), "bogus $t0, 1");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            seqRecorder.tags.clear();
+            seqRecorder.syntaxes.clear();
+            parRecorder.tags.clear();
+            parRecorder.syntaxes.clear();
+            assertFalse(seq.reparse(false, null, null));
+            assertFalse(par.reparse(false, null, pool));
+
+            //Highlights are merged back in line order.
+            assertEquals(seqRecorder.tags, parRecorder.tags);
+            assertEquals(seqRecorder.syntaxes, parRecorder.syntaxes);
+            for (int i = 1; i <= seq.getLineCount(); i++) {
+                assertEquals(seq.isLineDirty(i), par.isLineDirty(i));
+                assertEquals(seq.isLineMalformed(i), par.isLineMalformed(i));
+            }
+
+            //Fix the bad lines, so that messages emitted by statements parsed in parallel reach the parser.
+            for (int i = 1; i <= par.getLineCount(); i++) {
+                if (par.isLineMalformed(i)) {
+                    seq.modifyLine(i, "nop");
+                    par.modifyLine(i, "nop");
+                }
+            }
+            assertTrue(seq.reparse(false, null, null));
+            assertTrue(par.reparse(false, null, pool));
+            seqRecorder.tags.clear();
+            parRecorder.tags.clear();
+            assertFalse(seq.resolveSymbols());
+            assertFalse(par.resolveSymbols());
+            assertEquals(seqRecorder.sorted(), parRecorder.sorted());
+            assertTrue(parRecorder.tags.size() > 0);
+
+            //A cancelled reparse leaves the remaining lines dirty.
+            for (int i = 1; i <= par.getLineCount(); i++) {
+                par.modifyLine(i, par.getLine(i));
+            }
+            assertFalse(par.reparse(false, new AtomicBoolean(true), pool));
+            assertTrue(par.isLineDirty(1));
+            assertTrue(par.reparse(false, null, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void loadCode() throws Exception {
+        TagRecorder recorder = new TagRecorder();
+        CodeParser parser = new CodeParser("nop", recorder);
+        parser.loadCode(SUM_PROGRAM.replace("\n", "\r\n") + "\n\n");
+        assertEquals(SUM_PROGRAM.split("\n").length + 2, parser.getLineCount());
+        assertEquals("", parser.getLine(parser.getLineCount()));
+        for (int i = 1; i <= parser.getLineCount(); i++) {
+            assertTrue(parser.isLineDirty(i));
+        }
+        assertSameAsFresh(parser, recorder);
+    }
+}
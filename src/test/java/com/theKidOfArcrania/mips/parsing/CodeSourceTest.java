@@ -0,0 +1,79 @@
+package com.theKidOfArcrania.mips.parsing;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class CodeSourceTest {
+
+    private static void checkLines(String code, CodeSource source, boolean lazy) {
+        String[] expected = code.split("\r?\n");
+        if (lazy && expected.length > 0) {
+            //Read some lines before all the lines are found.
+            assertEquals(expected[0], source.getLine(1));
+            assertEquals(expected[expected.length / 2], source.getLine(expected.length / 2 + 1));
+        }
+        assertEquals(expected.length, source.getLineCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], source.getLine(i + 1));
+        }
+    }
+
+    @Test
+    public void splitLines() throws Exception {
+        Random rng = new Random(1);
+        char[] alphabet = {'a', 'b', ' ', '\r', '\n', '\n', '\u00e9'};
+        for (int i = 0; i < 500; i++) {
+            StringBuilder code = new StringBuilder();
+            int len = rng.nextInt(40);
+            for (int j = 0; j < len; j++) {
+                code.append(alphabet[rng.nextInt(alphabet.length)]);
+            }
+            String str = code.toString();
+            boolean lazy = rng.nextBoolean();
+            checkLines(str, new CodeSource(str), lazy);
+            checkLines(str, new CodeSource(ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8)),
+                    StandardCharsets.UTF_8), lazy);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wideCharset() throws Exception {
+        new CodeSource(ByteBuffer.allocate(0), StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void mappedFile() throws Exception {
+        String code = String.join("\r\n", ".data", "msg:", ".asciiz \"h\u00e9\"", ".text", "main:",
+                "la $a0, msg", "li $v0, 4", "syscall", "");
+        Path file = Files.createTempFile("mapped", ".s");
+        try {
+            Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+            CodeParser mapped = new CodeParser(CodeSource.map(file, StandardCharsets.UTF_8), null);
+            CodeParser parsed = new CodeParser(code, null);
+            assertEquals(parsed.getLineCount(), mapped.getLineCount());
+            assertTrue(mapped.reparse(false));
+            assertTrue(parsed.reparse(false));
+            assertTrue(mapped.resolveSymbols());
+            assertTrue(parsed.resolveSymbols());
+            assertArrayEquals(parsed.assemble().getSegment(0), mapped.assemble().getSegment(0));
+            assertArrayEquals(parsed.assemble().getSegment(1), mapped.assemble().getSegment(1));
+
+            //Modifying the code copies the lines out of the source.
+            mapped.insertLine(6, "nop");
+            assertEquals("nop", mapped.getLine(6));
+            assertEquals("la $a0, msg", mapped.getLine(7));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -77,6 +77,21 @@ public class CodeTokenReaderTest {
         assertEquals(4, reader.getTokenEndIndex());
     }
 
+    @Test
+    public void testNameTokenValues() throws Exception {
+        CodeTokenReader reader = initReader("loop: .word foo");
+        reader.nextToken();
+        assertEquals(TokenType.LABEL, reader.getTokenType());
+        assertEquals("loop", reader.getTokenValue());
+        reader.nextToken();
+        assertEquals(TokenType.DIRECTIVE, reader.getTokenType());
+        assertEquals("word", reader.getTokenValue());
+        reader.nextToken();
+        assertEquals(TokenType.IDENTIFIER, reader.getTokenType());
+        assertEquals("foo", reader.getTokenValue());
+        assertEquals("foo", reader.getToken());
+    }
+
     @Test
     public void testNextArgument() throws Exception {
         CodeTokenReader reader = initReader("A, BB, C, D #comment here");
@@ -152,4 +167,27 @@ public class CodeTokenReaderTest {
             assertEquals(tokens.get(ind), reader.getToken());
         }
     }
+
+    @Test
+    public void testTokenValues() throws Exception {
+        CodeTokenReader reader = initReader("lbl: .word $t1 $31 -12 0x1F 2147483648 -4($sp) 0($8) 4($t) \"a\\x41\" id");
+        Object[][] expected = {{TokenType.LABEL, "lbl"}, {TokenType.DIRECTIVE, "word"}, {TokenType.REGISTER, 9},
+                {TokenType.REGISTER, 31}, {TokenType.DECIMAL, -12}, {TokenType.HEXADECIMAL, 31},
+                {TokenType.DECIMAL, null}, {TokenType.INDIRECT, "-4/29"}, {TokenType.INDIRECT, "0/8"},
+                {TokenType.INDIRECT, null}, {TokenType.STRING, "aA"}, {TokenType.IDENTIFIER, "id"}};
+
+        for (Object[] exp : expected) {
+            reader.nextToken();
+            assertEquals(exp[0], reader.getTokenType());
+            Object val = reader.getTokenValue();
+            if (val instanceof RegIndirect) {
+                RegIndirect ind = (RegIndirect) val;
+                val = ind.getOffset() + "/" + ind.getRegInd();
+            }
+            assertEquals(exp[1], val);
+        }
+
+        reader.visitToken(7);
+        assertEquals("-4($sp)", reader.getToken());
+    }
 }
@@ -0,0 +1,136 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import com.theKidOfArcrania.mips.runner.BatchResult.Status;
+import com.theKidOfArcrania.mips.runner.ProgramException.ErrorType;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class BatchRunnerTest implements Constants, Registers {
+
+    private static final int REG_S0 = 16;
+    private static final int SYSCALL = 0x0c;
+
+    private static int rType(int funct, int rs, int rt, int rd, int shamt) {
+        return rs << 21 | rt << 16 | rd << 11 | shamt << 6 | funct;
+    }
+
+    private static int iType(int opcode, int rs, int rt, int imm) {
+        return opcode << 26 | rs << 21 | rt << 16 | (imm & 0xFFFF);
+    }
+
+    private static ProgramLoader program(int... words) {
+        byte[] data = new byte[words.length * INST_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (words[i / INST_SIZE] >> (i % INST_SIZE * Byte.SIZE));
+        }
+        return interp -> interp.appendText(data);
+    }
+
+    private static BatchRunner.Job printer(int val) {
+        return new BatchRunner.Job("print" + val, program(
+                iType(0x09, REG_ZERO, REG_A0, val), //addiu $a0, $zero, val
+                iType(0x09, REG_ZERO, REG_V0, 1), //addiu $v0, $zero, 1
+                SYSCALL,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL), new byte[0]);
+    }
+
+    private static BatchRunner.Job spinner() {
+        return new BatchRunner.Job("spin", program(
+                iType(0x04, REG_ZERO, REG_ZERO, -1), //loop: beq $zero, $zero, loop
+                0), new byte[0]);
+    }
+
+    @Test
+    public void isolatedPrograms() throws Exception {
+        List<BatchRunner.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            jobs.add(printer(i));
+        }
+        jobs.add(spinner());
+        jobs.add(new BatchRunner.Job("bad", interp -> {
+            throw new ProgramException(ErrorType.ADDRS);
+        }, new byte[0]));
+        jobs.add(new BatchRunner.Job("echo", program(
+                iType(0x09, REG_ZERO, REG_V0, 12), //addiu $v0, $zero, 12
+                SYSCALL,
+                rType(0x21, REG_V0, REG_ZERO, REG_A0, 0), //addu $a0, $v0, $zero
+                iType(0x09, REG_ZERO, REG_V0, 11), //addiu $v0, $zero, 11
+                SYSCALL,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL), "x".getBytes(StandardCharsets.UTF_8)));
+
+        BatchReport report;
+        try (BatchRunner runner = new BatchRunner(4, 10000, 1, TimeUnit.MINUTES)) {
+            report = runner.runAll(jobs);
+        }
+
+        assertEquals(jobs.size(), report.getResults().size());
+        for (int i = 0; i < 20; i++) {
+            BatchResult result = report.getResults().get(i);
+            assertEquals("print" + i, result.getName());
+            assertEquals(Status.EXITED, result.getStatus());
+            assertEquals(i + System.lineSeparator(), result.getOutput());
+        }
+        assertEquals(Status.STEP_LIMIT, report.getResults().get(20).getStatus());
+        assertEquals(10000, report.getResults().get(20).getInstructions());
+        assertEquals(Status.LOAD_FAILED, report.getResults().get(21).getStatus());
+        assertEquals("x", report.getResults().get(22).getOutput());
+
+        assertEquals(21, report.getCount(Status.EXITED));
+        assertEquals(1, report.getCount(Status.STEP_LIMIT));
+        assertEquals(0, report.getCount(Status.TRAPPED));
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        try (BatchRunner runner = new BatchRunner(1, Long.MAX_VALUE, 10, TimeUnit.MILLISECONDS)) {
+            assertEquals(Status.TIMEOUT, runner.run(spinner()).getStatus());
+        }
+    }
+
+    @Test
+    public void snapshotJobs() throws Exception {
+        //Prints the initial data word, then stores the input character there and prints it back.
+        Interpreter loaded = new Interpreter();
+        program(
+                iType(0x0f, REG_ZERO, REG_S0, ADDR_DATA >>> 16), //lui $s0, 0x1001
+                iType(0x23, REG_S0, REG_A0, 0), //lw $a0, 0($s0)
+                iType(0x09, REG_ZERO, REG_V0, 11), //addiu $v0, $zero, 11
+                SYSCALL,
+                iType(0x09, REG_ZERO, REG_V0, 12), //addiu $v0, $zero, 12
+                SYSCALL,
+                iType(0x2b, REG_S0, REG_V0, 0), //sw $v0, 0($s0)
+                iType(0x23, REG_S0, REG_A0, 0), //lw $a0, 0($s0)
+                iType(0x09, REG_ZERO, REG_V0, 11), //addiu $v0, $zero, 11
+                SYSCALL,
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                SYSCALL).load(loaded);
+        loaded.appendData(new byte[]{'>', 0, 0, 0});
+        Interpreter.Snapshot snapshot = loaded.snapshot();
+
+        List<BatchRunner.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 26; i++) {
+            jobs.add(new BatchRunner.Job("echo" + i, snapshot, new byte[]{(byte) ('a' + i)}));
+        }
+
+        BatchReport report;
+        try (BatchRunner runner = new BatchRunner(4, 10000, 1, TimeUnit.MINUTES)) {
+            report = runner.runAll(jobs);
+        }
+        for (int i = 0; i < 26; i++) {
+            BatchResult result = report.getResults().get(i);
+            assertEquals(Status.EXITED, result.getStatus());
+            assertEquals(">" + (char) ('a' + i), result.getOutput());
+        }
+        assertEquals('>', loaded.getState().getInt(ADDR_DATA));
+    }
+}
@@ -0,0 +1,545 @@
+package com.theKidOfArcrania.mips.runner;
+
+import com.theKidOfArcrania.mips.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class InterpreterTest implements Constants, Registers {
+
+    private static final int REG_V1 = 3;
+    private static final int REG_T0 = 8;
+    private static final int REG_T1 = 9;
+    private static final int REG_T2 = 10;
+    private static final int REG_T3 = 11;
+
+    private Interpreter interp;
+    private MemState state;
+
+    private static int rType(int funct, int rs, int rt, int rd, int shamt) {
+        return rs << 21 | rt << 16 | rd << 11 | shamt << 6 | funct;
+    }
+
+    private static int iType(int opcode, int rs, int rt, int imm) {
+        return opcode << 26 | rs << 21 | rt << 16 | (imm & 0xFFFF);
+    }
+
+    private static byte[] toBytes(int... words) {
+        byte[] data = new byte[words.length * INST_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (words[i / INST_SIZE] >> (i % INST_SIZE * Byte.SIZE));
+        }
+        return data;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        interp = new Interpreter();
+        state = interp.getState();
+    }
+
+    @Test
+    public void simpleAdd() throws Exception {
+        interp.appendText(toBytes(
+                iType(0x09, REG_ZERO, REG_T0, 5), //addiu $t0, $zero, 5
+                iType(0x09, REG_T0, REG_T1, -7), //addiu $t1, $t0, -7
+                rType(0x21, REG_T0, REG_T1, REG_V0, 0))); //addu $v0, $t0, $t1
+        interp.execute();
+        interp.execute();
+        interp.execute();
+
+        assertEquals(5, state.getRegister(REG_T0));
+        assertEquals(-2, state.getRegister(REG_T1));
+        assertEquals(3, state.getRegister(REG_V0));
+        assertEquals(ADDR_TEXT + 3 * INST_SIZE, state.pc());
+    }
+
+    @Test
+    public void branchDelaySlot() throws Exception {
+        interp.appendText(toBytes(
+                iType(0x04, REG_ZERO, REG_ZERO, 2), //beq $zero, $zero, +2
+                iType(0x09, REG_ZERO, REG_T0, 1), //addiu $t0, $zero, 1 (delay slot)
+                iType(0x09, REG_ZERO, REG_T1, 1), //addiu $t1, $zero, 1 (skipped)
+                iType(0x09, REG_ZERO, REG_V0, 1))); //addiu $v0, $zero, 1
+        interp.execute();
+        interp.execute();
+        interp.execute();
+
+        assertEquals(1, state.getRegister(REG_T0));
+        assertEquals(0, state.getRegister(REG_T1));
+        assertEquals(1, state.getRegister(REG_V0));
+    }
+
+    @Test
+    public void zeroRegister() throws Exception {
+        interp.appendText(toBytes(iType(0x09, REG_ZERO, REG_ZERO, 5))); //addiu $zero, $zero, 5
+        interp.execute();
+        assertEquals(0, state.getRegister(REG_ZERO));
+    }
+
+    @Test
+    public void selfModifyingCode() throws Exception {
+        interp.appendText(toBytes(iType(0x09, REG_ZERO, REG_T0, 5))); //addiu $t0, $zero, 5
+        interp.execute();
+        assertEquals(5, state.getRegister(REG_T0));
+
+        state.setInt(ADDR_TEXT, iType(0x09, REG_ZERO, REG_T0, 9)); //addiu $t0, $zero, 9
+        state.pc(ADDR_TEXT);
+        interp.execute();
+        assertEquals(9, state.getRegister(REG_T0));
+    }
+
+    @Test(expected = ProgramException.class)
+    public void reservedInstruction() throws Exception {
+        interp.appendText(toBytes(iType(0x3f, 0, 0, 0)));
+        interp.execute();
+    }
+
+    private static byte[] sumLoopProgram() {
+        return toBytes(
+                iType(0x09, REG_ZERO, REG_T0, 1000), //addiu $t0, $zero, 1000
+                iType(0x09, REG_ZERO, REG_T1, 0), //addiu $t1, $zero, 0
+                rType(0x21, REG_T1, REG_T0, REG_T1, 0), //loop: addu $t1, $t1, $t0
+                iType(0x09, REG_T0, REG_T0, -1), //addiu $t0, $t0, -1
+                iType(0x05, REG_T0, REG_ZERO, -3), //bne $t0, $zero, loop
+                0); //nop
+    }
+
+    private void sumLoop() throws Exception {
+        interp.appendText(sumLoopProgram());
+
+        RunResult result = interp.run(2 + 4 * 1000);
+        assertEquals(RunResult.StopReason.STEP_LIMIT, result.getReason());
+        assertEquals(2 + 4 * 1000, result.getInstructions());
+        assertEquals(ADDR_TEXT + 6 * INST_SIZE, state.pc());
+        assertEquals(500500, state.getRegister(REG_T1));
+        assertEquals(0, state.getRegister(REG_T0));
+    }
+
+    @Test
+    public void interpretedLoop() throws Exception {
+        sumLoop();
+    }
+
+    @Test
+    public void tieredLoop() throws Exception {
+        interp.setTiered(true);
+        sumLoop();
+    }
+
+    private void breakInLoop() throws Exception {
+        interp.appendText(sumLoopProgram());
+        interp.run(2 + 4 * 900);
+        interp.setBreakpoint(ADDR_TEXT + 3 * INST_SIZE, true);
+
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.BREAKPOINT, result.getReason());
+        assertEquals(1, result.getInstructions());
+        assertEquals(ADDR_TEXT + 3 * INST_SIZE, result.getPC());
+        assertEquals(100, state.getRegister(REG_T0));
+
+        //Resuming does not stop at the same breakpoint straight away.
+        result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.BREAKPOINT, result.getReason());
+        assertEquals(4, result.getInstructions());
+        assertEquals(99, state.getRegister(REG_T0));
+
+        interp.setBreakpoint(ADDR_TEXT + 3 * INST_SIZE, false);
+        result = interp.run(3 + 4 * 98);
+        assertEquals(RunResult.StopReason.STEP_LIMIT, result.getReason());
+        assertEquals(ADDR_TEXT + 6 * INST_SIZE, state.pc());
+        assertEquals(500500, state.getRegister(REG_T1));
+    }
+
+    @Test
+    public void interpretedBreakpoint() throws Exception {
+        breakInLoop();
+    }
+
+    @Test
+    public void tieredBreakpoint() throws Exception {
+        interp.setTiered(true);
+        breakInLoop();
+    }
+
+    @Test
+    public void fusedBreakpoint() throws Exception {
+        interp.appendText(pseudoProgram());
+        interp.setBreakpoint(ADDR_TEXT + INST_SIZE, true);
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.BREAKPOINT, result.getReason());
+        assertEquals(1, result.getInstructions());
+        assertEquals(0xFFFF0000, state.getRegister(REG_T0));
+    }
+
+    @Test
+    public void tieredWatchpoint() throws Exception {
+        interp.setTiered(true);
+        interp.appendText(toBytes(
+                iType(0x09, REG_ZERO, REG_T0, 100), //li $t0, 100
+                iType(0x0f, REG_ZERO, REG_T2, ADDR_DATA >>> 16), //lui $t2, 0x1001
+                iType(0x2b, REG_T2, REG_T1, 0), //loop: sw $t1, 0($t2)
+                iType(0x09, REG_T2, REG_T2, 4), //addiu $t2, $t2, 4
+                iType(0x09, REG_T1, REG_T1, 1), //addiu $t1, $t1, 1
+                iType(0x05, REG_T1, REG_T0, -4), //bne $t1, $t0, loop
+                0)); //nop
+        interp.run(2 + 5 * 80);
+        state.addWatchpoint(new Watchpoint(ADDR_DATA + 90 * 4, 4, false));
+
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.WATCHPOINT, result.getReason());
+        assertEquals(5 * 10 + 1, result.getInstructions());
+        assertEquals(ADDR_TEXT + 2 * INST_SIZE, result.getPC());
+        assertEquals(ADDR_TEXT + 3 * INST_SIZE, state.pc());
+        assertEquals(90, state.getInt(ADDR_DATA + 90 * 4));
+        assertEquals(0, state.getInt(ADDR_DATA + 91 * 4));
+    }
+
+    @Test
+    public void uncompiledInstruction() {
+        //lwl is left to the interpreter, so a block cannot start with it.
+        DecodedInst[] insts = {DecodedInst.decode(iType(0x22, REG_T2, REG_T3, 0)),
+                DecodedInst.decode(iType(0x09, REG_T2, REG_T2, 4))};
+        assertNull(new BlockCompiler().compile(ADDR_TEXT, insts));
+        assertEquals(1, new BlockCompiler().compile(ADDR_TEXT + INST_SIZE,
+                Arrays.copyOfRange(insts, 1, 2)).getLength());
+    }
+
+    @Test
+    public void fetchIgnoresWatchpoints() throws Exception {
+        interp.appendText(pseudoProgram());
+        state.addWatchpoint(new Watchpoint(ADDR_TEXT, 3 * INST_SIZE, true));
+        RunResult result = interp.run(3);
+        assertEquals(RunResult.StopReason.STEP_LIMIT, result.getReason());
+        assertNull(result.getWatchpoint());
+    }
+
+    @Test
+    public void tieredDelaySlotFault() throws Exception {
+        interp.setTiered(true);
+        interp.appendText(toBytes(
+                iType(0x0f, REG_ZERO, REG_T2, 0x1002), //lui $t2, 0x1002
+                iType(0x09, REG_T2, REG_T2, -800), //addiu $t2, $t2, -800
+                iType(0x09, REG_T2, REG_T2, 4), //loop: addiu $t2, $t2, 4
+                iType(0x05, REG_T2, REG_ZERO, -2), //bne $t2, $zero, loop
+                iType(0x23, REG_T2, REG_T3, -4))); //lw $t3, -4($t2) (delay slot)
+
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.TRAP, result.getReason());
+        assertEquals(ProgramException.ErrorType.ADDRL, result.getFault().getType());
+        assertEquals(2 + 3 * 200 + 2, result.getInstructions());
+        assertEquals(ADDR_TEXT + 4 * INST_SIZE, result.getPC());
+        assertEquals(ADDR_TEXT + 4 * INST_SIZE, state.pc());
+        assertEquals(ADDR_TEXT + 2 * INST_SIZE, state.nPC());
+        assertEquals(0x10020004, state.getRegister(REG_T2));
+    }
+
+    @Test
+    public void runUntilExit() throws Exception {
+        interp.appendText(toBytes(
+                iType(0x09, REG_ZERO, REG_T0, 7), //addiu $t0, $zero, 7
+                iType(0x09, REG_ZERO, REG_V0, 10), //addiu $v0, $zero, 10
+                rType(0x0c, 0, 0, 0, 0))); //syscall
+
+        RunResult result = interp.runUntil(s -> s.getRegister(REG_T0) == 7, 10);
+        assertEquals(RunResult.StopReason.CONDITION, result.getReason());
+        assertEquals(1, result.getInstructions());
+        assertEquals(ADDR_TEXT + INST_SIZE, result.getPC());
+
+        result = interp.run(10);
+        assertEquals(RunResult.StopReason.EXIT, result.getReason());
+        assertEquals(1, result.getInstructions());
+        assertEquals(ADDR_TEXT + 2 * INST_SIZE, result.getPC());
+    }
+
+    private static byte[] pseudoProgram() {
+        return toBytes(
+                iType(0x0f, REG_ZERO, REG_T0, 0xFFFF), //li $t0, -3
+                iType(0x0d, REG_T0, REG_T0, 0xFFFD),
+                iType(0x0f, REG_ZERO, REG_T1, 1), //li $t1, 0x10005
+                iType(0x0d, REG_T1, REG_T1, 5),
+                rType(0x18, REG_T0, REG_T0, 0, 0), //loop: mul $t2, $t0, $t0
+                rType(0x12, 0, 0, REG_T2, 0),
+                rType(0x1a, REG_T1, REG_T0, 0, 0), //rem $t3, $t1, $t0
+                rType(0x10, 0, 0, REG_T3, 0),
+                rType(0x21, REG_V1, REG_T3, REG_V1, 0), //addu $v1, $v1, $t3
+                iType(0x09, REG_T0, REG_T0, 1), //addiu $t0, $t0, 1
+                rType(0x2a, REG_T1, REG_T0, REG_AT, 0), //ble $t0, $t1, loop
+                iType(0x04, REG_AT, REG_ZERO, -8),
+                rType(0x2b, REG_T0, REG_T2, REG_AT, 0), //bgtu $t2, $t0, end (delay slot)
+                iType(0x05, REG_AT, REG_ZERO, 1),
+                0, //nop
+                iType(0x09, REG_ZERO, REG_V0, 10), //end: li $v0, 10
+                rType(0x0c, 0, 0, 0, 0)); //syscall
+    }
+
+    @Test
+    public void fusedPseudoInstructions() throws Exception {
+        interp.appendText(pseudoProgram());
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.TRAP, result.getReason());
+        assertEquals(ProgramException.ErrorType.ARIH, result.getFault().getType());
+
+        //Single-stepping never fuses instructions.
+        Interpreter stepped = new Interpreter();
+        stepped.appendText(pseudoProgram());
+        long count = 0;
+        try {
+            while (true) {
+                stepped.execute();
+                count++;
+            }
+        } catch (ProgramException e) {
+            assertEquals(ProgramException.ErrorType.ARIH, e.getType());
+        }
+
+        MemState expected = stepped.getState();
+        assertEquals(count, result.getInstructions());
+        assertEquals(ADDR_TEXT + 6 * INST_SIZE, state.pc());
+        assertEquals(expected.pc(), state.pc());
+        assertEquals(expected.nPC(), state.nPC());
+        assertEquals(expected.getHigh(), state.getHigh());
+        assertEquals(expected.getLow(), state.getLow());
+        for (int i = 0; i < 32; i++) {
+            assertEquals("Register " + i, expected.getRegister(i), state.getRegister(i));
+        }
+    }
+
+    @Test
+    public void fusedPairModified() throws Exception {
+        interp.appendText(toBytes(
+                iType(0x0f, REG_ZERO, REG_T0, 0x1234), //li $t0, 0x12345678
+                iType(0x0d, REG_T0, REG_T0, 0x5678)));
+        interp.run(2);
+        assertEquals(0x12345678, state.getRegister(REG_T0));
+
+        state.setInt(ADDR_TEXT + INST_SIZE, iType(0x0d, REG_T0, REG_T0, 0x9ABC)); //ori $t0, $t0, 0x9abc
+        state.pc(ADDR_TEXT);
+        interp.run(2);
+        assertEquals(0x12349ABC, state.getRegister(REG_T0));
+
+        state.setInt(ADDR_TEXT + INST_SIZE, iType(0x09, REG_T0, REG_T0, 1)); //addiu $t0, $t0, 1
+        state.pc(ADDR_TEXT);
+        interp.run(2);
+        assertEquals(0x12340001, state.getRegister(REG_T0));
+    }
+
+    private static byte[] reverseProgram() {
+        return toBytes(
+                iType(0x09, REG_ZERO, REG_V0, 5), //li $v0, 5
+                rType(0x0c, 0, 0, 0, 0), //syscall
+                iType(0x0f, REG_ZERO, REG_T0, ADDR_DATA >>> 16), //lui $t0, 0x1001
+                iType(0x09, REG_ZERO, REG_T1, 5), //li $t1, 5
+                rType(0x18, REG_V0, REG_T1, 0, 0), //loop: mult $v0, $t1
+                rType(0x12, 0, 0, REG_T2, 0), //mflo $t2
+                iType(0x2b, REG_T0, REG_T2, 0), //sw $t2, 0($t0)
+                iType(0x09, REG_T1, REG_T1, -1), //addiu $t1, $t1, -1
+                iType(0x05, REG_T1, REG_ZERO, -5), //bne $t1, $zero, loop
+                iType(0x09, REG_T0, REG_T0, 4), //addiu $t0, $t0, 4 (delay slot)
+                iType(0x09, REG_ZERO, REG_V0, 10), //li $v0, 10
+                rType(0x0c, 0, 0, 0, 0)); //syscall
+    }
+
+    private static int[] capture(MemState state) throws ProgramException {
+        int[] snap = new int[32 + 4 + 5];
+        for (int i = 0; i < 32; i++) {
+            snap[i] = state.getRegister(i);
+        }
+        snap[32] = state.pc();
+        snap[33] = state.nPC();
+        snap[34] = state.getHigh();
+        snap[35] = state.getLow();
+        for (int i = 0; i < 5; i++) {
+            snap[36 + i] = state.getInt(ADDR_DATA + i * INST_SIZE);
+        }
+        return snap;
+    }
+
+    private Interpreter recordedInterpreter(int capacity, long interval) throws Exception {
+        //Reading the input twice would fail, since there is only one line.
+        return recordedInterpreter(reverseProgram(), "7\n", capacity, interval);
+    }
+
+    private Interpreter recordedInterpreter(byte[] program, String input, int capacity, long interval)
+            throws Exception {
+        interp = new Interpreter(new StreamSyscallIO(new ByteArrayInputStream(input.getBytes(
+                StandardCharsets.US_ASCII)), new ByteArrayOutputStream()));
+        state = interp.getState();
+        interp.appendText(program);
+        interp.startRecording(capacity, interval);
+        return interp;
+    }
+
+    private static byte[] readStringProgram() {
+        return toBytes(
+                iType(0x0f, REG_ZERO, REG_A0, ADDR_DATA >>> 16), //lui $a0, 0x1001
+                iType(0x09, REG_ZERO, REG_A1, 64), //li $a1, 64
+                iType(0x09, REG_ZERO, REG_V0, 8), //li $v0, 8
+                rType(0x0c, 0, 0, 0, 0), //syscall
+                iType(0x09, REG_ZERO, REG_T0, 1), //li $t0, 1
+                iType(0x09, REG_ZERO, REG_V0, 10), //li $v0, 10
+                rType(0x0c, 0, 0, 0, 0)); //syscall
+    }
+
+    @Test
+    public void reverseStep() throws Exception {
+        //A tiny undo log forces most reverse steps to replay from a checkpoint.
+        recordedInterpreter(4, 3);
+        List<int[]> trace = new ArrayList<>();
+        RunResult result;
+        do {
+            trace.add(capture(state));
+            result = interp.run(1);
+        } while (result.getReason() == RunResult.StopReason.STEP_LIMIT);
+        assertEquals(RunResult.StopReason.EXIT, result.getReason());
+        assertEquals(35, trace.size() - 1);
+        assertEquals(35, interp.getTime());
+        assertEquals(7 * 5, state.getInt(ADDR_DATA));
+
+        for (int time = trace.size() - 2; time >= 0; time--) {
+            result = interp.reverseStep(1);
+            assertEquals(RunResult.StopReason.STEP_LIMIT, result.getReason());
+            assertEquals(time, interp.getTime());
+            assertArrayEquals("Time " + time, trace.get(time), capture(state));
+        }
+        assertEquals(RunResult.StopReason.HISTORY_START, interp.reverseStep(1).getReason());
+
+        //The input is read back from the journal.
+        result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.EXIT, result.getReason());
+        assertEquals(35, result.getInstructions());
+        assertArrayEquals(trace.get(35), capture(state));
+    }
+
+    @Test
+    public void reverseFusedPairs() throws Exception {
+        Interpreter stepped = new Interpreter();
+        stepped.appendText(pseudoProgram());
+        List<int[]> trace = new ArrayList<>();
+        RunResult result;
+        do {
+            trace.add(capture(stepped.getState()));
+            result = stepped.run(1);
+        } while (result.getReason() == RunResult.StopReason.STEP_LIMIT);
+        int end = trace.size() - 1;
+
+        //Fused pairs are still run while recording, including the div that traps.
+        interp.appendText(pseudoProgram());
+        interp.startRecording(1 << 10, 1 << 10);
+        result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.TRAP, result.getReason());
+        assertEquals(end, result.getInstructions());
+        assertEquals(end, interp.getTime());
+        assertArrayEquals(trace.get(end), capture(state));
+
+        for (int time = end - 1; time >= 0; time--) {
+            assertEquals(RunResult.StopReason.STEP_LIMIT, interp.reverseStep(1).getReason());
+            assertArrayEquals("Time " + time, trace.get(time), capture(state));
+        }
+        assertEquals(RunResult.StopReason.HISTORY_START, interp.reverseStep(1).getReason());
+    }
+
+    @Test
+    public void reverseUntil() throws Exception {
+        recordedInterpreter(1 << 10, 1 << 10);
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+
+        RunResult result = interp.reverseUntil(s -> s.pc() == ADDR_TEXT + 6 * INST_SIZE &&
+                s.getRegister(REG_T1) == 3, Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.CONDITION, result.getReason());
+        assertEquals(2 + 1 + 6 * 2 + 2, result.getInstructions());
+        assertEquals(7 * 3, state.getRegister(REG_T2));
+        assertEquals(7 * 4, state.getInt(ADDR_DATA + INST_SIZE));
+        assertEquals(0, state.getInt(ADDR_DATA + 2 * INST_SIZE));
+
+        result = interp.runUntil(s -> s.getRegister(REG_T1) == 1, Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.CONDITION, result.getReason());
+        assertEquals(7 * 3, state.getInt(ADDR_DATA + 2 * INST_SIZE));
+
+        result = interp.reverseStep(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.HISTORY_START, result.getReason());
+        assertEquals(0, interp.getTime());
+        assertEquals(ADDR_TEXT, state.pc());
+        assertEquals(0, state.getInt(ADDR_DATA));
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        assertEquals(7 * 5, state.getInt(ADDR_DATA));
+    }
+
+    @Test
+    public void reverseOverflowedStep() throws Exception {
+        //The read_string takes up more records than the whole undo log.
+        recordedInterpreter(readStringProgram(), "abcdefghijklmnopqrstuvwxyz0123456789\n", 4, 1 << 10);
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        assertEquals(6, interp.getTime());
+
+        RunResult result = interp.reverseStep(3);
+        assertEquals(RunResult.StopReason.STEP_LIMIT, result.getReason());
+        assertEquals(3, interp.getTime());
+        assertEquals(ADDR_TEXT + 3 * INST_SIZE, state.pc());
+        assertEquals(0, state.getInt(ADDR_DATA));
+        assertEquals(8, state.getRegister(REG_V0));
+
+        result = interp.reverseStep(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.HISTORY_START, result.getReason());
+        assertEquals(3, result.getInstructions());
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        assertEquals('a' | 'b' << 8 | 'c' << 16 | 'd' << 24, state.getInt(ADDR_DATA));
+        assertEquals(1, state.getRegister(REG_T0));
+    }
+
+    @Test
+    public void replayShorterRead() throws Exception {
+        recordedInterpreter(readStringProgram(), "abcdefghijklmnopqrstuvwxyz0123456789\n", 1 << 10, 1 << 10);
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        interp.reverseStep(3);
+
+        //The journalled line no longer fits.
+        state.setRegister(REG_A1, 5);
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        assertEquals('a' | 'b' << 8 | 'c' << 16 | 'd' << 24, state.getInt(ADDR_DATA));
+        assertEquals(0, state.getInt(ADDR_DATA + 4));
+
+        //Only the bytes that were read back are kept.
+        assertEquals(RunResult.StopReason.HISTORY_START, interp.reverseStep(Long.MAX_VALUE).getReason());
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+        assertEquals(0, state.getInt(ADDR_DATA + 4));
+    }
+
+    @Test
+    public void reverseWatchpoint() throws Exception {
+        recordedInterpreter(1 << 10, 1 << 10);
+        Watchpoint watchpoint = new Watchpoint(ADDR_DATA + 2 * INST_SIZE, INST_SIZE, false);
+        state.addWatchpoint(watchpoint);
+
+        RunResult result = interp.run(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.WATCHPOINT, result.getReason());
+        assertEquals(watchpoint, result.getWatchpoint());
+        assertEquals(4 + 6 * 2 + 3, result.getInstructions());
+        assertEquals(ADDR_TEXT + 6 * INST_SIZE, result.getPC());
+        assertEquals(7 * 3, state.getInt(ADDR_DATA + 2 * INST_SIZE));
+        assertEquals(RunResult.StopReason.EXIT, interp.run(Long.MAX_VALUE).getReason());
+
+        //Undoing the write stops right before it.
+        result = interp.reverseStep(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.WATCHPOINT, result.getReason());
+        assertEquals(35 - 18, result.getInstructions());
+        assertEquals(ADDR_TEXT + 6 * INST_SIZE, state.pc());
+        assertEquals(0, state.getInt(ADDR_DATA + 2 * INST_SIZE));
+
+        interp.setBreakpoint(ADDR_TEXT + 2 * INST_SIZE, true);
+        result = interp.reverseStep(Long.MAX_VALUE);
+        assertEquals(RunResult.StopReason.BREAKPOINT, result.getReason());
+        assertEquals(2, interp.getTime());
+    }
+}
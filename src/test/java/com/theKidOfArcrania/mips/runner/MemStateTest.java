@@ -4,16 +4,29 @@ import com.theKidOfArcrania.mips.Constants;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings({"JavaDoc", "MagicNumber"})
 public class MemStateTest implements Constants {
 
     private MemState mem;
 
+    /**
+     * Creates the memory backend to test against.
+     *
+     * @return the memory backend.
+     */
+    protected MemoryBackend createBackend() {
+        return new PagedMemory();
+    }
+
     @Before
     public void setUp() throws Exception {
-        mem = new MemState();
+        mem = new MemState(createBackend());
         mem.allocateSegment(0, 10);
         mem.allocateSegment(10, 13);
         //Gap at index 23
@@ -134,6 +147,39 @@ public class MemStateTest implements Constants {
         assertEquals(0xFF, mem.get(24) & 0xFF);
     }
 
+    @Test
+    public void pageBoundary() throws Exception {
+        mem.allocateSegment(0x1000 - 8, 16);
+        byte[] buff = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+        mem.set(0x1000 - 8, buff);
+
+        byte[] read = new byte[buff.length];
+        mem.get(0x1000 - 8, read);
+        assertArrayEquals(buff, read);
+        assertEquals(0x100F0E0D0C0B0A09L, mem.getLong(0x1000));
+    }
+
+    @Test
+    public void lazyZeroed() throws Exception {
+        mem.allocateSegment(0x10000, 0x10000);
+        assertEquals(0, mem.getLong(0x18000));
+        mem.setInt(0x1FFFC, -1);
+        assertEquals(-1, mem.getInt(0x1FFFC));
+        assertEquals(0, mem.getInt(0x1FFF8));
+    }
+
+    @Test
+    public void signedHalfwords() throws Exception {
+        mem.setShort(8, (short) -2);
+        assertEquals(-2, mem.getShort(8));
+        assertEquals(0xFFFE, mem.getInt(8));
+    }
+
+    @Test(expected = ProgramException.class)
+    public void wordAcrossGap() throws Exception {
+        mem.getInt(20);
+    }
+
     @Test(expected = ProgramException.class)
     public void segfault1() throws Exception {
         mem.get(23);
@@ -144,4 +190,82 @@ public class MemStateTest implements Constants {
         byte[] buff = new byte[24];
         mem.get(0, buff);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void forkCopyOnWrite() throws Exception {
+        mem.setInt(0, 0x11223344);
+        mem.setRegister(2, 7);
+        mem.pc(0x400000);
+        MemState.Snapshot snapshot = mem.snapshot();
+
+        mem.setInt(0, 5);
+        mem.setRegister(2, 8);
+        MemState fork = snapshot.fork();
+        assertEquals(0x11223344, fork.getInt(0));
+        assertEquals(7, fork.getRegister(2));
+        assertEquals(0x400000, fork.pc());
+
+        fork.setInt(4, 9);
+        assertEquals(0, mem.getInt(4));
+        assertEquals(0, snapshot.fork().getInt(4));
+
+        //Forks keep the same segments, and can allocate their own.
+        fork.allocateSegment(23, 1);
+        fork.set(23, (byte) 1);
+        mem.allocateSegment(23, 1);
+        assertEquals(0, mem.get(23));
+
+        mem.restore(snapshot);
+        assertEquals(0x11223344, mem.getInt(0));
+        assertEquals(7, mem.getRegister(2));
+    }
+
+    @Test(expected = ProgramException.class)
+    public void forkSegfault() throws Exception {
+        mem.fork().get(23);
+    }
+
+    @Test
+    public void watchpoints() throws Exception {
+        mem.allocateSegment(0x10000, 0x10000);
+        Watchpoint writes = new Watchpoint(0x18004, 4, false);
+        mem.addWatchpoint(writes);
+
+        //Only writes that overlap the range hit.
+        assertEquals(0, mem.getInt(0x18004));
+        mem.setInt(0x18000, 1);
+        mem.setInt(0x18008, 1);
+        assertNull(mem.pollWatchHit());
+        mem.setInt(0x18004, 2);
+        assertSame(writes, mem.pollWatchHit());
+        assertNull(mem.pollWatchHit());
+        mem.set(0x18007, (byte) 3);
+        assertSame(writes, mem.pollWatchHit());
+        assertEquals(0x03000002, mem.getInt(0x18004));
+
+        Watchpoint reads = new Watchpoint(0x18000, 2, true);
+        mem.addWatchpoint(reads);
+        assertEquals(1, mem.getShort(0x18000));
+        assertSame(reads, mem.pollWatchHit());
+
+        //Watchpoints are kept when restoring.
+        mem.restore(mem.snapshot());
+        assertEquals(1, mem.getInt(0x18000));
+        assertSame(reads, mem.pollWatchHit());
+
+        assertTrue(mem.removeWatchpoint(writes));
+        mem.setInt(0x18004, 4);
+        assertNull(mem.pollWatchHit());
+        mem.get(0x18001);
+        assertSame(reads, mem.pollWatchHit());
+    }
+
+    @Test
+    public void unwatchUnwatched() throws Exception {
+        MemoryBackend memory = createBackend();
+        memory.allocate(0x10000000, 0x1000);
+        memory.setWatched(0x10000000, 4, false);
+        memory.set(0x10000000, (byte) 1);
+        assertEquals(1, memory.get(0x10000000));
+    }
+}
@@ -0,0 +1,9 @@
+package com.theKidOfArcrania.mips.runner;
+
+@SuppressWarnings("JavaDoc")
+public class SegmentMemoryTest extends MemStateTest {
+    @Override
+    protected MemoryBackend createBackend() {
+        return new SegmentMemory();
+    }
+}
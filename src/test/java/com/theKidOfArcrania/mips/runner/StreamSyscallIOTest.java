@@ -0,0 +1,56 @@
+package com.theKidOfArcrania.mips.runner;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class StreamSyscallIOTest {
+
+    private static StreamSyscallIO io(String input, ByteArrayOutputStream out) {
+        return new StreamSyscallIO(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+    }
+
+    @Test
+    public void mixedReads() throws Exception {
+        StreamSyscallIO io = io("  42 extra\nhello\nxy", new ByteArrayOutputStream());
+        assertEquals(42, io.readInt());
+
+        byte[] buff = new byte[16];
+        assertEquals(6, io.readLine(buff, 0, buff.length));
+        assertEquals("hello\n", new String(buff, 0, 6, StandardCharsets.UTF_8));
+
+        assertEquals('x', io.readChar());
+        assertEquals(1, io.readLine(buff, 0, buff.length));
+        assertEquals('y', buff[0]);
+        assertEquals(-1, io.readChar());
+        assertEquals(0, io.readLine(buff, 0, buff.length));
+    }
+
+    @Test(expected = EOFException.class)
+    public void readIntAtEnd() throws Exception {
+        io(" \n", new ByteArrayOutputStream()).readInt();
+    }
+
+    @Test
+    public void bufferedOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamSyscallIO io = io("1\n", out);
+        io.printChar('a');
+        io.print("bc".getBytes(StandardCharsets.UTF_8), 0, 2);
+        assertEquals(0, out.size());
+
+        //Reading input shows the pending output first.
+        io.readInt();
+        assertEquals("abc", out.toString("UTF-8"));
+
+        io.printInt(-7);
+        io.flush();
+        assertEquals("abc-7" + System.lineSeparator(), out.toString("UTF-8"));
+    }
+}
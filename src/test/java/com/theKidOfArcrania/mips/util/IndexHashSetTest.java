@@ -0,0 +1,88 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class IndexHashSetTest {
+    private static void checkData(List<Integer> expected, IndexHashSet<Integer> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(i, actual.indexOf(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        IndexHashSet<String> set = new IndexHashSet<>();
+        set.add("A");
+        set.add("D");
+        assertTrue(set.addAll(1, Arrays.asList("B", "D", "C", "B")));
+        assertFalse(set.addAll(0, Arrays.asList("A", "C")));
+        assertEquals(Arrays.asList("A", "B", "C", "D"), new ArrayList<>(set));
+        assertEquals(2, set.indexOf("C"));
+        assertEquals(3, set.indexOf("D"));
+    }
+
+    @Test
+    public void testRandomEdits() throws Exception {
+        Random rng = new Random(1);
+        List<Integer> expected = new ArrayList<>();
+        IndexHashSet<Integer> actual = new IndexHashSet<>();
+        for (int i = 0; i < 3000; i++) {
+            int val = rng.nextInt(500);
+            int op = rng.nextInt(6);
+            if (op < 2) {
+                int ind = rng.nextInt(expected.size() + 1);
+                assertEquals(!expected.contains(val), actual.add(ind, val));
+                if (!expected.contains(val)) {
+                    expected.add(ind, val);
+                }
+            } else if (op == 2) {
+                assertEquals(expected.remove((Integer) val), actual.remove((Integer) val));
+            } else if (op == 3 && !expected.isEmpty()) {
+                int ind = rng.nextInt(expected.size());
+                assertEquals(expected.remove(ind), actual.remove(ind));
+            } else if (op == 4 && !expected.isEmpty()) {
+                int ind = rng.nextInt(expected.size());
+                Integer last = expected.remove(expected.size() - 1);
+                if (ind < expected.size()) {
+                    expected.set(ind, last);
+                }
+                actual.swapRemove(ind);
+            } else if (!expected.isEmpty()) {
+                int ind = rng.nextInt(expected.size());
+                if (expected.contains(val) && expected.indexOf(val) != ind) {
+                    assertNull(actual.set(ind, val));
+                } else {
+                    assertEquals(expected.set(ind, val), actual.set(ind, val));
+                }
+            }
+            checkData(expected, actual);
+        }
+
+        actual.removeIf(v -> v % 3 == 0);
+        expected.removeIf(v -> v % 3 == 0);
+        checkData(expected, actual);
+
+        Iterator<Integer> itr = actual.iterator();
+        while (itr.hasNext()) {
+            if (itr.next() % 2 == 0) {
+                itr.remove();
+            }
+        }
+        expected.removeIf(v -> v % 2 == 0);
+        checkData(expected, actual);
+    }
+}
@@ -0,0 +1,45 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class InstCodecTest {
+
+    @Test
+    public void fields() throws Exception {
+        int word = 0x012A4020; //add $t0, $t1, $t2
+        assertEquals(0, InstCodec.opcode(word));
+        assertEquals(9, InstCodec.rs(word));
+        assertEquals(10, InstCodec.rt(word));
+        assertEquals(8, InstCodec.rd(word));
+        assertEquals(0, InstCodec.shamt(word));
+        assertEquals(0x20, InstCodec.funct(word));
+
+        word = 0x2508FFFC; //addiu $t0, $t0, -4
+        assertEquals(9, InstCodec.opcode(word));
+        assertEquals(-4, InstCodec.imm(word));
+        assertEquals(0x108FFFC, InstCodec.addr(word));
+    }
+
+    @Test
+    public void matchesBitPacker() throws Exception {
+        Random rng = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int word = rng.nextInt();
+            int offset = rng.nextInt(32);
+            int length = 1 + rng.nextInt(32 - offset);
+            int value = rng.nextInt();
+
+            BitPacker bits = new BitPacker(32);
+            bits.setDWORD(0, word);
+            assertEquals(bits.get(offset, length), InstCodec.get(word, offset, length));
+
+            bits.set(offset, length, value);
+            assertEquals(bits.getDWORD(0), InstCodec.set(word, offset, length, value));
+        }
+    }
+}
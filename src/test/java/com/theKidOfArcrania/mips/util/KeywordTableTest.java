@@ -0,0 +1,47 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class KeywordTableTest {
+    private static HashMap<String, Integer> keywords(int count) {
+        HashMap<String, Integer> keywords = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            keywords.put("KW" + Integer.toString(i, 36), i);
+        }
+        return keywords;
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        KeywordTable<Integer> table = new KeywordTable<>(keywords(200), true);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) table.get("kw" + Integer.toString(i, 36)));
+            assertEquals(i, (int) table.get("  KW" + Integer.toString(i, 36) + ",", 2, 4 +
+                    Integer.toString(i, 36).length()));
+        }
+        assertNull(table.get("kw"));
+        assertNull(table.get(""));
+        assertNull(table.get("kw5a5"));
+    }
+
+    @Test
+    public void testCaseSensitive() throws Exception {
+        KeywordTable<Integer> table = new KeywordTable<>(keywords(10), false);
+        assertEquals(3, (int) table.get("KW3"));
+        assertNull(table.get("kw3"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotDistinct() throws Exception {
+        HashMap<String, Integer> keywords = new HashMap<>();
+        keywords.put("add", 0);
+        keywords.put("ADD", 1);
+        new KeywordTable<>(keywords, true);
+    }
+}
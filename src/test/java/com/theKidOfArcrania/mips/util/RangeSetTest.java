@@ -5,6 +5,9 @@ import org.junit.Test;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
@@ -125,6 +128,53 @@ public class RangeSetTest {
         checkEmpty(eles, 7, 10, true);
     }
 
+    @Test
+    public void testQueries() throws Exception {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, "A");
+        eles.add(5, 10, "B");
+        eles.add(12, 14, "C");
+        assertFalse(eles.add(2, 4, "A"));
+
+        assertEquals("A", eles.findAt(1));
+        assertEquals("B", eles.findAt(9));
+        assertNull(eles.findAt(10));
+        assertNull(eles.findAt(0));
+
+        StringBuilder visited = new StringBuilder();
+        eles.forEachOverlapping(6, 13, (from, to, items) -> visited.append(from).append('-').append(to)
+                .append(items.size()).append(' '));
+        assertEquals("5-72 7-101 12-141 ", visited.toString());
+
+        eles.retainRange(20, 30);
+        assertTrue(eles.isRangeEmpty(0, 30));
+    }
+
+    @Test
+    public void testViews() throws Exception {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(0, 10, "A");
+        eles.add(5, 10, "B");
+
+        Set<String> view = eles.getView(7);
+        assertEquals(2, view.size());
+        eles.remove("B");
+        assertEquals(2, view.size());
+        assertTrue(eles.getView(20).isEmpty());
+
+        StringBuilder items = new StringBuilder();
+        eles.forEachAt(7, items::append);
+        assertEquals("A", items.toString());
+        assertEquals(1, eles.elementsView().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewReadOnly() throws Exception {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(0, 10, "A");
+        eles.getView(5).add("B");
+    }
+
     private <T> void checkEmpty(RangeSet<? extends T> eles, int from, int to, boolean emptyExpected) {
         boolean result = eles.isRangeEmpty(from, to);
         if (result ^ emptyExpected) {
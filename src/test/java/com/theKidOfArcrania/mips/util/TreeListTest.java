@@ -0,0 +1,63 @@
+package com.theKidOfArcrania.mips.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class TreeListTest {
+    @Test
+    public void testRandomEdits() throws Exception {
+        Random rng = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        TreeList<Integer> actual = new TreeList<>();
+        for (int i = 0; i < 5000; i++) {
+            int op = rng.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int ind = rng.nextInt(expected.size() + 1);
+                expected.add(ind, i);
+                actual.add(ind, i);
+            } else if (op == 2) {
+                int ind = rng.nextInt(expected.size());
+                assertEquals(expected.remove(ind), actual.remove(ind));
+            } else {
+                int ind = rng.nextInt(expected.size());
+                assertEquals(expected.set(ind, -i), actual.set(ind, -i));
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testIterateFrom() throws Exception {
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        TreeList<Integer> actual = new TreeList<>(expected);
+
+        for (int from = 0; from <= expected.size(); from++) {
+            Iterator<Integer> itr = actual.iterator(from);
+            for (int i = from; i < expected.size(); i++) {
+                assertEquals(expected.get(i), itr.next());
+            }
+            assertFalse(itr.hasNext());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        new TreeList<>().get(0);
+    }
+}